@@ -0,0 +1,115 @@
+// 25) ProductStore stand-in for the benchmarks: a sorted map instead of MongoDB
+
+package com.allinone.Product_Service.benchmark;
+
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductPriceConverter;
+import com.allinone.Product_Service.repository.ProductStore;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Limit;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Only the methods ProductService calls are implemented (behind a dynamic proxy, the rest of
+// ProductStore throws). Documents are kept in _id order like the collection, and the raw
+// BSON scan hands out documents shaped like the ones Spring Data writes (price in the configured
+// representation, see ProductPriceConverter).
+final class InMemoryProductRepository {
+
+    private final ProductPriceConverter priceConverter;
+
+    private final ConcurrentSkipListMap<String, Product> products = new ConcurrentSkipListMap<>();
+    private final Map<String, RawBsonDocument> rawDocuments = new ConcurrentHashMap<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    private InMemoryProductRepository(ProductPriceConverter priceConverter) {
+        this.priceConverter = priceConverter;
+    }
+
+    static ProductStore create(ProductPriceConverter priceConverter) {
+        InMemoryProductRepository repository = new InMemoryProductRepository(priceConverter);
+        return (ProductStore) Proxy.newProxyInstance(ProductStore.class.getClassLoader(),
+                new Class<?>[]{ProductStore.class},
+                (proxy, method, args) -> method.getDeclaringClass() == Object.class
+                        ? method.invoke(repository, args)
+                        : repository.invoke(method.getName(), args));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object invoke(String method, Object[] args) {
+        return switch (method) {
+            case "save", "insert" -> save((Product) args[0]);
+            case "insertAllUnordered" -> insertAll((List<Product>) args[0]);
+            case "findById" -> Optional.ofNullable(products.get((String) args[0]));
+            case "findAllById" -> {
+                List<Product> found = new ArrayList<>();
+                ((Iterable<String>) args[0]).forEach(id -> Optional.ofNullable(products.get(id)).ifPresent(found::add));
+                yield found;
+            }
+            case "findBySkuCode" -> products.values().stream()
+                    .filter(product -> args[0].equals(product.getSkuCode()))
+                    .findFirst();
+            case "findAll" -> new ArrayList<>(products.values());
+            case "findAllByOrderByIdAsc" -> first(products.values().stream(), (Limit) args[0]);
+            case "findByIdGreaterThanOrderByIdAsc" -> first(products.tailMap((String) args[0], false).values().stream(), (Limit) args[1]);
+            case "findFirstByOrderByVersionDesc" -> products.values().stream()
+                    .filter(product -> product.getVersion() != null)
+                    .max(Comparator.comparing(Product::getVersion));
+            case "findByVersionGreaterThanOrderByVersionAsc" -> first(products.values().stream()
+                    .filter(product -> product.getVersion() != null && product.getVersion() > (Long) args[0])
+                    .sorted(Comparator.comparing(Product::getVersion)), (Limit) args[1]);
+            case "findLatestTombstone" -> Optional.empty();
+            case "findTombstonesAfter" -> List.of();
+            case "streamAll" -> new ArrayList<>(products.values()).stream();
+            case "streamAllRaw" -> products.keySet().stream().map(rawDocuments::get).toList().stream();
+            case "reserveVersions" -> versionSequence.getAndAdd((Integer) args[0]) + 1;
+            case "count" -> (long) products.size();
+            case "deleteAll" -> {
+                products.clear();
+                rawDocuments.clear();
+                yield null;
+            }
+            default -> throw new UnsupportedOperationException(method);
+        };
+    }
+
+    private Product save(Product product) {
+        if (product.getId() == null) {
+            product.setId(new ObjectId().toHexString());
+        }
+        products.put(product.getId(), product);
+        // Same shape as the mapped document: ObjectId _id, price as the converter writes it
+        Document document = new Document("_id", new ObjectId(product.getId()))
+                .append("name", product.getName())
+                .append("description", product.getDescription())
+                .append("skuCode", product.getSkuCode())
+                .append("price", product.getPrice() == null ? null : priceConverter.toStored(product.getPrice()));
+        if (priceConverter.currencyCode() != null) {
+            document.append("currency", priceConverter.currencyCode());
+        }
+        document.append("_class", Product.class.getName());
+        rawDocuments.put(product.getId(), new RawBsonDocument(document, new DocumentCodec()));
+        return product;
+    }
+
+    private Map<Integer, String> insertAll(List<Product> batch) {
+        batch.forEach(this::save);
+        return Map.of();
+    }
+
+    private static List<Product> first(Stream<Product> products, Limit limit) {
+        return products.limit(limit.max()).toList();
+    }
+}
@@ -0,0 +1,84 @@
+// 25) Regression gate: compares a JMH JSON result file with a stored baseline
+
+package com.allinone.Product_Service.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Args: <result.json> <baseline.json> <tolerance percent> <update baseline true|false>
+// A benchmark regresses when its score is worse than the baseline by more than the tolerance
+// (lower is better for the time modes, higher for throughput). Benchmarks missing on either side are
+// reported but don't fail. A missing baseline file fails the check: store one with update = true.
+public final class JmhBaselineCheck {
+
+    public static void main(String[] args) throws IOException {
+        Path result = Path.of(args[0]);
+        Path baseline = Path.of(args[1]);
+        double tolerance = Double.parseDouble(args[2]) / 100;
+        boolean update = Boolean.parseBoolean(args[3]);
+
+        if (!update && !Files.exists(baseline)) {
+            System.err.println("No baseline " + baseline + " to compare with; store one with -Djmh.baseline.update=true"
+                    + " or pass an existing one with -Djmh.baseline=<file>");
+            System.exit(1);
+        }
+        if (update) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(result, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Stored " + result + " as the new baseline " + baseline);
+            return;
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> current = scores(objectMapper.readTree(result.toFile()));
+        Map<String, JsonNode> previous = scores(objectMapper.readTree(baseline.toFile()));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = previous.get(entry.getKey());
+            if (before == null) {
+                System.out.println("NEW        " + entry.getKey());
+                continue;
+            }
+            double oldScore = before.path("primaryMetric").path("score").asDouble();
+            double newScore = entry.getValue().path("primaryMetric").path("score").asDouble();
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().path("mode").asText());
+            double change = oldScore == 0 ? 0 : (newScore - oldScore) / oldScore;
+            double worse = higherIsBetter ? -change : change;
+            String unit = entry.getValue().path("primaryMetric").path("scoreUnit").asText();
+            boolean regressed = worse > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-10s %s: %.3f -> %.3f %s (%+.1f%%)%n",
+                    regressed ? "REGRESSED" : "ok", entry.getKey(), oldScore, newScore, unit, change * 100);
+        }
+        previous.keySet().stream()
+                .filter(key -> !current.containsKey(key))
+                .forEach(key -> System.out.println("MISSING    " + key));
+
+        if (regressions > 0) {
+            System.err.println(regressions + " benchmark(s) regressed by more than " + args[2] + "%");
+            System.exit(1);
+        }
+    }
+
+    // Benchmark name plus its @Param values -> result entry
+    private static Map<String, JsonNode> scores(JsonNode results) {
+        Map<String, JsonNode> scores = new LinkedHashMap<>();
+        for (JsonNode benchmark : results) {
+            StringBuilder key = new StringBuilder(benchmark.path("benchmark").asText());
+            benchmark.path("params").properties().forEach(param ->
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            scores.put(key.toString(), benchmark);
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,98 @@
+// 25) End-to-end controller calls (dispatch, argument binding, service, JSON) on the in-memory repository
+
+package com.allinone.Product_Service.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// MockMvc goes through the DispatcherServlet and the message converters, only the servlet container and
+// MongoDB are left out. Catalog size is fixed per trial; creates add to it, so they run in their own state.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductControllerBenchmark {
+
+    // Products in the catalog
+    @Param({"100", "10000"})
+    public int products;
+
+    private ProductFixture fixture;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new ProductFixture(products);
+    }
+
+    private String anyProductId() {
+        return fixture.productIds.get(Math.floorMod(next.getAndIncrement(), fixture.productIds.size()));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse getProductById() throws Exception {
+        return fixture.mockMvc.perform(get("/api/product/{id}", anyProductId())).andReturn().getResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse getAllProducts() throws Exception {
+        return fixture.mockMvc.perform(get("/api/product")).andReturn().getResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse getFirstPage() throws Exception {
+        return fixture.mockMvc.perform(get("/api/product/page").param("size", "50")).andReturn().getResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse getCheapestProducts() throws Exception {
+        return fixture.mockMvc.perform(get("/api/product").param("sort", "price").param("limit", "20")).andReturn().getResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse searchProducts() throws Exception {
+        return fixture.mockMvc.perform(get("/api/product/search").param("q", "product 42")).andReturn().getResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse createProduct(CreateState state) throws Exception {
+        int i = state.next.getAndIncrement();
+        return state.fixture.mockMvc.perform(post("/api/product")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"New " + i + "\",\"description\":\"Created by the benchmark\",\"skuCode\":\"NEW-" + i + "\",\"price\":9.99}"))
+                .andReturn().getResponse();
+    }
+
+    // Fresh catalog per iteration so the creates don't grow it for the whole trial
+    @State(Scope.Benchmark)
+    public static class CreateState {
+
+        private ProductFixture fixture;
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Setup(Level.Iteration)
+        public void setUp(ProductControllerBenchmark benchmark) {
+            fixture = new ProductFixture(benchmark.products);
+        }
+    }
+}
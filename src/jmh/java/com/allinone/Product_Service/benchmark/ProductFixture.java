@@ -0,0 +1,123 @@
+// 25) Wires the real controller / service graph around the in-memory repository, without a Spring context
+
+package com.allinone.Product_Service.benchmark;
+
+import com.allinone.Product_Service.controller.ProductController;
+import com.allinone.Product_Service.dto.ProductRequest;
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.allinone.Product_Service.event.ProductChangedEvent;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductPriceConverter;
+import com.allinone.Product_Service.repository.ProductStore;
+import com.allinone.Product_Service.service.CatalogSnapshot;
+import com.allinone.Product_Service.service.ProductCache;
+import com.allinone.Product_Service.service.ProductChangesService;
+import com.allinone.Product_Service.service.ProductPriceService;
+import com.allinone.Product_Service.service.ProductSearchService;
+import com.allinone.Product_Service.service.ProductService;
+import com.allinone.Product_Service.service.ProductVersionReservations;
+import com.allinone.Product_Service.service.ProductWriteCoalescer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Same defaults as application.properties; events are delivered synchronously like Spring does.
+final class ProductFixture {
+
+    final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    // Decimal128, the default product.price.representation
+    final ProductPriceConverter priceConverter = new ProductPriceConverter(ProductPriceConverter.Representation.DECIMAL128, "USD");
+    final ProductStore productRepository = InMemoryProductRepository.create(priceConverter);
+    final ProductService productService;
+    final MockMvc mockMvc;
+    final List<String> productIds = new ArrayList<>();
+
+    ProductFixture(int productCount) {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ProductCache productCache = new ProductCache(meterRegistry, 100_000, Duration.ofMinutes(10), "", 1000);
+        List<Consumer<ProductChangedEvent>> listeners = new ArrayList<>();
+        ProductVersionReservations versionReservations = new ProductVersionReservations(productRepository, meterRegistry,
+                Duration.ofSeconds(2));
+
+        productService = new ProductService(productRepository, priceConverter, objectMapper,
+                new StaticListableBeanFactory().getBeanProvider(ProductWriteCoalescer.class),
+                productCache,
+                event -> listeners.forEach(listener -> listener.accept((ProductChangedEvent) event)),
+                versionReservations);
+        ReflectionTestUtils.setField(productService, "maxPageSize", 500);
+        ReflectionTestUtils.setField(productService, "streamBatchSize", 1000);
+        ReflectionTestUtils.setField(productService, "batchChunkSize", 1000);
+
+        ProductChangesService changesService = new ProductChangesService(productRepository, versionReservations,
+                new SyncTaskExecutor(), 1000, Duration.ofSeconds(2), 1000);
+        CatalogSnapshot catalogSnapshot = new CatalogSnapshot(productService, changesService, meterRegistry,
+                Duration.ofSeconds(60));
+        ProductSearchService searchService = new ProductSearchService(productRepository, productService,
+                new SyncTaskExecutor(), meterRegistry, 1000, 1000);
+        ProductPriceService priceService = new ProductPriceService(productRepository, productService,
+                new SyncTaskExecutor(), meterRegistry, 1000, 1000);
+        listeners.add(productCache::onProductChanged);
+        listeners.add(catalogSnapshot::onProductChanged);
+        listeners.add(searchService::onProductChanged);
+        listeners.add(priceService::onProductChanged);
+
+        for (int i = 0; i < productCount; i++) {
+            Product product = productRepository.save(ProductFixture.product(i));
+            productIds.add(product.getId());
+        }
+        searchService.buildOnStartup();
+        priceService.buildOnStartup();
+
+        ProductController controller = new ProductController(productService, objectMapper, catalogSnapshot, searchService,
+                priceService, changesService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    static Product product(int i) {
+        return Product.builder()
+                .name("Product " + i)
+                .description("Benchmark product number " + i + " with a description of typical length")
+                .skuCode("SKU-" + i)
+                .price(BigDecimal.valueOf(1000 + i * 37L % 100_000, 2))
+                .build();
+    }
+
+    static ProductRequest request(int i) {
+        return ProductRequest.builder()
+                .name("Product " + i)
+                .description("Benchmark product number " + i + " with a description of typical length")
+                .skuCode("SKU-" + i)
+                .price(BigDecimal.valueOf(1000 + i * 37L % 100_000, 2))
+                .build();
+    }
+
+    static List<ProductResponse> responses(int count) {
+        List<ProductResponse> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = product(i);
+            responses.add(ProductResponse.builder()
+                    .id(Integer.toHexString(i))
+                    .name(product.getName())
+                    .description(product.getDescription())
+                    .skuCode(product.getSkuCode())
+                    .price(product.getPrice())
+                    .build());
+        }
+        return responses;
+    }
+}
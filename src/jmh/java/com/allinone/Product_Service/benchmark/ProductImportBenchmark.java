@@ -0,0 +1,127 @@
+// 35) Bulk import of a whole file: chunking, parallel parsing and batching, per format and parser count
+
+package com.allinone.Product_Service.benchmark;
+
+import com.allinone.Product_Service.dto.ProductImportStatus;
+import com.allinone.Product_Service.repository.ProductPriceConverter;
+import com.allinone.Product_Service.repository.ProductStore;
+import com.allinone.Product_Service.service.ProductImportFile;
+import com.allinone.Product_Service.service.ProductImportJob;
+import com.allinone.Product_Service.service.ProductVersionReservations;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bulk inserts are acknowledged without storing anything, so this is the import's own cost: the rate
+// MongoDB would have to keep up with. Each invocation imports the whole file from scratch.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductImportBenchmark {
+
+    @Param({"CSV", "NDJSON"})
+    public ProductImportFile.Format format;
+
+    // Parser threads
+    @Param({"1", "4"})
+    public int parallelism;
+
+    // Records in the file
+    @Param({"100000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private Path directory;
+    private Path file;
+    private ProductImportJob job;
+
+    @Setup
+    public void writeFile() throws IOException {
+        directory = Files.createTempDirectory("product-import");
+        file = directory.resolve(format == ProductImportFile.Format.CSV ? "products.csv" : "products.ndjson");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            if (format == ProductImportFile.Format.CSV) {
+                writer.write("name,description,skuCode,price\n");
+            }
+            for (int i = 0; i < size; i++) {
+                var request = ProductFixture.request(i);
+                writer.write(format == ProductImportFile.Format.CSV
+                        ? String.join(",", request.getName(), request.getDescription(), request.getSkuCode(),
+                        request.getPrice().toPlainString())
+                        : objectMapper.writeValueAsString(request));
+                writer.write('\n');
+            }
+        }
+    }
+
+    // A fresh repository and no checkpoint, so every invocation imports everything
+    @Setup(Level.Invocation)
+    public void newJob() throws IOException {
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".import-checkpoint.json"));
+        ProductStore repository = discardingRepository();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        job = new ProductImportJob(repository, new ProductVersionReservations(repository, meterRegistry, Duration.ofSeconds(2)),
+                new ProductPriceConverter(ProductPriceConverter.Representation.DECIMAL128, "USD"), objectMapper, event -> {
+        }, new SyncTaskExecutor(), meterRegistry, directory.toString(), DataSize.ofMegabytes(1),
+                1000, parallelism, 4, 16, Duration.ofMinutes(1));
+    }
+
+    // Only what the import calls; every insert succeeds
+    private static ProductStore discardingRepository() {
+        AtomicLong versions = new AtomicLong();
+        return (ProductStore) Proxy.newProxyInstance(ProductStore.class.getClassLoader(),
+                new Class<?>[]{ProductStore.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "insertAllUnordered" -> Map.of();
+                    case "reserveVersions" -> versions.getAndAdd((Integer) args[0]) + 1;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Benchmark
+    public ProductImportStatus importFile() {
+        ProductImportStatus status = job.run(file, format);
+        if (status.getImported() != size) {
+            throw new IllegalStateException(status.getState() + ": " + status.getMessage());
+        }
+        return status;
+    }
+
+    @TearDown
+    public void deleteFile() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,73 @@
+// 25) Jackson cost of the product payloads
+
+package com.allinone.Product_Service.benchmark;
+
+import com.allinone.Product_Service.dto.ProductRequest;
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductJsonBenchmark {
+
+    private ObjectReader requestReader;
+    private byte[] requestJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        requestReader = objectMapper.readerFor(ProductRequest.class);
+        requestJson = objectMapper.writeValueAsBytes(ProductFixture.request(42));
+    }
+
+    @Benchmark
+    public byte[] serializeProductList(ProductList list) throws IOException {
+        return list.writer.writeValueAsBytes(list.products);
+    }
+
+    @Benchmark
+    public ProductRequest deserializeProductRequest() throws IOException {
+        return requestReader.readValue(requestJson);
+    }
+
+    @State(Scope.Benchmark)
+    public static class ProductList {
+
+        // Products in the serialized list
+        @Param({"1", "100", "10000"})
+        public int size;
+
+        private ObjectWriter writer;
+        private List<ProductResponse> products;
+
+        @Setup
+        public void setUp() {
+            writer = Jackson2ObjectMapperBuilder.json().build().writerFor(new TypeReference<List<ProductResponse>>() {
+            });
+            products = ProductFixture.responses(size);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+// 25) Per-request object work: entity <-> DTO mapping and builder allocation
+
+package com.allinone.Product_Service.benchmark;
+
+import com.allinone.Product_Service.dto.ProductRequest;
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.service.ProductMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// Run with -prof gc to see the bytes allocated per operation next to the time
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductMappingBenchmark {
+
+    private final Product product = ProductFixture.product(42);
+    private final ProductRequest productRequest = ProductFixture.request(42);
+    private final String name = "Product 42";
+    private final String description = "Benchmark product number 42 with a description of typical length";
+    private final BigDecimal price = new BigDecimal("19.99");
+
+    @Benchmark
+    public ProductResponse mapToProductResponse() {
+        return ProductMapper.mapToProductResponse(product);
+    }
+
+    @Benchmark
+    public Product mapToProduct() {
+        return ProductMapper.mapToProduct(productRequest);
+    }
+
+    @Benchmark
+    public Product productBuilder() {
+        return Product.builder()
+                .name(name)
+                .description(description)
+                .skuCode("SKU-42")
+                .price(price)
+                .build();
+    }
+}
@@ -0,0 +1,112 @@
+// 34) List and range read paths per stored price representation (string, Decimal128, minor units)
+
+package com.allinone.Product_Service.benchmark;
+
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductPriceConverter;
+import com.allinone.Product_Service.repository.ProductPriceMapping;
+import com.allinone.Product_Service.service.ProductBsonJsonWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Documents as MongoDB returns them (RawBsonDocument), written by the real Product mapping with
+// ProductPriceConverter. listJson is the GET /api/product snapshot build (ProductBsonJsonWriter);
+// readProducts is how the range path gets products (price index build, products behind ?minPrice=),
+// including the driver's decoding.
+// The average document size is printed once per fork.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductPriceStorageBenchmark {
+
+    @Param({"STRING", "DECIMAL128", "MINOR_UNITS"})
+    public ProductPriceConverter.Representation representation;
+
+    // Products in the collection
+    @Param({"10000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final DocumentCodec documentCodec = new DocumentCodec();
+    private MappingMongoConverter mongoConverter;
+    private List<RawBsonDocument> documents;
+
+    @Setup
+    public void setUp() {
+        ProductPriceConverter priceConverter = new ProductPriceConverter(representation, "USD");
+        MongoCustomConversions conversions = new ProductPriceMapping().mongoCustomConversions(priceConverter);
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        mongoConverter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        mongoConverter.setCustomConversions(conversions);
+        mongoConverter.afterPropertiesSet();
+
+        documents = new ArrayList<>(size);
+        long bytes = 0;
+        for (int i = 0; i < size; i++) {
+            Product product = ProductFixture.product(i);
+            product.setId(new ObjectId().toHexString());
+            product.setVersion((long) i);
+            priceConverter.stampCurrency(product);
+            Document document = new Document();
+            mongoConverter.write(product, document);
+            RawBsonDocument raw = new RawBsonDocument(document, documentCodec);
+            documents.add(raw);
+            bytes += raw.getByteBuffer().remaining();
+        }
+        System.out.printf("%n%s: %.1f bytes per document%n", representation, (double) bytes / size);
+    }
+
+    @Benchmark
+    public byte[] listJson() throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+            ProductBsonJsonWriter writer = new ProductBsonJsonWriter(generator);
+            generator.writeStartArray();
+            for (RawBsonDocument document : documents) {
+                writer.write(document);
+            }
+            generator.writeEndArray();
+        }
+        return json.toByteArray();
+    }
+
+    // Decoded into a Document first, like MongoTemplate has the driver do
+    @Benchmark
+    public void readProducts(Blackhole blackhole) {
+        for (RawBsonDocument document : documents) {
+            blackhole.consume(mongoConverter.read(Product.class, document.decode(documentCodec)));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+// 33) Size and encode / decode cost of the product list in JSON, Smile, CBOR and Protobuf
+
+package com.allinone.Product_Service.benchmark;
+
+import com.allinone.Product_Service.dto.ProductProtobuf;
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Same mappers as ProductWireFormats, over the List<ProductResponse> GET /api/product answers with.
+// The encoded size of each format / size is printed once per fork, before the first iteration.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductWireFormatBenchmark {
+
+    @Param({"json", "smile", "cbor", "protobuf"})
+    public String format;
+
+    // Products in the list
+    @Param({"1", "100", "10000"})
+    public int size;
+
+    private List<ProductResponse> products;
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        products = ProductFixture.responses(size);
+        if (!format.equals("protobuf")) {
+            ObjectMapper objectMapper = switch (format) {
+                case "json" -> Jackson2ObjectMapperBuilder.json().build();
+                case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+                case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+                default -> throw new IllegalArgumentException(format);
+            };
+            TypeReference<List<ProductResponse>> listType = new TypeReference<>() {
+            };
+            writer = objectMapper.writerFor(listType);
+            reader = objectMapper.readerFor(listType);
+        }
+        encoded = encodeList();
+        System.out.printf("%n%s, %d products: %d bytes (%.1f per product)%n", format, size, encoded.length,
+                (double) encoded.length / size);
+    }
+
+    @Benchmark
+    public byte[] encodeList() throws IOException {
+        if (writer != null) {
+            return writer.writeValueAsBytes(products);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        ProductProtobuf.writeResponses(products, out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public List<ProductResponse> decodeList() throws IOException {
+        if (reader != null) {
+            return reader.readValue(encoded);
+        }
+        return ProductProtobuf.readResponses(CodedInputStream.newInstance(encoded));
+    }
+}
@@ -0,0 +1,446 @@
+// 27) Load generator for /api/product with HDR histogram latencies
+
+package com.allinone.Product_Service.load;
+
+import com.allinone.Product_Service.ProductServiceApplication;
+import com.allinone.Product_Service.dto.BatchCreateResponse;
+import com.allinone.Product_Service.dto.ProductRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.MongoVersion;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+// Options (key=value):
+//   profile=read-heavy|write-heavy|large-catalog   request mix and catalog size, see WorkloadProfile
+//   catalog=<n>                                    products seeded before the run (default: from the profile)
+//   rate=<n>                                       open model: n requests/s on a fixed schedule
+//   concurrency=<n>                                closed model: n clients back to back (used when rate is not set, default 64)
+//   duration=60s, warmup=10s                       measured run and discarded warm-up run
+//   target=http://host:port                        service under test; without it the service is started in this
+//                                                  JVM on an embedded in-memory MongoDB stand-in
+//   stack=servlet|reactive                         embedded mode: the default servlet stack or the "reactive" profile
+//   threads=platform|virtual                       embedded mode: spring.threads.virtual.enabled of the service
+//   jfr=<file>                                     embedded mode: also keep the pinning recording (see below)
+//   --<property>=<value>                           embedded mode: passed on to the service, e.g.
+//                                                  --product.concurrency-limit.enabled=false
+//   output=<file>                                  also write the report as JSON
+// With a rate, latency is measured from the scheduled start, so a stalled server can't hide its queueing
+// delay by slowing the generator down (coordinated omission). Embedded mode shares the CPU with the
+// service: compare numbers between runs of the same mode, not with a deployed service.
+// Embedded mode records jdk.VirtualThreadPinned during the measured run (virtual threads parked while stuck to
+// their carrier, e.g. inside synchronized) and reports how often and where.
+// src/load/results holds the servlet vs. reactive comparison (read-heavy, catalog=2000, concurrency=256,
+// duration=30s, warmup=15s, concurrency limit off, embedded on one CPU) and the platform vs. virtual thread
+// comparison at 1000 / 5000 / 10000 clients (read-heavy-c<clients>-<threads>.json, same settings otherwise).
+public final class LoadTest {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final int MAX_IN_FLIGHT = 10_000;
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private final String baseUrl;
+    private final WorkloadProfile profile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    // Keeps SKUs unique when the same database is loaded more than once
+    private final String skuPrefix = "LOAD-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    private final AtomicLong createdCount = new AtomicLong();
+    private final List<String> productIds = new ArrayList<>();
+    private final Map<WorkloadProfile.Operation, OperationStats> stats = new EnumMap<>(WorkloadProfile.Operation.class);
+
+    private LoadTest(String baseUrl, WorkloadProfile profile) {
+        this.baseUrl = baseUrl;
+        this.profile = profile;
+        for (WorkloadProfile.Operation operation : profile.operations()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    // Exits explicitly: netty event loop threads started for the embedded stand-in outlive its shutdown
+    public static void main(String[] args) {
+        int status = 1;
+        try {
+            run(args);
+            status = 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        System.exit(status);
+    }
+
+    private static void run(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> serviceArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                serviceArgs.add(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        WorkloadProfile profile = WorkloadProfile.of(options.getOrDefault("profile", "read-heavy"));
+        int catalog = Integer.parseInt(options.getOrDefault("catalog", String.valueOf(profile.catalogSize)));
+        int rate = Integer.parseInt(options.getOrDefault("rate", "0"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        Duration duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "60s"));
+        Duration warmup = DurationStyle.detectAndParse(options.getOrDefault("warmup", "10s"));
+        String target = options.get("target");
+        String stack = options.getOrDefault("stack", "servlet");
+        if (!stack.equals("servlet") && !stack.equals("reactive")) {
+            throw new IllegalArgumentException("Expected stack=servlet or stack=reactive, got " + stack);
+        }
+        String threads = options.getOrDefault("threads", "platform");
+        if (!threads.equals("platform") && !threads.equals("virtual")) {
+            throw new IllegalArgumentException("Expected threads=platform or threads=virtual, got " + threads);
+        }
+
+        try (EmbeddedService embedded = target == null ? EmbeddedService.start(stack, threads, serviceArgs) : null) {
+            LoadTest test = new LoadTest(target != null ? target : embedded.baseUrl(), profile);
+            System.out.printf("Seeding %d products into %s%n", catalog, test.baseUrl);
+            test.seed(catalog);
+
+            String mode = rate > 0 ? rate + " req/s" : concurrency + " concurrent clients";
+            System.out.printf("Warming up for %s (%s, %s)%n", warmup, profile, mode);
+            test.run(warmup, rate, concurrency);
+            test.stats.values().forEach(OperationStats::reset);
+            ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+
+            System.out.printf("Measuring for %s%n", duration);
+            Recording pinning = target == null ? startPinningRecording() : null;
+            long start = System.nanoTime();
+            test.run(duration, rate, concurrency);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Map<String, Object> report = test.report(seconds);
+            report.put("profile", profile.name());
+            report.put("mode", mode);
+            report.put("catalog", catalog);
+            if (target == null) {
+                report.put("stack", stack);
+                report.put("threads", threads);
+                report.put("serviceArgs", serviceArgs);
+                // Platform threads only: the generator's clients are virtual threads, so this is the
+                // service (plus the MongoDB stand-in), e.g. Tomcat's pool vs. Netty's event loop
+                int peakThreads = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+                System.out.printf("Peak platform threads: %d%n", peakThreads);
+                report.put("peakThreads", peakThreads);
+                report.put("pinning", pinningReport(pinning, options.get("jfr")));
+            }
+            if (options.containsKey("output")) {
+                test.objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(options.get("output")), report);
+            }
+        }
+    }
+
+    // 20) Every park of a pinned virtual thread, however short, with its stack
+    private static Recording startPinningRecording() {
+        Recording recording = new Recording();
+        recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+        recording.start();
+        return recording;
+    }
+
+    // Event count plus the most frequent places, as "top frame <- innermost service frame" (the generator's own
+    // virtual threads are recorded too, so the service frame tells whose pinning it is)
+    private static Map<String, Object> pinningReport(Recording recording, String jfrFile) throws IOException {
+        recording.stop();
+        Path file = jfrFile != null ? Path.of(jfrFile) : Files.createTempFile("load-pinning", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+                    .toList();
+            Map<String, Long> places = events.stream()
+                    .collect(Collectors.groupingBy(LoadTest::pinnedAt, Collectors.counting()));
+            Map<String, Long> top = new LinkedHashMap<>();
+            places.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(10)
+                    .forEach(place -> top.put(place.getKey(), place.getValue()));
+            System.out.printf("Pinned virtual thread parks: %d%n", events.size());
+            top.forEach((place, count) -> System.out.printf("  %6d  %s%n", count, place));
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("events", events.size());
+            report.put("places", top);
+            return report;
+        } finally {
+            recording.close();
+            if (jfrFile == null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static String pinnedAt(RecordedEvent event) {
+        if (event.getStackTrace() == null || event.getStackTrace().getFrames().isEmpty()) {
+            return "(no stack)";
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        String place = frame(frames.getFirst());
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("com.allinone.Product_Service.") && !type.startsWith(LoadTest.class.getPackageName())) {
+                return place + " <- " + frame(frame);
+            }
+        }
+        return place;
+    }
+
+    private static String frame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    // Creates the catalog through the NDJSON batch endpoint and remembers the ids for the reads
+    private void seed(int count) throws IOException, InterruptedException {
+        for (int first = 0; first < count; first += SEED_BATCH_SIZE) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (int i = first; i < Math.min(count, first + SEED_BATCH_SIZE); i++) {
+                objectMapper.writeValue(body, product(skuPrefix + i));
+                body.write('\n');
+            }
+            HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/product/batch"))
+                    .header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                    .build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Seeding failed with " + response.statusCode() + ": " + new String(response.body()));
+            }
+            productIds.addAll(objectMapper.readValue(response.body(), BatchCreateResponse.class).getIds());
+        }
+    }
+
+    private void run(Duration duration, int rate, int concurrency) {
+        long durationNanos = duration.toNanos();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            if (rate > 0) {
+                // Open model: request i is due at start + i / rate, whether or not earlier ones have returned
+                long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+                Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+                for (long i = 0; i * interval < durationNanos; i++) {
+                    long scheduled = start + i * interval;
+                    long wait = scheduled - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    inFlight.acquireUninterruptibly();
+                    clients.execute(() -> {
+                        try {
+                            execute(profile.nextOperation(), scheduled);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+            } else {
+                // Closed model: each client sends its next request when the previous one returned
+                for (int client = 0; client < concurrency; client++) {
+                    clients.execute(() -> {
+                        while (System.nanoTime() - start < durationNanos) {
+                            execute(profile.nextOperation(), System.nanoTime());
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    private void execute(WorkloadProfile.Operation operation, long startNanos) {
+        boolean success;
+        try {
+            HttpResponse<Void> response = httpClient.send(request(operation), HttpResponse.BodyHandlers.discarding());
+            success = response.statusCode() < 400;
+        } catch (IOException e) {
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        stats.get(operation).record(System.nanoTime() - startNanos, success);
+    }
+
+    private HttpRequest request(WorkloadProfile.Operation operation) throws IOException {
+        int product = ThreadLocalRandom.current().nextInt(productIds.size());
+        return switch (operation) {
+            case CREATE -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/product"))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(
+                            objectMapper.writeValueAsBytes(product(skuPrefix + "n" + createdCount.incrementAndGet()))))
+                    .build();
+            case GET_BY_ID -> get("/api/product/" + productIds.get(product));
+            case GET_BY_SKU -> get("/api/product/sku/" + skuPrefix + product);
+            case GET_PAGE -> get("/api/product/page?size=50");
+            case GET_ALL -> get("/api/product");
+        };
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30)).GET().build();
+    }
+
+    private static ProductRequest product(String skuCode) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return ProductRequest.builder()
+                .name("Load test product " + skuCode)
+                .description("Generated by the load test, with a description of typical length for a catalog entry")
+                .skuCode(skuCode)
+                .price(BigDecimal.valueOf(random.nextLong(100, 1_000_000), 2))
+                .build();
+    }
+
+    // Prints the latency table and returns the same numbers for the JSON report
+    private Map<String, Object> report(double seconds) {
+        Map<String, Object> operations = new LinkedHashMap<>();
+        Histogram total = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+        long totalErrors = 0;
+        System.out.printf("%n%-12s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<WorkloadProfile.Operation, OperationStats> entry : stats.entrySet()) {
+            Histogram histogram = entry.getValue().latencies.getIntervalHistogram();
+            long errors = entry.getValue().errors.sum();
+            total.add(histogram);
+            totalErrors += errors;
+            operations.put(entry.getKey().name(), printRow(entry.getKey().name(), histogram, errors, seconds));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("durationSeconds", seconds);
+        report.put("total", printRow("TOTAL", total, totalErrors, seconds));
+        report.put("operations", operations);
+        return report;
+    }
+
+    private static Map<String, Object> printRow(String name, Histogram histogram, long errors, double seconds) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("count", histogram.getTotalCount());
+        row.put("errors", errors);
+        row.put("throughput", histogram.getTotalCount() / seconds);
+        row.put("p50", millis(histogram.getValueAtPercentile(50)));
+        row.put("p90", millis(histogram.getValueAtPercentile(90)));
+        row.put("p99", millis(histogram.getValueAtPercentile(99)));
+        row.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+        row.put("max", millis(histogram.getMaxValue()));
+        System.out.printf("%-12s %9d %7d %9.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n", name, histogram.getTotalCount(), errors,
+                row.get("throughput"), row.get("p50"), row.get("p90"), row.get("p99"), row.get("p999"), row.get("max"));
+        return row;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    // Latencies in microseconds; Recorder allows concurrent recording while the report swaps out the histogram
+    private static final class OperationStats {
+        private final Recorder latencies = new Recorder(HIGHEST_LATENCY_MICROS, 3);
+        private final LongAdder errors = new LongAdder();
+
+        void record(long nanos, boolean success) {
+            latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_LATENCY_MICROS));
+            if (!success) {
+                errors.increment();
+            }
+        }
+
+        void reset() {
+            latencies.reset();
+            errors.reset();
+        }
+    }
+
+    // The service plus an in-memory MongoDB wire protocol server, both in this JVM
+    private static final class EmbeddedService implements AutoCloseable {
+
+        private final MongoServer mongoServer;
+        private final ConfigurableApplicationContext context;
+
+        private EmbeddedService(MongoServer mongoServer, ConfigurableApplicationContext context) {
+            this.mongoServer = mongoServer;
+            this.context = context;
+        }
+
+        static EmbeddedService start(String stack, String threads, List<String> serviceArgs) {
+            // The stand-in reports 4.0 by default, which the 5.x driver refuses; claim 6.0 (wire version 17)
+            MongoServer mongoServer = new MongoServer(new MemoryBackend().version(new MongoVersion() {
+                @Override
+                public List<Integer> getVersionArray() {
+                    return List.of(6, 0, 0);
+                }
+
+                @Override
+                public int getWireVersion() {
+                    return 17;
+                }
+            }));
+            mongoServer.bind("127.0.0.1", 0);
+            List<String> args = new ArrayList<>(List.of(
+                    "--server.port=0",
+                    "--spring.data.mongodb.uri=" + mongoServer.getConnectionString(),
+                    // One INFO line per created product would measure the console, not the service
+                    "--logging.level.com.allinone.Product_Service=WARN"));
+            if (stack.equals("reactive")) {
+                args.add("--spring.profiles.active=reactive");
+            }
+            args.add("--spring.threads.virtual.enabled=" + threads.equals("virtual"));
+            args.addAll(serviceArgs);
+            ConfigurableApplicationContext context = SpringApplication.run(ProductServiceApplication.class,
+                    args.toArray(String[]::new));
+            return new EmbeddedService(mongoServer, context);
+        }
+
+        String baseUrl() {
+            return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        @Override
+        public void close() {
+            context.close();
+            mongoServer.shutdownNow();
+        }
+    }
+}
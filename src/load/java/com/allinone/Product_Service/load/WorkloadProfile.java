@@ -0,0 +1,70 @@
+// 27) Request mixes for the load generator
+
+package com.allinone.Product_Service.load;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Catalog size seeded before the run and the share of each operation (weights, not necessarily summing to 100)
+enum WorkloadProfile {
+
+    // Browsing traffic: mostly single product lookups, some paging, rare full list and creates
+    READ_HEAVY(10_000, Map.of(
+            Operation.GET_BY_ID, 70,
+            Operation.GET_BY_SKU, 15,
+            Operation.GET_PAGE, 9,
+            Operation.GET_ALL, 1,
+            Operation.CREATE, 5)),
+
+    // Catalog import / sync traffic
+    WRITE_HEAVY(10_000, Map.of(
+            Operation.CREATE, 80,
+            Operation.GET_BY_ID, 15,
+            Operation.GET_PAGE, 5)),
+
+    // Read mix on a catalog big enough that the full list (and the snapshot rebuild after each create) gets expensive
+    LARGE_CATALOG(200_000, Map.of(
+            Operation.GET_BY_ID, 70,
+            Operation.GET_BY_SKU, 10,
+            Operation.GET_PAGE, 15,
+            Operation.GET_ALL, 1,
+            Operation.CREATE, 4));
+
+    enum Operation {
+        CREATE, GET_BY_ID, GET_BY_SKU, GET_PAGE, GET_ALL
+    }
+
+    final int catalogSize;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    WorkloadProfile(int catalogSize, Map<Operation, Integer> weights) {
+        this.catalogSize = catalogSize;
+        this.operations = weights.keySet().stream().sorted().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < operations.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    Operation[] operations() {
+        return operations.clone();
+    }
+
+    // read-heavy -> READ_HEAVY
+    static WorkloadProfile of(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
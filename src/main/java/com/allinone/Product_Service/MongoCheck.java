@@ -2,30 +2,163 @@
 
 package com.allinone.Product_Service;
 
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductRepository;
 import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoIterable;
-import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Component;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// 29) The check doubles as the startup warm-up and is reported as a readiness health indicator
+// (/actuator/health/readiness): OUT_OF_SERVICE while it runs, DOWN with the error while MongoDB can't be
+// reached (retried every retry-interval), UP once the pool is warm. Startup itself never waits for it.
+// 28) nothing to check when products are stored in the local mapped file
+@ConditionalOnProperty(name = "product.storage.backend", havingValue = "mongo", matchIfMissing = true)
+@Slf4j
 @Component
-public class MongoCheck implements CommandLineRunner {
+public class MongoCheck implements CommandLineRunner, HealthIndicator {
+
+    private final MongoClient mongoClient;
+    private final ProductRepository productRepository;
+
+    // 20) Boot's application executor: virtual threads when spring.threads.virtual.enabled=true
+    private final TaskExecutor taskExecutor;
+    private final MeterRegistry meterRegistry;
 
-    @Autowired
-    private MongoClient mongoClient;
+    // Pooled connections to open before reporting ready
+    private final int warmUpConnections;
+    private final Duration warmUpTimeout;
+    private final Duration retryInterval;
+
+    private volatile Health health = Health.outOfService().withDetail("status", "warming up").build();
+    // JVM uptime when the warm-up finished, NaN until then
+    private volatile double readyAtMillis = Double.NaN;
+
+    public MongoCheck(MongoClient mongoClient,
+                      ProductRepository productRepository,
+                      @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+                      MeterRegistry meterRegistry,
+                      @Value("${product.startup.warm-up.connections:10}") int warmUpConnections,
+                      @Value("${product.startup.warm-up.timeout:10s}") Duration warmUpTimeout,
+                      @Value("${product.startup.warm-up.retry-interval:5s}") Duration retryInterval) {
+        this.mongoClient = mongoClient;
+        this.productRepository = productRepository;
+        this.taskExecutor = taskExecutor;
+        this.meterRegistry = meterRegistry;
+        this.warmUpConnections = warmUpConnections;
+        this.warmUpTimeout = warmUpTimeout;
+        this.retryInterval = retryInterval;
+        TimeGauge.builder("product.startup.mongo.ready", this, TimeUnit.MILLISECONDS, check -> check.readyAtMillis)
+                .description("Time from JVM start until MongoDB was reachable and the connection pool warm")
+                .register(meterRegistry);
+    }
 
     @Override
     public void run(String... args) {
-        try {
-            // Get database names as a test
-            MongoIterable<String> dbs = mongoClient.listDatabaseNames();
-            System.out.println("✅ MongoDB Connected! Available databases:");
-            for (String dbName : dbs) {
-                System.out.println(" - " + dbName);
+        // Don't hold up startup with a network round trip, run the check in the background
+        taskExecutor.execute(this::checkConnection);
+    }
+
+    @Override
+    public Health health() {
+        return health;
+    }
+
+    private void checkConnection() {
+        long start = System.nanoTime();
+        while (true) {
+            try {
+                // Get database names as a test
+                List<String> databases = mongoClient.listDatabaseNames().into(new ArrayList<>());
+                int connections = warmUpPool();
+                warmUpQueries();
+
+                long elapsed = System.nanoTime() - start;
+                readyAtMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+                meterRegistry.timer("product.startup.mongo.warm-up").record(elapsed, TimeUnit.NANOSECONDS);
+                health = Health.up()
+                        .withDetail("databases", databases)
+                        .withDetail("pooledConnections", connections)
+                        .withDetail("warmUpMillis", TimeUnit.NANOSECONDS.toMillis(elapsed))
+                        .build();
+                log.info("✅ MongoDB connected and warmed up in {} ms ({} pooled connections), databases: {}",
+                        TimeUnit.NANOSECONDS.toMillis(elapsed), connections, databases);
+                return;
+            } catch (Exception e) {
+                health = Health.down(e).build();
+                log.warn("❌ MongoDB connection failed, retrying in {}: {}", retryInterval, e.toString());
+            }
+            try {
+                Thread.sleep(retryInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // The driver only opens a connection when a request finds none idle (minPoolSize is filled by a
+    // background task that runs once a minute). So ping from warmUpConnections threads at once until the
+    // pool holds that many connections, each with TCP / TLS / auth handshakes done. Returns the pool size.
+    private int warmUpPool() throws Exception {
+        long deadline = System.nanoTime() + warmUpTimeout.toNanos();
+        Document ping = new Document("ping", 1);
+        // Own threads: the application executor has fewer threads than connections to open
+        int size;
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            do {
+                List<Future<?>> pings = new ArrayList<>();
+                for (int i = 0; i < warmUpConnections; i++) {
+                    pings.add(threads.submit(() -> mongoClient.getDatabase("admin").runCommand(ping)));
+                }
+                for (Future<?> future : pings) {
+                    future.get();
+                }
+                size = poolSize();
+            } while (size >= 0 && size < warmUpConnections && System.nanoTime() < deadline);
+        }
+        return size;
+    }
+
+    // Connections across all pools (one per server), from the gauge Boot's Mongo metrics maintain;
+    // -1 without Mongo metrics (then a single round of pings has to do)
+    private int poolSize() {
+        Collection<Gauge> gauges = meterRegistry.find("mongodb.driver.pool.size").gauges();
+        return gauges.isEmpty() ? -1 : (int) gauges.stream().mapToDouble(Gauge::value).sum();
+    }
+
+    // One of each query the endpoints run, so mapping metadata, codecs and server plans are in place
+    // before the first real request needs them
+    private void warmUpQueries() {
+        List<Product> first = productRepository.findAllByOrderByIdAsc(Limit.of(1));
+        if (!first.isEmpty()) {
+            productRepository.findById(first.get(0).getId());
+            productRepository.findByIdGreaterThanOrderByIdAsc(first.get(0).getId(), Limit.of(1));
+            if (first.get(0).getSkuCode() != null) {
+                productRepository.findBySkuCode(first.get(0).getSkuCode());
             }
-        } catch (Exception e) {
-            System.out.println("❌ MongoDB Connection Failed:");
-            e.printStackTrace();
         }
     }
 }
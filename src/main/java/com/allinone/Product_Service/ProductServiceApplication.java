@@ -1,13 +1,40 @@
 package com.allinone.Product_Service;
 
+import com.allinone.Product_Service.dto.ProductImportStatus;
+import com.allinone.Product_Service.service.ProductImportFile;
+import com.allinone.Product_Service.service.ProductImportJob;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
 
 @SpringBootApplication
 public class ProductServiceApplication {
 
 	public static void main(String[] args) {
+		// 35) "import <file> [csv|ndjson] [--property=value ...]": bulk-loads the file without a web server and exits
+		if (args.length >= 2 && args[0].equals("import")) {
+			System.exit(importFile(args));
+		}
 		SpringApplication.run(ProductServiceApplication.class, args);
 	}
 
+	// Exit code 0 when the import completed (records that failed are logged), 1 otherwise; run the same
+	// command again to resume
+	private static int importFile(String[] args) {
+		Path file = Path.of(args[1]);
+		boolean hasFormat = args.length > 2 && !args[2].startsWith("--");
+		ProductImportFile.Format format = hasFormat ? ProductImportFile.Format.valueOf(args[2].toUpperCase(Locale.ROOT)) : null;
+
+		SpringApplication application = new SpringApplication(ProductServiceApplication.class);
+		application.setWebApplicationType(WebApplicationType.NONE);
+		ConfigurableApplicationContext context = application.run(Arrays.copyOfRange(args, hasFormat ? 3 : 2, args.length));
+		ProductImportStatus status = context.getBean(ProductImportJob.class).run(file, format);
+		return SpringApplication.exit(context, () -> status.getState() == ProductImportStatus.State.COMPLETED ? 0 : 1);
+	}
+
 }
@@ -0,0 +1,128 @@
+// 37) Concurrency limit that follows the observed latency (gradient, with multiplicative decrease on errors)
+
+package com.allinone.Product_Service.controller;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// How many requests may run at once. Latencies are averaged per window; each window compares that average
+// (short) with a slow moving average of earlier windows (long, the latency when nothing queues):
+//
+//   gradient = clamp(tolerance * long / short, 0.5, 1)
+//   limit    = smoothed(limit * gradient + sqrt(limit))
+//
+// While latency stays within tolerance * long the limit grows by about sqrt(limit) per window; once
+// requests queue in MongoDB (or anywhere behind it) latency rises and the limit shrinks towards what
+// keeps it flat. A window with a 5xx or failed request cuts the limit by BACKOFF right away, AIMD style.
+// The limit only grows while requests actually use half of it, so a quiet period can't inflate it.
+public final class AdaptiveConcurrencyLimit {
+
+    // Weight of a new window in the limit, and in the long average (about the last 100 windows)
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_SMOOTHING = 0.01;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    // Guarded by this
+    private long windowStart = System.nanoTime();
+    private long windowLatency;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+    private double longLatency;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, Duration window) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Needs 1 <= min-limit <= initial-limit <= max-limit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.windowNanos = window.toNanos();
+        this.limit = initialLimit;
+    }
+
+    // Takes a slot if fewer than share * limit are in use (share < 1 keeps the rest for other requests);
+    // every true has to be followed by one release
+    public boolean tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (limit * share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Frees the slot. latencyNanos < 0: no sample (the duration doesn't say anything about the backend);
+    // dropped: the request failed or timed out.
+    public void release(long latencyNanos, boolean dropped) {
+        int wasInFlight = inFlight.getAndDecrement();
+        if (latencyNanos < 0 && !dropped) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            windowMaxInFlight = Math.max(windowMaxInFlight, wasInFlight);
+            windowDropped |= dropped;
+            if (latencyNanos >= 0) {
+                windowLatency += latencyNanos;
+                windowSamples++;
+            }
+            if (now - windowStart >= windowNanos) {
+                update();
+                windowStart = now;
+                windowLatency = 0;
+                windowSamples = 0;
+                windowMaxInFlight = 0;
+                windowDropped = false;
+            }
+        }
+    }
+
+    private void update() {
+        double current = limit;
+        if (windowDropped) {
+            limit = Math.max(minLimit, current * BACKOFF);
+            return;
+        }
+        if (windowSamples == 0) {
+            return;
+        }
+        double shortLatency = Math.max((double) windowLatency / windowSamples, 1);
+        longLatency = longLatency == 0 ? shortLatency : longLatency + (shortLatency - longLatency) * LONG_SMOOTHING;
+        // Latency fell well below the long average (the backend recovered): let the average catch up faster
+        if (longLatency / shortLatency > 2) {
+            longLatency *= 0.95;
+        }
+        if (windowMaxInFlight < current / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatency / shortLatency));
+        double next = current * gradient + Math.sqrt(current);
+        limit = Math.max(minLimit, Math.min(maxLimit, current * (1 - SMOOTHING) + next * SMOOTHING));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    // All slots are taken
+    public boolean isSaturated() {
+        return inFlight.get() >= (int) limit;
+    }
+}
@@ -2,32 +2,79 @@
 package com.allinone.Product_Service.controller;
 
 // Lombok annotation: generates a constructor for all final fields (like productService)
+import com.allinone.Product_Service.dto.BatchCreateResponse;
+import com.allinone.Product_Service.dto.ProductChangesResponse;
+import com.allinone.Product_Service.dto.ProductPageResponse;
 import com.allinone.Product_Service.dto.ProductRequest;
 import com.allinone.Product_Service.dto.ProductResponse;
+import com.allinone.Product_Service.dto.ProductSearchResponse;
+import com.allinone.Product_Service.repository.InvalidPriceException;
+import com.allinone.Product_Service.repository.ProductRepositoryCustom;
+import com.allinone.Product_Service.service.CatalogSnapshot;
+import com.allinone.Product_Service.service.ProductChangesService;
+import com.allinone.Product_Service.service.ProductPriceService;
+import com.allinone.Product_Service.service.ProductSearchService;
 import com.allinone.Product_Service.service.ProductService;
+import com.allinone.Product_Service.service.ProductWritePendingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
 
 // Used to set custom HTTP status codes
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 
 // Spring annotations for REST controllers and HTTP mapping
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.util.List;
 
 // Marks this class as a REST controller (Spring will auto-detect and handle HTTP requests)
 @RestController
 
+// 19) Servlet stack only; the "reactive" profile uses ReactiveProductController instead
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+
 // Sets the base URL path for all endpoints in this controller to /api/product
 @RequestMapping("/api/product")
 
 // Lombok annotation: creates a constructor for final fields (here: productService), so no need for @Autowired
 @RequiredArgsConstructor
+
+// 26) product.controller timer per handler method (tags class, method, exception); excludes dispatch and
+// body conversion, which show up in http.server.requests. /stream only covers handing out the body.
+@Timed("product.controller")
 public class ProductController {
 
     // Final field to hold the service layer dependency
     private final ProductService productService;
 
+    // Used to read NDJSON batch bodies line by line
+    private final ObjectMapper objectMapper;
+
+    // Pre-serialized bytes of the full product list
+    private final CatalogSnapshot catalogSnapshot;
+
+    // In-memory keyword search
+    private final ProductSearchService productSearchService;
+
+    // In-memory price index for price bands / cheapest / most expensive
+    private final ProductPriceService productPriceService;
+
+    // Changes since a token for delta sync
+    private final ProductChangesService productChangesService;
+
     // Handles HTTP POST requests to /api/product
     // Accepts a JSON body, converts it to ProductRequest, and calls the service layer
     @PostMapping
@@ -36,12 +83,198 @@ public class ProductController {
         productService.createProduct(productRequest);
     }
 
+    // 15) Handles HTTP POST requests to /api/product/batch with a JSON array body
+    // Returns 201 when every product was inserted, 207 with per-item errors otherwise
+    // 33) or the same list as Smile / CBOR / Protobuf (ProductRequestList)
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, ProductWireFormats.APPLICATION_SMILE_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, MediaType.APPLICATION_PROTOBUF_VALUE})
+    public ResponseEntity<BatchCreateResponse> createProducts(@RequestBody List<ProductRequest> productRequests) {
+        return batchResponse(productService.createProducts(productRequests.iterator()));
+    }
+
+    // Same as above, but the body is NDJSON (one ProductRequest per line) and is inserted while it is read
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BatchCreateResponse> createProductsNdjson(InputStream body) throws IOException {
+        try (MappingIterator<ProductRequest> productRequests = objectMapper.readerFor(ProductRequest.class).readValues(body)) {
+            return batchResponse(productService.createProducts(productRequests));
+        }
+    }
+
+    private ResponseEntity<BatchCreateResponse> batchResponse(BatchCreateResponse response) {
+        HttpStatus status = response.getErrors().isEmpty() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(response);
+    }
+
     // Handles HTTP GET requests to /api/product
     // Returns a list of ProductResponse DTOs to the client
-    @GetMapping
-    @ResponseStatus(HttpStatus.OK) // Returns HTTP 200
-    public List<ProductResponse> getAllProducts() {
-        return productService.getAllProducts();
+    // 18) served from the pre-serialized snapshot: 304 when the client's ETag is still current, gzip when accepted
+    // 24) ?minPrice=&maxPrice=&sort=price|-price&limit= filters / orders by price from the in-memory price index
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getAllProducts(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                            @RequestParam(required = false) BigDecimal minPrice,
+                                            @RequestParam(required = false) BigDecimal maxPrice,
+                                            @RequestParam(required = false) String sort,
+                                            @RequestParam(required = false) Integer limit) {
+        if (minPrice != null || maxPrice != null || sort != null || limit != null) {
+            return ResponseEntity.ok()
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(productPriceService.getProductsByPrice(minPrice, maxPrice, sort, limit == null ? 100 : limit));
+        }
+
+        CatalogSnapshot.Snapshot snapshot = catalogSnapshot.get();
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? snapshot.gzipEtag() : snapshot.etag();
+
+        if (snapshot.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip());
+        }
+        return response.body(snapshot.json());
+    }
+
+    // 33) Same list for Accept: Smile / CBOR / Protobuf (ProductResponseList), encoded from the cached
+    // products by the negotiated converter; JSON stays on the pre-serialized snapshot above
+    @GetMapping(produces = {ProductWireFormats.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            MediaType.APPLICATION_PROTOBUF_VALUE})
+    public ResponseEntity<List<ProductResponse>> getAllProductsBinary(@RequestParam(required = false) BigDecimal minPrice,
+                                                                      @RequestParam(required = false) BigDecimal maxPrice,
+                                                                      @RequestParam(required = false) String sort,
+                                                                      @RequestParam(required = false) Integer limit) {
+        List<ProductResponse> products = minPrice != null || maxPrice != null || sort != null || limit != null
+                ? productPriceService.getProductsByPrice(minPrice, maxPrice, sort, limit == null ? 100 : limit)
+                : productService.getAllProducts();
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(products);
+    }
+
+    // 23) Handles HTTP GET requests to /api/product/search?q=&page=&size=
+    // Keyword search over name and description, ranked, served from the in-memory index
+    @GetMapping("/search")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductSearchResponse searchProducts(@RequestParam("q") String query,
+                                                @RequestParam(defaultValue = "0") int page,
+                                                @RequestParam(defaultValue = "20") int size) {
+        return productSearchService.search(query, page, size);
+    }
+
+    // 22) Handles HTTP GET requests to /api/product/{id}
+    // Returns one product (from the cache or an _id lookup), 404 if there is none
+    @GetMapping("/{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductResponse getProductById(@PathVariable String id) {
+        return found(productService.getProductById(id));
+    }
+
+    // Handles HTTP GET requests to /api/product/sku/{skuCode}, served from the unique skuCode index
+    @GetMapping("/sku/{skuCode}")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductResponse getProductBySkuCode(@PathVariable String skuCode) {
+        return found(productService.getProductBySkuCode(skuCode));
+    }
+
+    // 31) Handles HTTP PUT requests to /api/product/{id}
+    // Replaces name, description, skuCode and price; 404 if there is no such product
+    @PutMapping("/{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductResponse updateProduct(@PathVariable String id, @RequestBody ProductRequest productRequest) {
+        return found(productService.updateProduct(id, productRequest));
+    }
+
+    // 31) Handles HTTP DELETE requests to /api/product/{id}
+    // Returns 204, or 404 if there is no such product
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void deleteProduct(@PathVariable String id) {
+        if (!productService.deleteProduct(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
+        }
+    }
+
+    private ProductResponse found(ProductResponse productResponse) {
+        if (productResponse == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
+        }
+        return productResponse;
+    }
+
+    // Duplicate id or SKU code (unique index) on create / update
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<String> handleDuplicate(DataIntegrityViolationException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(conflictMessage(e));
+    }
+
+    // Names the unique index that was violated; also used by ReactiveProductController
+    static String conflictMessage(DataIntegrityViolationException e) {
+        String field = ProductRepositoryCustom.duplicateKeyField(e.getMessage());
+        if ("id".equals(field)) {
+            return "Product with this id already exists";
+        }
+        if ("skuCode".equals(field)) {
+            return "Product with this SKU code already exists";
+        }
+        return "Product conflicts with an existing product";
+    }
+
+    // 16) Coalesced create still being written after write-timeout: 202 with where the product will be. It may
+    // be stored after all, so the client checks there instead of retrying (which could create it twice).
+    @ExceptionHandler(ProductWritePendingException.class)
+    public ResponseEntity<String> handleWritePending(ProductWritePendingException e) {
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequestUri()
+                        .path("/{id}")
+                        .buildAndExpand(e.getProductId())
+                        .toUri())
+                .body("Product " + e.getProductId() + " is still being written");
+    }
+
+    // 34) Price the configured representation can't store, on create / update
+    @ExceptionHandler(InvalidPriceException.class)
+    public ResponseEntity<String> handleInvalidPrice(InvalidPriceException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
+    // 13) Handles HTTP GET requests to /api/product/page?cursor=&size=
+    // Returns one page plus a cursor / link for the next one (keyset pagination)
+    @GetMapping("/page")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductPageResponse getProductPage(@RequestParam(required = false) String cursor,
+                                              @RequestParam(defaultValue = "50") int size) {
+        ProductPageResponse page = productService.getProductPage(cursor, size);
+        if (page.getNextCursor() != null) {
+            page.setNext(ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .toUriString());
+        }
+        return page;
+    }
+
+    // 31) Handles HTTP GET requests to /api/product/changes?since=&limit=
+    // Products inserted / updated and deleted since the token of the previous call (none: everything),
+    // plus the token for the next one. 410 once a token is older than the tombstone retention.
+    @GetMapping("/changes")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductChangesResponse getChanges(@RequestParam(required = false) String since,
+                                             @RequestParam(defaultValue = "500") int limit) {
+        return productChangesService.getChanges(since, limit);
+    }
+
+    // 14) Handles HTTP GET requests to /api/product/stream
+    // Streams the whole catalog as NDJSON (one product per line) straight from the Mongo cursor
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamProducts() {
+        return productService::streamAllProducts;
     }
 }
 
@@ -119,4 +352,4 @@ public class ProductController {
 //
 //---
 //
-//Let me know if you'd like me to show this with a `@Service` class too or compare `@Autowired` vs constructor injection.
\ No newline at end of file
+//Let me know if you'd like me to show this with a `@Service` class too or compare `@Autowired` vs constructor injection.
@@ -0,0 +1,39 @@
+// 32) Push feed of product changes as Server-Sent Events
+
+package com.allinone.Product_Service.controller;
+
+import com.allinone.Product_Service.event.ProductEventFeed;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Only with product.change-stream.enabled=true (MongoDB as a replica set), which is what feeds it
+@RestController
+@ConditionalOnProperty(name = "product.change-stream.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/product")
+@RequiredArgsConstructor
+@Timed("product.controller")
+public class ProductEventController {
+
+    private final ProductEventFeed productEventFeed;
+
+    // Handles HTTP GET requests to /api/product/events
+    // Events "upsert" / "delete" carry the same JSON as a change from /api/product/changes, their id is a
+    // resume token: reconnecting with Last-Event-ID (EventSource does) continues after it. "reset" means
+    // changes were lost; sync again with /api/product/changes and reconnect without an id.
+    // lastEventId= is the same for clients that can't set the header.
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                   @RequestParam(required = false) String lastEventId) {
+        return productEventFeed.subscribe(lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+}
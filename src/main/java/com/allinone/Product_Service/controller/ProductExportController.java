@@ -0,0 +1,74 @@
+// 36) Admin endpoint for the partitioned export
+
+package com.allinone.Product_Service.controller;
+
+import com.allinone.Product_Service.dto.ProductExportStatus;
+import com.allinone.Product_Service.service.ProductExportJob;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Locale;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "product.storage.backend", havingValue = "mongo", matchIfMissing = true)
+@RequestMapping("/api/admin/export")
+@RequiredArgsConstructor
+@Timed("product.controller")
+public class ProductExportController {
+
+    private final ProductExportJob productExportJob;
+
+    // Handles HTTP POST requests to /api/admin/export?format=&resume=
+    // Starts exporting the catalog into a new directory under product.export.directory (format ndjson / bson,
+    // default ndjson) and returns 202 with its status; resume=<id> continues an earlier export instead.
+    // 409 while an export is running.
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ProductExportStatus startExport(@RequestParam(required = false) String format,
+                                           @RequestParam(required = false) String resume) {
+        return productExportJob.start(format == null ? ProductExportJob.Format.NDJSON : format(format), resume);
+    }
+
+    private ProductExportJob.Format format(String format) {
+        try {
+            return ProductExportJob.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be ndjson or bson");
+        }
+    }
+
+    // Handles HTTP GET requests to /api/admin/export
+    // Progress and throughput of the running or last export; 404 if there was none
+    @GetMapping
+    @ResponseStatus(HttpStatus.OK)
+    public ProductExportStatus getExportStatus() {
+        ProductExportStatus status = productExportJob.status();
+        if (status == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No export has run");
+        }
+        return status;
+    }
+
+    // Handles HTTP DELETE requests to /api/admin/export
+    // Cancels the running export (resumable), 404 if none is running
+    @DeleteMapping
+    @ResponseStatus(HttpStatus.OK)
+    public ProductExportStatus cancelExport() {
+        if (!productExportJob.cancel()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No export is running");
+        }
+        return productExportJob.status();
+    }
+}
@@ -0,0 +1,72 @@
+// 35) Admin endpoint for the bulk import job
+
+package com.allinone.Product_Service.controller;
+
+import com.allinone.Product_Service.dto.ProductImportStatus;
+import com.allinone.Product_Service.service.ProductImportFile;
+import com.allinone.Product_Service.service.ProductImportJob;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Locale;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/admin/import")
+@RequiredArgsConstructor
+@Timed("product.controller")
+public class ProductImportController {
+
+    private final ProductImportJob productImportJob;
+
+    // Handles HTTP POST requests to /api/admin/import?file=&format=
+    // Starts importing a file from product.import.directory (format csv / ndjson, default from the extension)
+    // and returns 202 with its status; 409 while an import is running. Starting the same file again resumes it.
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ProductImportStatus startImport(@RequestParam String file,
+                                           @RequestParam(required = false) String format) {
+        return productImportJob.start(productImportJob.resolve(file), format == null ? null : format(format));
+    }
+
+    private ProductImportFile.Format format(String format) {
+        try {
+            return ProductImportFile.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be csv or ndjson");
+        }
+    }
+
+    // Handles HTTP GET requests to /api/admin/import
+    // Progress, throughput and first errors of the running or last import; 404 if there was none
+    @GetMapping
+    @ResponseStatus(HttpStatus.OK)
+    public ProductImportStatus getImportStatus() {
+        ProductImportStatus status = productImportJob.status();
+        if (status == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No import has run");
+        }
+        return status;
+    }
+
+    // Handles HTTP DELETE requests to /api/admin/import
+    // Cancels the running import (resumable), 404 if none is running
+    @DeleteMapping
+    @ResponseStatus(HttpStatus.OK)
+    public ProductImportStatus cancelImport() {
+        if (!productImportJob.cancel()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No import is running");
+        }
+        return productImportJob.status();
+    }
+}
@@ -0,0 +1,249 @@
+// 37) Adaptive concurrency limits in front of /api/product: excess requests get 503 + Retry-After right away
+
+package com.allinone.Product_Service.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.WebFilter;
+import reactor.core.publisher.SignalType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// When MongoDB slows down, requests would otherwise wait in Tomcat's queue (or for a pooled connection)
+// until they all time out, cached reads included. Reads and writes each get an AdaptiveConcurrencyLimit;
+// a request over its limit is answered with 503 and Retry-After before any work is done, so the ones
+// admitted keep their normal latency and the client can back off or go to another instance.
+//
+// Priorities: bulk listings (the whole catalog, pages, the NDJSON stream, delta sync) may only use
+// bulk-share of the read limit, and none while writes are at their limit, so they are shed first and
+// leave MongoDB to the writes and point reads. Their duration depends on the catalog size rather than on
+// the backend, so it isn't fed into the latency the read limit follows. The same goes for bulk writes
+// (POST /batch): they take write slots like any write, but their duration isn't a write latency sample.
+// /api/product/events (long-lived SSE) and the admin endpoints aren't limited.
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "product.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class ProductLoadShedding {
+
+    enum Priority {
+        WRITE("write"),
+        BULK_WRITE("write"),
+        READ("read"),
+        BULK("read");
+
+        private final String limiter;
+
+        Priority(String limiter) {
+            this.limiter = limiter;
+        }
+    }
+
+    private static final String PATH = "/api/product";
+    private static final Set<String> BULK_PATHS = Set.of(PATH, PATH + "/page", PATH + "/stream", PATH + "/changes");
+    private static final Set<String> BULK_WRITE_PATHS = Set.of(PATH + "/batch");
+    private static final Set<String> UNLIMITED_PATHS = Set.of(PATH + "/events");
+
+    private final AdaptiveConcurrencyLimit readLimit;
+    private final AdaptiveConcurrencyLimit writeLimit;
+    private final double bulkShare;
+    private final String retryAfter;
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+
+    public ProductLoadShedding(MeterRegistry meterRegistry,
+                               @Value("${product.concurrency-limit.read.initial-limit:50}") int readInitialLimit,
+                               @Value("${product.concurrency-limit.read.min-limit:8}") int readMinLimit,
+                               @Value("${product.concurrency-limit.read.max-limit:400}") int readMaxLimit,
+                               @Value("${product.concurrency-limit.write.initial-limit:20}") int writeInitialLimit,
+                               @Value("${product.concurrency-limit.write.min-limit:4}") int writeMinLimit,
+                               @Value("${product.concurrency-limit.write.max-limit:200}") int writeMaxLimit,
+                               @Value("${product.concurrency-limit.tolerance:2.0}") double tolerance,
+                               @Value("${product.concurrency-limit.window:100ms}") Duration window,
+                               @Value("${product.concurrency-limit.bulk-share:0.5}") double bulkShare,
+                               @Value("${product.concurrency-limit.retry-after:1s}") Duration retryAfter) {
+        this.readLimit = new AdaptiveConcurrencyLimit(readInitialLimit, readMinLimit, readMaxLimit, tolerance, window);
+        this.writeLimit = new AdaptiveConcurrencyLimit(writeInitialLimit, writeMinLimit, writeMaxLimit, tolerance, window);
+        this.bulkShare = bulkShare;
+        this.retryAfter = Long.toString(Math.max(1, retryAfter.toSeconds()));
+
+        register(meterRegistry, "read", readLimit);
+        register(meterRegistry, "write", writeLimit);
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, Counter.builder("product.concurrency.rejected")
+                    .description("Requests answered with 503 because their concurrency limit was reached")
+                    .tag("limiter", priority.limiter)
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    private static void register(MeterRegistry meterRegistry, String name, AdaptiveConcurrencyLimit limit) {
+        Gauge.builder("product.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("product.concurrency.in.flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Requests currently admitted by the concurrency limit")
+                .tag("limiter", name)
+                .register(meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public OncePerRequestFilter loadSheddingFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                Priority priority = classify(request.getMethod(), request.getRequestURI().substring(request.getContextPath().length()));
+                if (priority == null) {
+                    chain.doFilter(request, response);
+                    return;
+                }
+                Permit permit = acquire(priority);
+                if (permit == null) {
+                    response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                    response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+                    response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+                    response.getWriter().write("Too many concurrent requests, retry later");
+                    return;
+                }
+                try {
+                    chain.doFilter(request, response);
+                } catch (IOException | ServletException | RuntimeException e) {
+                    permit.completed(true);
+                    throw e;
+                }
+                if (!request.isAsyncStarted()) {
+                    permit.completed(response.getStatus() >= 500);
+                    return;
+                }
+                // /stream: the slot is held until the body is written
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        permit.completed(response.getStatus() >= 500);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        permit.completed(true);
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        permit.completed(true);
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public WebFilter loadSheddingWebFilter() {
+        return (exchange, chain) -> {
+            Priority priority = classify(exchange.getRequest().getMethod().name(),
+                    exchange.getRequest().getPath().pathWithinApplication().value());
+            if (priority == null) {
+                return chain.filter(exchange);
+            }
+            Permit permit = acquire(priority);
+            ServerHttpResponse response = exchange.getResponse();
+            if (permit == null) {
+                response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfter);
+                return response.setComplete();
+            }
+            return chain.filter(exchange).doFinally(signal -> {
+                if (signal == SignalType.CANCEL) {
+                    // The client went away, the duration says nothing
+                    permit.cancelled();
+                } else {
+                    HttpStatusCode status = response.getStatusCode();
+                    permit.completed(signal == SignalType.ON_ERROR || (status != null && status.is5xxServerError()));
+                }
+            });
+        };
+    }
+
+    // Null: not limited
+    static Priority classify(String method, String path) {
+        if (!path.equals(PATH) && !path.startsWith(PATH + "/") || UNLIMITED_PATHS.contains(path)
+                || HttpMethod.OPTIONS.matches(method)) {
+            return null;
+        }
+        if (!HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method)) {
+            return BULK_WRITE_PATHS.contains(path) ? Priority.BULK_WRITE : Priority.WRITE;
+        }
+        return BULK_PATHS.contains(path) ? Priority.BULK : Priority.READ;
+    }
+
+    // Null when rejected
+    Permit acquire(Priority priority) {
+        boolean admitted = switch (priority) {
+            case WRITE, BULK_WRITE -> writeLimit.tryAcquire(1);
+            case READ -> readLimit.tryAcquire(1);
+            case BULK -> !writeLimit.isSaturated() && readLimit.tryAcquire(bulkShare);
+        };
+        if (!admitted) {
+            rejected.get(priority).increment();
+            return null;
+        }
+        boolean write = priority == Priority.WRITE || priority == Priority.BULK_WRITE;
+        return new Permit(write ? writeLimit : readLimit, priority == Priority.WRITE || priority == Priority.READ);
+    }
+
+    // One admitted request; released exactly once, whichever callback comes first
+    static final class Permit {
+
+        private final AdaptiveConcurrencyLimit limit;
+        private final boolean sampled;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(AdaptiveConcurrencyLimit limit, boolean sampled) {
+            this.limit = limit;
+            this.sampled = sampled;
+        }
+
+        void completed(boolean failed) {
+            if (released.compareAndSet(false, true)) {
+                limit.release(sampled ? System.nanoTime() - start : -1, failed);
+            }
+        }
+
+        void cancelled() {
+            if (released.compareAndSet(false, true)) {
+                limit.release(-1, false);
+            }
+        }
+    }
+}
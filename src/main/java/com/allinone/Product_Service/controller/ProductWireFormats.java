@@ -0,0 +1,155 @@
+// 33) Binary bodies for /api/product: Smile, CBOR and Protobuf next to JSON, picked by Accept / Content-Type
+
+package com.allinone.Product_Service.controller;
+
+import com.allinone.Product_Service.dto.ProductProtobuf;
+import com.allinone.Product_Service.dto.ProductRequest;
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+// Added to Spring MVC's converters after JSON, so every endpoint negotiates them and JSON stays the
+// default. Smile and CBOR handle any body Jackson can; they replace Spring's default ones to be built from
+// Boot's Jackson2ObjectMapperBuilder, i.e. with the same spring.jackson.* settings as JSON. Protobuf only
+// covers what product.proto declares: ProductRequest, ProductResponse and lists of them; other bodies
+// answer 406 / 415 for it.
+//
+// Media types: application/x-jackson-smile, application/cbor, application/x-protobuf. The reactive
+// profile gets Smile and CBOR from WebFlux's default codecs.
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ProductWireFormats implements WebMvcConfigurer {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    // The builder bean is a prototype, each converter configures its own copy
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    // Appended instead of declared as a bean: Boot puts converter beans that replace no default first,
+    // which would make Protobuf the answer to Accept: */*
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new ProductProtobufHttpMessageConverter());
+    }
+
+    // Reads and writes the messages of product.proto through ProductProtobuf, straight from / to the body
+    public static class ProductProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+        public ProductProtobufHttpMessageConverter() {
+            super(MediaType.APPLICATION_PROTOBUF);
+        }
+
+        @Override
+        protected boolean supports(Class<?> clazz) {
+            return clazz == ProductRequest.class || clazz == ProductResponse.class;
+        }
+
+        @Override
+        public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+            return canRead(mediaType) && bodyType(type) != null;
+        }
+
+        @Override
+        public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+            return canWrite(mediaType) && (type == null ? supports(clazz) : bodyType(type) != null);
+        }
+
+        @Override
+        public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+            CodedInputStream in = CodedInputStream.newInstance(inputMessage.getBody());
+            try {
+                return switch (bodyType(type)) {
+                    case REQUEST -> ProductProtobuf.readRequest(in);
+                    case RESPONSE -> ProductProtobuf.readResponse(in);
+                    case REQUEST_LIST -> ProductProtobuf.readRequests(in);
+                    case RESPONSE_LIST -> ProductProtobuf.readResponses(in);
+                };
+            } catch (InvalidProtocolBufferException e) {
+                throw new HttpMessageNotReadableException("Invalid Protobuf body: " + e.getMessage(), e, inputMessage);
+            }
+        }
+
+        @Override
+        protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+            return read(clazz, null, inputMessage);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+            CodedOutputStream out = CodedOutputStream.newInstance(outputMessage.getBody());
+            try {
+                switch (body) {
+                    case ProductRequest request -> ProductProtobuf.writeRequest(request, out);
+                    case ProductResponse response -> ProductProtobuf.writeResponse(response, out);
+                    case List<?> list when bodyType(type) == BodyType.REQUEST_LIST ->
+                            ProductProtobuf.writeRequests((List<ProductRequest>) list, out);
+                    case List<?> list -> ProductProtobuf.writeResponses((List<ProductResponse>) list, out);
+                    default -> throw new HttpMessageNotWritableException("No Protobuf message for " + body.getClass());
+                }
+            } catch (IllegalArgumentException | ClassCastException e) {
+                throw new HttpMessageNotWritableException("Could not write Protobuf body: " + e.getMessage(), e);
+            }
+            out.flush();
+        }
+
+        // Which product.proto message a Java body type is, null if none
+        private static BodyType bodyType(Type type) {
+            if (type == null) {
+                return null;
+            }
+            ResolvableType resolvable = ResolvableType.forType(type);
+            Class<?> clazz = resolvable.resolve();
+            if (clazz == ProductRequest.class) {
+                return BodyType.REQUEST;
+            }
+            if (clazz == ProductResponse.class) {
+                return BodyType.RESPONSE;
+            }
+            if (clazz != null && List.class.isAssignableFrom(clazz)) {
+                Class<?> element = resolvable.asCollection().resolveGeneric(0);
+                if (element == ProductRequest.class) {
+                    return BodyType.REQUEST_LIST;
+                }
+                if (element == ProductResponse.class) {
+                    return BodyType.RESPONSE_LIST;
+                }
+            }
+            return null;
+        }
+
+        private enum BodyType {
+            REQUEST, RESPONSE, REQUEST_LIST, RESPONSE_LIST
+        }
+    }
+}
@@ -0,0 +1,113 @@
+// 19) WebFlux mirror of ProductController, active when the app runs as a reactive web application
+
+package com.allinone.Product_Service.controller;
+
+import com.allinone.Product_Service.dto.BatchCreateResponse;
+import com.allinone.Product_Service.dto.ProductPageResponse;
+import com.allinone.Product_Service.dto.ProductRequest;
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.allinone.Product_Service.repository.InvalidPriceException;
+import com.allinone.Product_Service.service.ReactiveProductService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// Enabled with the "reactive" profile (spring.main.web-application-type=reactive).
+// Requests run on the small, fixed Netty event-loop pool; nothing here may block.
+@RestController
+@RequestMapping("/api/product")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveProductController {
+
+    private final ReactiveProductService reactiveProductService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Void> createProduct(@RequestBody ProductRequest productRequest) {
+        return reactiveProductService.createProduct(productRequest);
+    }
+
+    // 15) Same batch endpoints as the servlet controller: 201 when every product was inserted, 207 with
+    // per-item errors otherwise
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<BatchCreateResponse>> createProducts(@RequestBody List<ProductRequest> productRequests) {
+        return reactiveProductService.createProducts(productRequests).map(this::batchResponse);
+    }
+
+    // NDJSON body, decoded line by line and inserted while it is still arriving
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<BatchCreateResponse>> createProductsNdjson(@RequestBody Flux<ProductRequest> productRequests) {
+        return reactiveProductService.createProducts(productRequests).map(this::batchResponse);
+    }
+
+    private ResponseEntity<BatchCreateResponse> batchResponse(BatchCreateResponse response) {
+        HttpStatus status = response.getErrors().isEmpty() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(response);
+    }
+
+    // 22) same lookups as the servlet controller, 404 when nothing was found
+    @GetMapping("/{id}")
+    public Mono<ProductResponse> getProductById(@PathVariable String id) {
+        return reactiveProductService.getProductById(id).switchIfEmpty(notFound());
+    }
+
+    @GetMapping("/sku/{skuCode}")
+    public Mono<ProductResponse> getProductBySkuCode(@PathVariable String skuCode) {
+        return reactiveProductService.getProductBySkuCode(skuCode).switchIfEmpty(notFound());
+    }
+
+    private Mono<ProductResponse> notFound() {
+        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
+    }
+
+    // 13) keyset page plus the link to the next one, like the servlet /page
+    @GetMapping("/page")
+    public Mono<ProductPageResponse> getProductPage(@RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "50") int size,
+                                                    ServerHttpRequest request) {
+        return reactiveProductService.getProductPage(cursor, size).doOnNext(page -> {
+            if (page.getNextCursor() != null) {
+                page.setNext(UriComponentsBuilder.fromUri(request.getURI())
+                        .replaceQueryParam("cursor", page.getNextCursor())
+                        .toUriString());
+            }
+        });
+    }
+
+    // 22) Same 409 as the servlet controller for a unique index violation (existing id or SKU code)
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<String> handleDuplicate(DataIntegrityViolationException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ProductController.conflictMessage(e));
+    }
+
+    // 34) Price that isn't valid money or can't be stored, on create
+    @ExceptionHandler(InvalidPriceException.class)
+    public ResponseEntity<String> handleInvalidPrice(InvalidPriceException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
+    // JSON array, written element by element as the cursor delivers them
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<ProductResponse> getAllProducts() {
+        return reactiveProductService.getAllProducts();
+    }
+
+    // One product per line, flushed as it arrives; demand from the client drives the cursor
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProductResponse> streamProducts() {
+        return reactiveProductService.getAllProducts();
+    }
+}
@@ -0,0 +1,25 @@
+// 19) Netty for the "reactive" profile
+
+package com.allinone.Product_Service.controller;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// spring-boot-starter-web keeps Tomcat on the classpath, and Boot picks Tomcat over Netty for WebFlux too:
+// the reactive stack would run behind Tomcat's servlet adapter instead of on the event loop. Declaring the
+// Netty factory makes Boot back off from its own choice (server.* / server.netty.* still apply).
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebServer {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory(ObjectProvider<NettyServerCustomizer> serverCustomizers) {
+        NettyReactiveWebServerFactory factory = new NettyReactiveWebServerFactory();
+        factory.getServerCustomizers().addAll(serverCustomizers.orderedStream().toList());
+        return factory;
+    }
+}
@@ -0,0 +1,35 @@
+// 15) created this dto for POST /api/product/batch
+
+package com.allinone.Product_Service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchCreateResponse {
+
+    // Generated ids in request order, null where that item failed
+    private List<String> ids;
+
+    // One entry per failed item, empty when everything was inserted
+    private List<ItemError> errors;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ItemError {
+
+        // Position of the item in the request body
+        private int index;
+
+        private String message;
+    }
+}
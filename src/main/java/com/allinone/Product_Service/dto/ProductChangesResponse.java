@@ -0,0 +1,52 @@
+// 31) created this dto for GET /api/product/changes (delta sync)
+
+package com.allinone.Product_Service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductChangesResponse {
+
+    // Changes in version order; applying them in order (upsert / delete by id) is idempotent
+    private List<Change> changes;
+
+    // Pass as ?since= on the next call
+    private String nextToken;
+
+    // More changes are waiting: call again right away with nextToken
+    private boolean hasMore;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Change {
+
+        public enum Type {
+            // Inserted or updated: product holds the current state
+            UPSERT,
+            DELETE
+        }
+
+        private Type type;
+
+        private String id;
+
+        // 32) null for deletes on /events: the change stream only reports the id of a deleted product
+        private Long version;
+
+        private Instant modifiedAt;
+
+        // Null for DELETE
+        private ProductResponse product;
+    }
+}
@@ -0,0 +1,67 @@
+// 36) created this dto: manifest.json of an export directory
+
+package com.allinone.Product_Service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductExportManifest {
+
+    // Name of the export directory, pass as ?resume= to continue it
+    private String id;
+
+    // NDJSON (the API's JSON, one product per line) or BSON (whole documents as mongodump writes them)
+    private String format;
+
+    private String database;
+
+    private String collection;
+
+    private Instant startedAt;
+
+    // Set once every partition is complete
+    private Instant completedAt;
+
+    // Cluster time the partitions were read at, "<seconds>.<increment>"; null without snapshot reads
+    private String atClusterTime;
+
+    // Every partition was read at atClusterTime, i.e. the files are one point-in-time copy
+    private boolean consistent;
+
+    private List<Partition> partitions;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Partition {
+
+        private int index;
+
+        // _id range [lowerId, upperId) as extended JSON ({"_id": ...}), null for an open end
+        private String lowerId;
+        private String upperId;
+
+        // gzip file in the export directory
+        private String file;
+
+        private boolean completed;
+
+        // Filled in once completed
+        private long documents;
+        private long bytes;
+        private String sha256;
+
+        // When it was read at another time than the export (resumed after the snapshot had expired)
+        private String atClusterTime;
+    }
+}
@@ -0,0 +1,51 @@
+// 36) created this dto for /api/admin/export
+
+package com.allinone.Product_Service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductExportStatus {
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        // Stopped by an error or cancelled; ?resume=<id> continues with the partitions left
+        FAILED,
+        CANCELLED
+    }
+
+    private String id;
+
+    private State state;
+
+    // Export directory with the partition files and manifest.json
+    private String directory;
+
+    private Instant startedAt;
+
+    // Null while running
+    private Instant finishedAt;
+
+    private int totalPartitions;
+    private int completedPartitions;
+
+    // Written by this run
+    private long documents;
+    private long bytes;
+    private double documentsPerSecond;
+
+    // See ProductExportManifest.consistent
+    private boolean consistent;
+
+    // Why the export failed
+    private String message;
+}
@@ -0,0 +1,70 @@
+// 35) created this dto for the bulk import job (/api/admin/import and the import command)
+
+package com.allinone.Product_Service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductImportStatus {
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        // Stopped by an error or cancelled; running it again resumes from the checkpoint
+        FAILED,
+        CANCELLED
+    }
+
+    private String file;
+
+    private String format;
+
+    private State state;
+
+    private Instant startedAt;
+
+    // Null while running
+    private Instant finishedAt;
+
+    // Progress: chunks (and their bytes) whose records have all been written, including earlier runs
+    private long totalBytes;
+    private long completedBytes;
+    private int totalChunks;
+    private int completedChunks;
+
+    // Records inserted, already there from an interrupted run, or rejected (parse error, duplicate SKU, ...),
+    // including earlier runs
+    private long imported;
+    private long alreadyImported;
+    private long failed;
+
+    // Records handled per second by this run
+    private double recordsPerSecond;
+
+    // First failures, with their byte offset in the file
+    private List<RecordError> errors;
+
+    // Why the job failed
+    private String message;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RecordError {
+
+        // Where the record starts in the file
+        private long offset;
+
+        private String message;
+    }
+}
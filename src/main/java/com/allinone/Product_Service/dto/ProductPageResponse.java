@@ -0,0 +1,26 @@
+// 13) created this dto for keyset (cursor) pagination
+
+package com.allinone.Product_Service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductPageResponse {
+
+    // Products of this page, ordered by id
+    private List<ProductResponse> items;
+
+    // Opaque continuation token, null when this is the last page
+    private String nextCursor;
+
+    // Ready-to-follow link to the next page, null when this is the last page
+    private String next;
+}
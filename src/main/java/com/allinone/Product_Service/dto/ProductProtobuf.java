@@ -0,0 +1,214 @@
+// 33) Protobuf encoding of ProductRequest / ProductResponse, as declared in src/main/proto/product.proto
+
+package com.allinone.Product_Service.dto;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+// Written against CodedOutputStream / CodedInputStream directly instead of protoc-generated classes: no
+// copy into a generated message and back, no code generation in the build. Field numbers must stay in
+// sync with product.proto. A list is the ProductRequestList / ProductResponseList message, i.e. the
+// products one after another as field 1, so it can be written and read without buffering it.
+public final class ProductProtobuf {
+
+    private static final int DECIMAL_UNSCALED = 1;
+    private static final int DECIMAL_SCALE = 2;
+
+    private static final int REQUEST_NAME = 1;
+    private static final int REQUEST_DESCRIPTION = 2;
+    private static final int REQUEST_SKU_CODE = 3;
+    private static final int REQUEST_PRICE = 4;
+
+    private static final int RESPONSE_ID = 1;
+    private static final int RESPONSE_NAME = 2;
+    private static final int RESPONSE_DESCRIPTION = 3;
+    private static final int RESPONSE_SKU_CODE = 4;
+    private static final int RESPONSE_PRICE = 5;
+
+    private static final int LIST_PRODUCTS = 1;
+
+    private ProductProtobuf() {
+    }
+
+    public static void writeRequest(ProductRequest request, CodedOutputStream out) throws IOException {
+        writeString(out, REQUEST_NAME, request.getName());
+        writeString(out, REQUEST_DESCRIPTION, request.getDescription());
+        writeString(out, REQUEST_SKU_CODE, request.getSkuCode());
+        writeDecimal(out, REQUEST_PRICE, request.getPrice());
+    }
+
+    public static void writeResponse(ProductResponse response, CodedOutputStream out) throws IOException {
+        writeString(out, RESPONSE_ID, response.getId());
+        writeString(out, RESPONSE_NAME, response.getName());
+        writeString(out, RESPONSE_DESCRIPTION, response.getDescription());
+        writeString(out, RESPONSE_SKU_CODE, response.getSkuCode());
+        writeDecimal(out, RESPONSE_PRICE, response.getPrice());
+    }
+
+    public static void writeRequests(List<ProductRequest> requests, CodedOutputStream out) throws IOException {
+        for (ProductRequest request : requests) {
+            out.writeTag(LIST_PRODUCTS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(requestSize(request));
+            writeRequest(request, out);
+        }
+    }
+
+    public static void writeResponses(List<ProductResponse> responses, CodedOutputStream out) throws IOException {
+        for (ProductResponse response : responses) {
+            out.writeTag(LIST_PRODUCTS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(responseSize(response));
+            writeResponse(response, out);
+        }
+    }
+
+    // Reads up to the end of the input (or of the limit pushed for an embedded message)
+    public static ProductRequest readRequest(CodedInputStream in) throws IOException {
+        ProductRequest request = new ProductRequest();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case REQUEST_NAME -> request.setName(in.readStringRequireUtf8());
+                case REQUEST_DESCRIPTION -> request.setDescription(in.readStringRequireUtf8());
+                case REQUEST_SKU_CODE -> request.setSkuCode(in.readStringRequireUtf8());
+                case REQUEST_PRICE -> request.setPrice(readDecimal(in));
+                default -> in.skipField(tag);
+            }
+        }
+        return request;
+    }
+
+    public static ProductResponse readResponse(CodedInputStream in) throws IOException {
+        ProductResponse response = new ProductResponse();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case RESPONSE_ID -> response.setId(in.readStringRequireUtf8());
+                case RESPONSE_NAME -> response.setName(in.readStringRequireUtf8());
+                case RESPONSE_DESCRIPTION -> response.setDescription(in.readStringRequireUtf8());
+                case RESPONSE_SKU_CODE -> response.setSkuCode(in.readStringRequireUtf8());
+                case RESPONSE_PRICE -> response.setPrice(readDecimal(in));
+                default -> in.skipField(tag);
+            }
+        }
+        return response;
+    }
+
+    public static List<ProductRequest> readRequests(CodedInputStream in) throws IOException {
+        List<ProductRequest> requests = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            if (!isListProduct(tag)) {
+                in.skipField(tag);
+                continue;
+            }
+            int limit = in.pushLimit(in.readRawVarint32());
+            requests.add(readRequest(in));
+            in.popLimit(limit);
+        }
+        return requests;
+    }
+
+    public static List<ProductResponse> readResponses(CodedInputStream in) throws IOException {
+        List<ProductResponse> responses = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            if (!isListProduct(tag)) {
+                in.skipField(tag);
+                continue;
+            }
+            int limit = in.pushLimit(in.readRawVarint32());
+            responses.add(readResponse(in));
+            in.popLimit(limit);
+        }
+        return responses;
+    }
+
+    // Encoded size without tag and length, needed up front for the length prefix in a list
+    public static int requestSize(ProductRequest request) {
+        return stringSize(REQUEST_NAME, request.getName())
+                + stringSize(REQUEST_DESCRIPTION, request.getDescription())
+                + stringSize(REQUEST_SKU_CODE, request.getSkuCode())
+                + decimalSize(REQUEST_PRICE, request.getPrice());
+    }
+
+    public static int responseSize(ProductResponse response) {
+        return stringSize(RESPONSE_ID, response.getId())
+                + stringSize(RESPONSE_NAME, response.getName())
+                + stringSize(RESPONSE_DESCRIPTION, response.getDescription())
+                + stringSize(RESPONSE_SKU_CODE, response.getSkuCode())
+                + decimalSize(RESPONSE_PRICE, response.getPrice());
+    }
+
+    private static boolean isListProduct(int tag) {
+        return WireFormat.getTagFieldNumber(tag) == LIST_PRODUCTS
+                && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    }
+
+    // null is left out, which is how an unset optional field looks on the wire
+    private static void writeString(CodedOutputStream out, int field, String value) throws IOException {
+        if (value != null) {
+            out.writeString(field, value);
+        }
+    }
+
+    private static int stringSize(int field, String value) {
+        return value == null ? 0 : CodedOutputStream.computeStringSize(field, value);
+    }
+
+    private static void writeDecimal(CodedOutputStream out, int field, BigDecimal value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        long unscaled = unscaled(value);
+        out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(decimalBodySize(unscaled, value.scale()));
+        if (unscaled != 0) {
+            out.writeSInt64(DECIMAL_UNSCALED, unscaled);
+        }
+        if (value.scale() != 0) {
+            out.writeInt32(DECIMAL_SCALE, value.scale());
+        }
+    }
+
+    private static int decimalSize(int field, BigDecimal value) {
+        if (value == null) {
+            return 0;
+        }
+        int body = decimalBodySize(unscaled(value), value.scale());
+        return CodedOutputStream.computeTagSize(field) + CodedOutputStream.computeUInt32SizeNoTag(body) + body;
+    }
+
+    private static int decimalBodySize(long unscaled, int scale) {
+        return (unscaled == 0 ? 0 : CodedOutputStream.computeSInt64Size(DECIMAL_UNSCALED, unscaled))
+                + (scale == 0 ? 0 : CodedOutputStream.computeInt32Size(DECIMAL_SCALE, scale));
+    }
+
+    private static long unscaled(BigDecimal value) {
+        if (value.unscaledValue().bitLength() > 63) {
+            throw new IllegalArgumentException("Price " + value + " has more digits than Decimal.unscaled holds");
+        }
+        return value.unscaledValue().longValue();
+    }
+
+    private static BigDecimal readDecimal(CodedInputStream in) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        long unscaled = 0;
+        int scale = 0;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case DECIMAL_UNSCALED -> unscaled = in.readSInt64();
+                case DECIMAL_SCALE -> scale = in.readInt32();
+                default -> in.skipField(tag);
+            }
+        }
+        in.popLimit(limit);
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+}
@@ -32,6 +32,9 @@ public class ProductRequest {
     // Description of the product
     private String description;
 
+    // SKU code, unique across products (used by order / inventory lookups)
+    private String skuCode;
+
     // Price of the product (using BigDecimal for precision)
     private BigDecimal price;
 }
@@ -17,5 +17,6 @@ public class ProductResponse {
     private String id;
     private String name;
     private String description;
+    private String skuCode;
     private BigDecimal price;
 }
@@ -0,0 +1,27 @@
+// 23) created this dto for GET /api/product/search
+
+package com.allinone.Product_Service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductSearchResponse {
+
+    // Number of products matching every search term
+    private int total;
+
+    private int page;
+
+    private int size;
+
+    // Products of this page, best match first
+    private List<ProductResponse> items;
+}
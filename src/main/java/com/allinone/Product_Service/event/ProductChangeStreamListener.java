@@ -0,0 +1,161 @@
+// 17) Watches the product collection with a MongoDB change stream (needs a replica set)
+
+package com.allinone.Product_Service.event;
+
+import com.allinone.Product_Service.model.Product;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// One change-stream cursor per service instance; every change is republished as a ProductChangedEvent
+// 32) When the cursor fails it is opened again after retry-interval, resuming after the last change it
+// delivered, so nothing is lost. Only when that change is no longer in the oplog (or the collection was
+// dropped) do the listeners get INVALIDATE and the stream starts over from now.
+@Component
+@ConditionalOnProperty(name = "product.change-stream.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ProductChangeStreamListener {
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // 20) the cursor is polled on a virtual thread when virtual threads are enabled
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${product.change-stream.retry-interval:5s}")
+    private Duration retryInterval;
+
+    private MessageListenerContainer container;
+    private volatile Subscription subscription;
+    // Of the last change delivered, null to start from now
+    private volatile BsonDocument resumeToken;
+
+    @PostConstruct
+    void start() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("product-change-stream-");
+        executor.setVirtualThreads(virtualThreads);
+        container = new DefaultMessageListenerContainer(mongoTemplate, executor);
+        container.start();
+        subscribe();
+        log.info("Watching product collection for changes");
+    }
+
+    @PreDestroy
+    void stop() {
+        container.stop();
+    }
+
+    private void subscribe() {
+        ChangeStreamRequest.ChangeStreamRequestBuilder<Product> request = ChangeStreamRequest.builder(this::onMessage)
+                .collection(mongoTemplate.getCollectionName(Product.class))
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+        BsonDocument token = resumeToken;
+        if (token != null) {
+            // startAfter also gets past an invalidate event, resumeAfter doesn't
+            request.startAfter(token);
+        }
+        subscription = container.register(request.build(), Product.class, this::onError);
+    }
+
+    // The container cancels the subscription on any error
+    private void onError(Throwable error) {
+        if (resumeToken != null && historyLost(error)) {
+            // The changes since the last one we saw are gone: everyone has to start over
+            log.warn("Product change stream can't resume, starting over", error);
+            resumeToken = null;
+            eventPublisher.publishEvent(ProductChangedEvent.builder().type(ProductChangedEvent.Type.INVALIDATE).build());
+        } else {
+            log.warn("Product change stream failed, resuming in {}", retryInterval, error);
+        }
+        container.remove(subscription);
+        Thread.ofVirtual().name("product-change-stream-retry").start(() -> {
+            try {
+                Thread.sleep(retryInterval.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (container.isRunning()) {
+                subscribe();
+            }
+        });
+    }
+
+    // ChangeStreamHistoryLost / ChangeStreamFatalError: the resume token points before the oldest oplog entry
+    private static boolean historyLost(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException
+                    && (mongoException.getCode() == 286 || mongoException.getCode() == 280)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onMessage(Message<ChangeStreamDocument<Document>, Product> message) {
+        ChangeStreamDocument<Document> change = message.getRaw();
+        ProductChangedEvent event = toEvent(change, message.getBody());
+        if (change.getResumeToken() != null) {
+            resumeToken = change.getResumeToken();
+        }
+        if (change.getOperationType() == OperationType.INVALIDATE) {
+            // Follows a drop / rename, which was already published; the cursor is closed now
+            return;
+        }
+        eventPublisher.publishEvent(event);
+    }
+
+    // 32) Also used for the catch-up cursors of ProductEventFeed
+    static ProductChangedEvent toEvent(ChangeStreamDocument<Document> change, Product product) {
+        ProductChangedEvent.Type type = switch (change.getOperationType()) {
+            case INSERT -> ProductChangedEvent.Type.INSERT;
+            case UPDATE, REPLACE -> ProductChangedEvent.Type.UPDATE;
+            case DELETE -> ProductChangedEvent.Type.DELETE;
+            default -> ProductChangedEvent.Type.INVALIDATE;
+        };
+        BsonValue token = change.getResumeToken() == null ? null : change.getResumeToken().get("_data");
+        return ProductChangedEvent.builder()
+                .type(type)
+                .productId(type == ProductChangedEvent.Type.INVALIDATE ? null : idOf(change.getDocumentKey()))
+                .product(type == ProductChangedEvent.Type.DELETE ? null : product)
+                .resumeToken(token != null && token.isString() ? token.asString().getValue() : null)
+                .build();
+    }
+
+    // Inverse of ProductChangedEvent.resumeToken
+    static BsonDocument resumeToken(String data) {
+        return new BsonDocument("_data", new BsonString(data));
+    }
+
+    // _id is stored as an ObjectId, the entity uses its hex string
+    private static String idOf(BsonDocument documentKey) {
+        BsonValue id = documentKey == null ? null : documentKey.get("_id");
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+}
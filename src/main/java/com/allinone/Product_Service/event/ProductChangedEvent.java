@@ -0,0 +1,38 @@
+// 17) Application event for every change to the product collection
+
+package com.allinone.Product_Service.event;
+
+import com.allinone.Product_Service.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Published by ProductService after its own writes and by ProductChangeStreamListener for writes made
+// anywhere else (other instances, scripts). Listeners must be idempotent: with the change stream on,
+// a local write is seen twice.
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductChangedEvent {
+
+    public enum Type {
+        INSERT,
+        UPDATE,
+        DELETE,
+        // Collection dropped/renamed or change stream lost: drop everything derived from the collection
+        INVALIDATE
+    }
+
+    private Type type;
+
+    // Null for INVALIDATE
+    private String productId;
+
+    // Full document after the change, null for DELETE / INVALIDATE
+    private Product product;
+
+    // 32) Resume token (its _data string) when the event comes from the change stream, null for local writes
+    private String resumeToken;
+}
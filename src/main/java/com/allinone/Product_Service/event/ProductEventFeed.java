@@ -0,0 +1,298 @@
+// 32) Fans the change stream out to Server-Sent Events subscribers (GET /api/product/events)
+
+package com.allinone.Product_Service.event;
+
+import com.allinone.Product_Service.dto.ProductChangesResponse.Change;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.service.ProductMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// ProductChangeStreamListener holds the instance's only change-stream cursor; this turns each change it
+// publishes into one serialized SSE event and offers it to every subscriber. Nothing here blocks the
+// cursor thread: each subscriber has a bounded queue drained by its own virtual thread, and a subscriber
+// whose queue is full is disconnected (product.events.dropped) instead of slowing everyone down.
+//
+// The event id is the change's resume token. The last replay-size events are kept, so a reconnect with
+// Last-Event-ID is served from memory; for an older id a private cursor resumes after it until it has
+// caught up with the shared one. If MongoDB no longer has that point, the client gets a "reset" event
+// and has to sync again (GET /api/product/changes), as after a collection drop.
+@Component
+@ConditionalOnProperty(name = "product.change-stream.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Slf4j
+public class ProductEventFeed {
+
+    private static final String RESET = "reset";
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final Duration heartbeat;
+    private final Counter dropped;
+
+    // Recent events: the one with sequence s is at ring[s % length], its id maps back to s.
+    // Guarded by this, as is adding a subscriber, so a subscriber never misses an event in between.
+    private final Event[] ring;
+    private final Map<String, Long> sequences = new HashMap<>();
+    private long nextSequence;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    public ProductEventFeed(MongoTemplate mongoTemplate,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${product.events.buffer-size:256}") int bufferSize,
+                            @Value("${product.events.replay-size:10000}") int replaySize,
+                            @Value("${product.events.heartbeat:15s}") Duration heartbeat) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.heartbeat = heartbeat;
+        this.ring = new Event[replaySize];
+        Gauge.builder("product.events.subscribers", subscribers, Set::size)
+                .description("Open SSE connections on /api/product/events")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("product.events.dropped")
+                .description("SSE subscribers disconnected because they fell behind")
+                .register(meterRegistry);
+    }
+
+    // lastEventId: id of the last event the client received, null to start with the next change
+    public SseEmitter subscribe(String lastEventId) {
+        // Timeout from spring.mvc.async.request-timeout; EventSource clients reconnect with Last-Event-ID
+        SseEmitter emitter = new SseEmitter();
+        Subscriber subscriber = new Subscriber(emitter, new ArrayBlockingQueue<>(bufferSize));
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        // Own virtual threads whatever spring.threads.virtual.enabled says: one per connection
+        subscriber.thread = Thread.ofVirtual().name("product-events").start(() -> subscriber.run(lastEventId));
+        return emitter;
+    }
+
+    // Local writes are published by ProductService too; the change stream reports them (with a token) as well
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getResumeToken() == null && event.getType() != ProductChangedEvent.Type.INVALIDATE) {
+            return;
+        }
+        Event sse = toSse(event);
+        synchronized (this) {
+            long sequence = nextSequence++;
+            Event overwritten = ring[(int) (sequence % ring.length)];
+            if (overwritten != null && overwritten.id() != null) {
+                sequences.remove(overwritten.id());
+            }
+            ring[(int) (sequence % ring.length)] = sse;
+            if (RESET.equals(sse.name())) {
+                // Ids from before can't be resumed from memory any more
+                sequences.clear();
+            } else if (sse.id() != null) {
+                sequences.put(sse.id(), sequence);
+            }
+            if (sse.data() == null) {
+                return;
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.queue.offer(sse)) {
+                    subscriber.drop();
+                }
+            }
+        }
+    }
+
+    // Registers the subscriber and returns the buffered events after lastEventId, null when it isn't buffered
+    private synchronized List<Event> attachAfter(Subscriber subscriber, String lastEventId) {
+        Long sequence = sequences.get(lastEventId);
+        return sequence == null ? null : attachFrom(subscriber, sequence + 1);
+    }
+
+    // Same from a sequence number, null when the ring has been overwritten since
+    private synchronized List<Event> attachFrom(Subscriber subscriber, long sequence) {
+        if (sequence < nextSequence - ring.length) {
+            return null;
+        }
+        List<Event> replay = new ArrayList<>((int) (nextSequence - sequence));
+        for (long s = sequence; s < nextSequence; s++) {
+            replay.add(ring[(int) (s % ring.length)]);
+        }
+        subscribers.add(subscriber);
+        return replay;
+    }
+
+    private synchronized long nextSequence() {
+        return nextSequence;
+    }
+
+    // The event as it is sent: id, name (upsert / delete / reset) and the Change as JSON. data is null for
+    // an update whose document was already deleted again: it only marks the position.
+    private Event toSse(ProductChangedEvent event) {
+        Change change = switch (event.getType()) {
+            case INVALIDATE -> null;
+            case DELETE -> Change.builder()
+                    .type(Change.Type.DELETE)
+                    .id(event.getProductId())
+                    .build();
+            case INSERT, UPDATE -> event.getProduct() == null ? null : Change.builder()
+                    .type(Change.Type.UPSERT)
+                    .id(event.getProductId())
+                    .version(event.getProduct().getVersion())
+                    .modifiedAt(event.getProduct().getLastModified())
+                    .product(ProductMapper.mapToProductResponse(event.getProduct()))
+                    .build();
+        };
+        if (event.getType() == ProductChangedEvent.Type.INVALIDATE) {
+            return new Event(event.getResumeToken(), RESET, "{}");
+        }
+        if (change == null) {
+            return new Event(event.getResumeToken(), null, null);
+        }
+        try {
+            return new Event(event.getResumeToken(), change.getType().name().toLowerCase(), objectMapper.writeValueAsString(change));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize change of " + event.getProductId(), e);
+        }
+    }
+
+    private record Event(String id, String name, String data) {
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue;
+        private volatile boolean closed;
+        private volatile Thread thread;
+
+        private Subscriber(SseEmitter emitter, BlockingQueue<Event> queue) {
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+
+        private void run(String lastEventId) {
+            try {
+                List<Event> replay = lastEventId == null ? attachFrom(this, nextSequence()) : attachAfter(this, lastEventId);
+                if (replay == null) {
+                    replay = catchUp(lastEventId);
+                }
+                for (Event event : replay) {
+                    send(event);
+                }
+                while (!closed) {
+                    Event event = queue.poll(heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+                    if (closed) {
+                        break;
+                    }
+                    if (event == null) {
+                        // Keeps proxies from closing an idle connection and finds clients that are gone
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        send(event);
+                    }
+                }
+            } catch (IOException | IllegalStateException | InterruptedException e) {
+                // Client gone, emitter completed or timed out, or dropped
+            } finally {
+                close();
+                emitter.complete();
+            }
+        }
+
+        // Replays from MongoDB what the ring no longer has, until the next event is one the ring still holds.
+        // Returns the rest from the ring (the subscriber is attached then), possibly with a few repeats.
+        private List<Event> catchUp(String lastEventId) throws IOException {
+            String last = lastEventId;
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = mongoTemplate
+                    .getCollection(mongoTemplate.getCollectionName(Product.class))
+                    .watch()
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .maxAwaitTime(1, TimeUnit.SECONDS)
+                    .startAfter(ProductChangeStreamListener.resumeToken(lastEventId))
+                    .cursor()) {
+                while (!closed) {
+                    long mark = nextSequence();
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        // Caught up: whatever the shared cursor delivered since mark may be newer than last
+                        List<Event> replay = attachFrom(this, mark);
+                        if (replay != null) {
+                            return replay;
+                        }
+                        continue;
+                    }
+                    Product product = change.getFullDocument() == null ? null
+                            : mongoTemplate.getConverter().read(Product.class, change.getFullDocument());
+                    Event event = toSse(ProductChangeStreamListener.toEvent(change, product));
+                    send(event);
+                    last = event.id();
+                    List<Event> replay = attachAfter(this, last);
+                    if (replay != null) {
+                        return replay;
+                    }
+                }
+                return List.of();
+            } catch (MongoException e) {
+                log.info("Can't resume product events after {}, sending reset: {}", last, e.toString());
+                return List.of(new Event(null, RESET, "{}"));
+            }
+        }
+
+        private void send(Event event) throws IOException {
+            if (event.data() == null) {
+                return;
+            }
+            SseEmitter.SseEventBuilder builder = SseEmitter.event().name(event.name()).data(event.data());
+            if (event.id() != null) {
+                builder.id(event.id());
+            }
+            emitter.send(builder);
+            if (RESET.equals(event.name())) {
+                // The client has to sync again before it can use this feed
+                closed = true;
+            }
+        }
+
+        // Slow consumer: free its queue now, its thread completes the response
+        private void drop() {
+            dropped.increment();
+            close();
+            queue.clear();
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+// 29) How long after start the first request came in and how long it took
+
+package com.allinone.Product_Service.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.WebFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Boot already reports application.started.time / application.ready.time. The first request is the one
+// that pays for anything still cold (connections, lazy init, JIT), so its duration shows whether the
+// warm-up in MongoCheck does its job. Actuator calls (probes, scrapes) don't count.
+@Slf4j
+@Configuration(proxyBeanMethods = false)
+public class FirstRequestMetrics {
+
+    private final AtomicBoolean seen = new AtomicBoolean();
+    // JVM uptime when the first request arrived and its duration, NaN until then
+    private volatile double arrivedAtMillis = Double.NaN;
+    private volatile double durationMillis = Double.NaN;
+
+    public FirstRequestMetrics(MeterRegistry meterRegistry) {
+        TimeGauge.builder("product.startup.first.request", this, TimeUnit.MILLISECONDS, metrics -> metrics.arrivedAtMillis)
+                .description("Time from JVM start until the first request")
+                .register(meterRegistry);
+        TimeGauge.builder("product.startup.first.request.duration", this, TimeUnit.MILLISECONDS, metrics -> metrics.durationMillis)
+                .description("Duration of the first request")
+                .register(meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public OncePerRequestFilter firstRequestFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                if (!isFirst(request.getRequestURI())) {
+                    chain.doFilter(request, response);
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    finished(request.getRequestURI(), start);
+                }
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public WebFilter firstRequestWebFilter() {
+        return (exchange, chain) -> {
+            String path = exchange.getRequest().getPath().value();
+            if (!isFirst(path)) {
+                return chain.filter(exchange);
+            }
+            long start = System.nanoTime();
+            return chain.filter(exchange).doFinally(signal -> finished(path, start));
+        };
+    }
+
+    private boolean isFirst(String path) {
+        if (seen.get() || path.startsWith("/actuator")) {
+            return false;
+        }
+        if (!seen.compareAndSet(false, true)) {
+            return false;
+        }
+        arrivedAtMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        return true;
+    }
+
+    private void finished(String path, long start) {
+        durationMillis = (System.nanoTime() - start) / 1_000_000.0;
+        log.info("First request {} arrived {} ms after start and took {} ms", path, (long) arrivedAtMillis, durationMillis);
+    }
+}
@@ -0,0 +1,122 @@
+// 26) Extra Mongo driver metrics on top of the ones Spring Boot registers
+
+package com.allinone.Product_Service.metrics;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Boot already records mongodb.driver.commands (latency per command / collection / status) and the
+// mongodb.driver.pool.* gauges (size, checkedout, waitqueuesize, checkoutfailed). Missing are the result
+// size of each command and how long a request waited for a pooled connection, added here. The customizer
+// is applied to the blocking and the reactive client alike.
+@Configuration(proxyBeanMethods = false)
+public class MongoDriverMetrics {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoDriverMetricsCustomizer(MeterRegistry meterRegistry) {
+        return settings -> settings
+                .addCommandListener(new ResultSizeListener(meterRegistry))
+                .applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(new CheckoutWaitListener(meterRegistry)));
+    }
+
+    // Documents returned (cursor batch) or affected (n) and response bytes, per command name
+    static class ResultSizeListener implements CommandListener {
+
+        private final MeterRegistry meterRegistry;
+
+        // Looked up once per command name: this runs for every command, register() would build and look
+        // up the meter id each time
+        private final Map<String, CommandSummaries> summaries = new ConcurrentHashMap<>();
+
+        ResultSizeListener(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public void commandSucceeded(CommandSucceededEvent event) {
+            BsonDocument response = event.getResponse();
+            if (response == null) {
+                return;
+            }
+            CommandSummaries command = summaries.computeIfAbsent(event.getCommandName(), this::register);
+            command.documents().record(documents(response));
+            // The driver hands out the response as it came off the wire, no need to re-encode it
+            if (response instanceof RawBsonDocument raw) {
+                command.bytes().record(raw.getByteBuffer().remaining());
+            }
+        }
+
+        private CommandSummaries register(String command) {
+            return new CommandSummaries(
+                    DistributionSummary.builder("mongodb.driver.commands.documents")
+                            .description("Documents returned or affected per command")
+                            .baseUnit("documents")
+                            .tag("command", command)
+                            .register(meterRegistry),
+                    DistributionSummary.builder("mongodb.driver.commands.bytes")
+                            .description("Response size per command")
+                            .baseUnit("bytes")
+                            .tag("command", command)
+                            .register(meterRegistry));
+        }
+
+        private record CommandSummaries(DistributionSummary documents, DistributionSummary bytes) {
+        }
+
+        private static int documents(BsonDocument response) {
+            BsonValue cursor = response.get("cursor");
+            if (cursor != null && cursor.isDocument()) {
+                BsonDocument batch = cursor.asDocument();
+                BsonValue documents = batch.containsKey("firstBatch") ? batch.get("firstBatch") : batch.get("nextBatch");
+                return documents != null && documents.isArray() ? documents.asArray().size() : 0;
+            }
+            BsonValue n = response.get("n");
+            return n != null && n.isNumber() ? n.asNumber().intValue() : 0;
+        }
+    }
+
+    // Time between asking the pool for a connection and getting one (or giving up)
+    static class CheckoutWaitListener implements ConnectionPoolListener {
+
+        private final Timer checkedOut;
+        private final Timer failed;
+
+        CheckoutWaitListener(MeterRegistry meterRegistry) {
+            this.checkedOut = waitTimer(meterRegistry, "success");
+            this.failed = waitTimer(meterRegistry, "failed");
+        }
+
+        private static Timer waitTimer(MeterRegistry meterRegistry, String outcome) {
+            return Timer.builder("mongodb.driver.pool.wait")
+                    .description("Time spent waiting to check out a pooled connection")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+
+        @Override
+        public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+            checkedOut.record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+            failed.record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -9,15 +9,22 @@ import lombok.Data;                 // Generates getters, setters, equals, hashC
 import lombok.NoArgsConstructor;    // Generates a no-args constructor
 
 // Annotation to map this class to a MongoDB collection
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 
 
 // Importing BigDecimal to accurately handle currency/price values
 import java.math.BigDecimal;
+import java.time.Instant;
 
 @Document(value = "product")
 
+// 22) Declared indexes, created at startup (spring.data.mongodb.auto-index-creation=true)
+@CompoundIndex(name = "name_price", def = "{'name': 1, 'price': 1}")
+@CompoundIndex(name = "price_id", def = "{'price': 1, '_id': 1}")
+
 // Lombok annotation that includes @Getter, @Setter, @ToString, @EqualsAndHashCode
 @Data
 
@@ -42,10 +49,25 @@ public class Product {
     private String description;
 
     // SKU (Stock Keeping Unit) Code - uniquely identifies the product type
+    // sparse: products created before SKUs were stored don't collide on "no SKU"
+    @Indexed(name = "skuCode_unique", unique = true, sparse = true)
     private String skuCode;
 
     // Price of the product, using BigDecimal for precision in currency
+    // 34) stored as configured by product.price.representation, see ProductPriceConverter
     private BigDecimal price;
+
+    // 34) ISO 4217 code of the price's minor units, only with product.price.representation=minor-units.
+    // Set on every write; not part of the API.
+    private String currency;
+
+    // 31) Change version, set by ProductService on every write from one collection-wide sequence.
+    // GET /api/product/changes?since= returns the products (and tombstones) with a higher version.
+    @Indexed(name = "version")
+    private Long version;
+
+    // When the version was assigned
+    private Instant lastModified;
 }
 
 
@@ -0,0 +1,37 @@
+// 31) Left behind by a deleted product so delta-sync clients learn about the delete
+
+package com.allinone.Product_Service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Keyed by the product id: deleting a product again only moves its tombstone to the new version.
+// Tombstones expire (TTL index) after RETENTION, so a change token older than that is refused.
+@Document(value = "product_tombstone")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductTombstone {
+
+    public static final Duration RETENTION = Duration.ofDays(30);
+
+    // Id of the deleted product
+    @Id
+    private String id;
+
+    // Version of the delete, from the same sequence as Product.version
+    @Indexed(name = "version")
+    private long version;
+
+    @Indexed(name = "deletedAt_ttl", expireAfter = "30d")
+    private Instant deletedAt;
+}
@@ -0,0 +1,12 @@
+// 34) A price the configured representation can't hold (e.g. 1.234 as minor units of USD)
+
+package com.allinone.Product_Service.repository;
+
+// Thrown while converting a product for MongoDB, so it is not an HTTP error: the controllers answer 400,
+// bulk writes report it for the one product (ProductRepositoryCustom.insertAllUnordered).
+public class InvalidPriceException extends IllegalArgumentException {
+
+    public InvalidPriceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,119 @@
+// 34) How Product.price is stored in MongoDB: Decimal128, long minor units plus currency, or a string
+
+package com.allinone.Product_Service.repository;
+
+import com.allinone.Product_Service.model.Product;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.convert.MongoConversionContext;
+import org.springframework.data.mongodb.core.convert.MongoValueConverter;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+// Registered for Product.price only (ProductPriceMapping), so it also converts price values in queries.
+// Writes the configured representation; reads all of them, so documents written before a switch stay
+// readable until ProductPriceMigration has rewritten them:
+// - DECIMAL128: exact, numeric in MongoDB (range queries, sorting, $sum), 16 bytes.
+// - MINOR_UNITS: int64 in the currency's smallest unit (cents), plus the ISO code in "currency". Prices
+//   with more decimal places than the currency has are rejected, not rounded.
+// - STRING: what Spring Data writes for BigDecimal by default, sorts as text.
+public class ProductPriceConverter implements MongoValueConverter<BigDecimal, Object> {
+
+    public enum Representation {
+        DECIMAL128, MINOR_UNITS, STRING
+    }
+
+    private final Representation representation;
+    private final Currency currency;
+
+    public ProductPriceConverter(Representation representation, String currencyCode) {
+        this.representation = representation;
+        this.currency = Currency.getInstance(currencyCode);
+        if (currency.getDefaultFractionDigits() < 0) {
+            throw new IllegalArgumentException(currencyCode + " has no minor unit");
+        }
+    }
+
+    public Representation getRepresentation() {
+        return representation;
+    }
+
+    // The currency stored with minor units, null for the other representations
+    public String currencyCode() {
+        return representation == Representation.MINOR_UNITS ? currency.getCurrencyCode() : null;
+    }
+
+    @Override
+    public BigDecimal read(Object value, MongoConversionContext context) {
+        return fromStored(value, asCurrencyCode(context.getValue("currency")));
+    }
+
+    @Override
+    public Object write(BigDecimal value, MongoConversionContext context) {
+        return toStored(value);
+    }
+
+    // Also used by the migration on raw documents; currencyCode is the document's, null for the configured one
+    public BigDecimal fromStored(Object value, String currencyCode) {
+        return switch (value) {
+            case Decimal128 decimal -> decimal.bigDecimalValue();
+            case Long minorUnits -> BigDecimal.valueOf(minorUnits, fractionDigits(currencyCode));
+            case Integer minorUnits -> BigDecimal.valueOf(minorUnits, fractionDigits(currencyCode));
+            case String text -> new BigDecimal(text);
+            case Double number -> BigDecimal.valueOf(number);
+            default -> throw new IllegalStateException("Unexpected price type " + value.getClass().getName());
+        };
+    }
+
+    // InvalidPriceException when the price doesn't fit the representation
+    public Object toStored(BigDecimal price) {
+        try {
+            return switch (representation) {
+                case DECIMAL128 -> new Decimal128(price);
+                case MINOR_UNITS -> price.movePointRight(currency.getDefaultFractionDigits()).longValueExact();
+                case STRING -> price.toString();
+            };
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new InvalidPriceException("Price " + price + " can't be stored as "
+                    + representation + (representation == Representation.MINOR_UNITS ? " of " + currency : ""));
+        }
+    }
+
+    // Checks a price before it is written (null is stored as is), whatever the representation: a sum of
+    // money the currency can express and the rest of the service can index, i.e. not negative, at most the
+    // currency's decimal places and within the long minor-unit range. InvalidPriceException otherwise.
+    public void validate(BigDecimal price) {
+        if (price == null) {
+            return;
+        }
+        if (price.signum() < 0) {
+            throw new InvalidPriceException("Price " + price + " must not be negative");
+        }
+        int fractionDigits = currency.getDefaultFractionDigits();
+        if (price.stripTrailingZeros().scale() > fractionDigits) {
+            throw new InvalidPriceException("Price " + price + " has more than " + fractionDigits + " decimal places of " + currency);
+        }
+        try {
+            // Cheap for any exponent: movePointRight only shifts the scale, longValueExact checks the digits first
+            price.movePointRight(fractionDigits).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new InvalidPriceException("Price " + price + " is too large");
+        }
+        toStored(price);
+    }
+
+    // Keeps the stored currency in line with the price written next to it (see ProductPriceMapping)
+    public void stampCurrency(Product product) {
+        product.setCurrency(currencyCode());
+    }
+
+    private static String asCurrencyCode(Object currency) {
+        return currency instanceof String code ? code : null;
+    }
+
+    private int fractionDigits(String currencyCode) {
+        return currencyCode == null || currencyCode.equals(currency.getCurrencyCode())
+                ? currency.getDefaultFractionDigits()
+                : Currency.getInstance(currencyCode).getDefaultFractionDigits();
+    }
+}
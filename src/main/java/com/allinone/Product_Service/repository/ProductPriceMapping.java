@@ -0,0 +1,74 @@
+// 34) Wires ProductPriceConverter into the Product mapping (blocking and reactive)
+
+package com.allinone.Product_Service.repository;
+
+import com.allinone.Product_Service.model.Product;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeConvertCallback;
+import reactor.core.publisher.Mono;
+
+// Boot uses this MongoCustomConversions for MongoTemplate and ReactiveMongoTemplate alike. The callbacks set
+// Product.currency to what the converter writes the price in, on every insert / save.
+@Configuration(proxyBeanMethods = false)
+public class ProductPriceMapping {
+
+    // decimal128 (default), minor-units or string (Spring Data's default, as stored before)
+    @Bean
+    public ProductPriceConverter productPriceConverter(
+            @Value("${product.price.representation:decimal128}") ProductPriceConverter.Representation representation,
+            @Value("${product.price.currency:USD}") String currency) {
+        return new ProductPriceConverter(representation, currency);
+    }
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions(ProductPriceConverter productPriceConverter) {
+        return MongoCustomConversions.create(adapter -> adapter.configurePropertyConversions(registrar ->
+                registrar.registerConverter(Product.class, "price", productPriceConverter)));
+    }
+
+    @Bean
+    public CurrencyCallback productCurrencyCallback(ProductPriceConverter productPriceConverter) {
+        return new CurrencyCallback(productPriceConverter);
+    }
+
+    @Bean
+    public ReactiveCurrencyCallback reactiveProductCurrencyCallback(ProductPriceConverter productPriceConverter) {
+        return new ReactiveCurrencyCallback(productPriceConverter);
+    }
+
+    // Classes rather than lambdas: the callback's entity type is read from its generic interface
+    static class CurrencyCallback implements BeforeConvertCallback<Product> {
+
+        private final ProductPriceConverter productPriceConverter;
+
+        CurrencyCallback(ProductPriceConverter productPriceConverter) {
+            this.productPriceConverter = productPriceConverter;
+        }
+
+        @Override
+        public Product onBeforeConvert(Product product, String collection) {
+            productPriceConverter.stampCurrency(product);
+            return product;
+        }
+    }
+
+    static class ReactiveCurrencyCallback implements ReactiveBeforeConvertCallback<Product> {
+
+        private final ProductPriceConverter productPriceConverter;
+
+        ReactiveCurrencyCallback(ProductPriceConverter productPriceConverter) {
+            this.productPriceConverter = productPriceConverter;
+        }
+
+        @Override
+        public Publisher<Product> onBeforeConvert(Product product, String collection) {
+            productPriceConverter.stampCurrency(product);
+            return Mono.just(product);
+        }
+    }
+}
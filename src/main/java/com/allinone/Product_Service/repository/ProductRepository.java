@@ -5,7 +5,25 @@ package com.allinone.Product_Service.repository;
 import com.allinone.Product_Service.model.Product;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface ProductRepository extends MongoRepository<Product, String> {
+import java.util.List;
+import java.util.Optional;
+
+// 28) The derived queries are declared in ProductStore, the services only see that part. ProductRepositoryCustom
+// is listed again because Spring Data only looks for fragment implementations on the direct interfaces.
+public interface ProductRepository extends MongoRepository<Product, String>, ProductRepositoryCustom, ProductStore {
+
+    // Declared by both parents; repeated here so calls on ProductRepository aren't ambiguous
+    @Override
+    <S extends Product> S save(S product);
+
+    @Override
+    Optional<Product> findById(String id);
+
+    @Override
+    List<Product> findAllById(Iterable<String> ids);
+
+    @Override
+    List<Product> findAll();
 }
 
 //Great follow-up!
@@ -0,0 +1,69 @@
+// 14) Custom repository fragment for operations MongoRepository can't derive
+
+package com.allinone.Product_Service.repository;
+
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.model.ProductTombstone;
+import org.bson.RawBsonDocument;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface ProductRepositoryCustom {
+
+    // Streams every product over a live cursor, fetching batchSize documents per round trip.
+    // The caller must close the stream (try-with-resources) so the server-side cursor is killed.
+    Stream<Product> streamAll(int batchSize);
+
+    // 21) Same scan, but only the given fields and as raw BSON bytes: no entity mapping at all.
+    // Also has to be closed by the caller.
+    Stream<RawBsonDocument> streamAllRaw(int batchSize, String... fields);
+
+    // 15) Inserts all products in one unordered bulk write. Ids are assigned up front so they are known
+    // even for partial failures. Returns the error message per failed list index (empty when all succeeded);
+    // a price that can't be stored only fails that product, it is left out of the write.
+    Map<Integer, String> insertAllUnordered(List<Product> products);
+
+    // 16) Whether such a failure is a unique index violation: MongoDB's duplicate key error (E11000) or the
+    // mapped store's DuplicateKeyException
+    static boolean isDuplicateKey(String failure) {
+        return failure != null && (failure.contains("E11000") || failure.startsWith("Duplicate "));
+    }
+
+    // The field whose unique index a duplicate key failure is about ("id" or "skuCode"), null if it doesn't say
+    static String duplicateKeyField(String failure) {
+        if (failure == null) {
+            return null;
+        }
+        if (failure.contains("index: _id_ ") || failure.startsWith("Duplicate id ")) {
+            return "id";
+        }
+        if (failure.contains("index: skuCode_unique ") || failure.startsWith("Duplicate skuCode ")) {
+            return "skuCode";
+        }
+        return null;
+    }
+
+    // 31) Reserves count consecutive change versions from the collection-wide sequence, returns the first
+    long reserveVersions(int count);
+
+    // 31) Replaces the product with the same id, never inserts: false when there is none (e.g. deleted
+    // since it was read), so an update can't bring a deleted product back
+    boolean replaceExisting(Product product);
+
+    // Deletes the product and leaves a tombstone with this version. False when there was no such product.
+    boolean deleteWithTombstone(String id, long version, Instant deletedAt);
+
+    // Tombstones with a higher version, ordered by version
+    List<ProductTombstone> findTombstonesAfter(long version, int limit);
+
+    // 18) The tombstone with the highest version
+    Optional<ProductTombstone> findLatestTombstone();
+
+    // Sets version / lastModified on the products (id -> version) that still have no version.
+    // Returns how many were set; a product written in the meantime already has its own version.
+    long assignMissingVersions(Map<String, Long> versions, Instant lastModified);
+}
@@ -0,0 +1,168 @@
+// 14) Spring Data picks this up by name (fragment interface + "Impl") and mixes it into ProductRepository
+
+package com.allinone.Product_Service.repository;
+
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.model.ProductTombstone;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReplaceOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+@RequiredArgsConstructor
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    // 31) One document {_id: "product", seq: <last reserved version>}, shared with the reactive repository
+    static final String VERSION_SEQUENCE = "product_version";
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ProductPriceConverter productPriceConverter;
+
+    @Override
+    public Stream<Product> streamAll(int batchSize) {
+        // Sorted on _id so the scan walks the index in a stable order
+        Query query = new Query()
+                .with(Sort.by("id"))
+                .cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, Product.class);
+    }
+
+    @Override
+    public Stream<RawBsonDocument> streamAllRaw(int batchSize, String... fields) {
+        // Driver-level query with RawBsonDocument as result type: the driver keeps each document as the
+        // bytes it received instead of decoding it into a Document, and the projection keeps those bytes small
+        MongoCursor<RawBsonDocument> cursor = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class))
+                .withDocumentClass(RawBsonDocument.class)
+                .find()
+                .projection(Projections.include(fields))
+                .sort(Sorts.ascending("_id"))
+                .batchSize(batchSize)
+                .cursor();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+                .onClose(cursor::close);
+    }
+
+    @Override
+    public Map<Integer, String> insertAllUnordered(List<Product> products) {
+        Map<Integer, String> errors = new HashMap<>();
+        if (products.isEmpty()) {
+            return errors;
+        }
+        // Prices are converted while the bulk is assembled, where one bad price would fail all of them:
+        // check them first and only write the rest. positions maps bulk index -> list index.
+        List<Product> valid = new ArrayList<>(products.size());
+        int[] positions = new int[products.size()];
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            if (product.getId() == null) {
+                product.setId(new ObjectId().toHexString());
+            }
+            try {
+                productPriceConverter.validate(product.getPrice());
+            } catch (InvalidPriceException e) {
+                errors.put(i, e.getMessage());
+                continue;
+            }
+            positions[valid.size()] = i;
+            valid.add(product);
+        }
+        if (valid.isEmpty()) {
+            return errors;
+        }
+        try {
+            // UNORDERED: the server keeps going after a failed document and can apply the writes in parallel
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)
+                    .insert(valid)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                errors.put(positions[error.getIndex()], error.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public long reserveVersions(int count) {
+        // One atomic $inc on the server: versions are unique and increasing across all instances
+        Document sequence = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is("product")),
+                new Update().inc("seq", count),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Document.class,
+                VERSION_SEQUENCE);
+        return sequence.get("seq", Number.class).longValue() - count + 1;
+    }
+
+    @Override
+    public boolean replaceExisting(Product product) {
+        // replace() with ReplaceOptions.none() is a replaceOne without upsert
+        return mongoTemplate.replace(Query.query(Criteria.where("id").is(product.getId())), product,
+                ReplaceOptions.none(), mongoTemplate.getCollectionName(Product.class)).getMatchedCount() > 0;
+    }
+
+    @Override
+    public boolean deleteWithTombstone(String id, long version, Instant deletedAt) {
+        // Delete first: if the tombstone write fails, clients keep a product that is gone until the next
+        // delete; the other way round they would drop a product that still exists
+        if (mongoTemplate.findAndRemove(Query.query(Criteria.where("id").is(id)), Product.class) == null) {
+            return false;
+        }
+        mongoTemplate.save(new ProductTombstone(id, version, deletedAt));
+        return true;
+    }
+
+    @Override
+    public List<ProductTombstone> findTombstonesAfter(long version, int limit) {
+        Query query = Query.query(Criteria.where("version").gt(version))
+                .with(Sort.by("version"))
+                .limit(limit);
+        return mongoTemplate.find(query, ProductTombstone.class);
+    }
+
+    @Override
+    public Optional<ProductTombstone> findLatestTombstone() {
+        Query query = new Query()
+                .with(Sort.by(Sort.Direction.DESC, "version"))
+                .limit(1);
+        return Optional.ofNullable(mongoTemplate.findOne(query, ProductTombstone.class));
+    }
+
+    @Override
+    public long assignMissingVersions(Map<String, Long> versions, Instant lastModified) {
+        if (versions.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        versions.forEach((id, version) -> bulk.updateOne(
+                // Only if it still has no version, never overwrite a newer write
+                Query.query(Criteria.where("id").is(id).and("version").is(null)),
+                new Update().set("version", version).set("lastModified", lastModified)));
+        return bulk.execute().getModifiedCount();
+    }
+}
@@ -0,0 +1,176 @@
+// 36) Raw find / getMore on _id ranges of the product collection, all at the same snapshot (cluster time)
+
+package com.allinone.Product_Service.repository;
+
+import com.allinone.Product_Service.model.Product;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The driver's find() can't take readConcern atClusterTime, so the commands are sent as they are: every
+// range cursor reads the collection as of the same cluster time, however long the scans take (up to the
+// server's minSnapshotHistoryWindowInSeconds, 300 s by default). Needs MongoDB 5.0+ as a replica set;
+// otherwise snapshot() returns null and the scans read the current data.
+// Commands go to the primary: a getMore has to reach the server that holds the cursor.
+@Component
+@ConditionalOnProperty(name = "product.storage.backend", havingValue = "mongo", matchIfMissing = true)
+public class ProductSnapshotReader {
+
+    // Server error when atClusterTime has left the snapshot history window
+    public static final int SNAPSHOT_TOO_OLD = 239;
+
+    private final MongoTemplate mongoTemplate;
+
+    public ProductSnapshotReader(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // A cluster time to read at: atClusterTime when that can still be read (null: now), otherwise
+    // MongoCommandException with SNAPSHOT_TOO_OLD. Null when the server has no snapshot reads.
+    public BsonTimestamp snapshot(BsonTimestamp atClusterTime) {
+        BsonDocument command = new BsonDocument("find", new BsonString(collectionName()))
+                .append("projection", new BsonDocument("_id", new BsonInt32(1)))
+                .append("limit", new BsonInt32(1))
+                .append("singleBatch", BsonBoolean.TRUE)
+                .append("readConcern", readConcern(atClusterTime));
+        RawBsonDocument response;
+        try {
+            response = database().runCommand(command, RawBsonDocument.class);
+        } catch (MongoCommandException e) {
+            if (atClusterTime != null) {
+                throw e;
+            }
+            // Standalone server, or before 5.0
+            return null;
+        }
+        BsonDocument cursor = response.getDocument("cursor");
+        return cursor.containsKey("atClusterTime") ? cursor.getTimestamp("atClusterTime") : null;
+    }
+
+    // About count _id values picked at random, in _id order (range boundaries)
+    public List<BsonValue> sampleIds(int count) {
+        BsonArray pipeline = new BsonArray(List.of(
+                new BsonDocument("$sample", new BsonDocument("size", new BsonInt32(count))),
+                new BsonDocument("$project", new BsonDocument("_id", new BsonInt32(1))),
+                new BsonDocument("$sort", new BsonDocument("_id", new BsonInt32(1)))));
+        BsonDocument command = new BsonDocument("aggregate", new BsonString(collectionName()))
+                .append("pipeline", pipeline)
+                .append("cursor", new BsonDocument("batchSize", new BsonInt32(count)));
+        List<BsonValue> ids = new ArrayList<>();
+        try (Cursor cursor = new Cursor(database().runCommand(command, RawBsonDocument.class), count)) {
+            List<RawBsonDocument> batch;
+            while ((batch = cursor.next()) != null) {
+                batch.forEach(document -> ids.add(document.get("_id")));
+            }
+        }
+        return ids;
+    }
+
+    // Documents with lower <= _id < upper (null: unbounded) in _id order, batchSize per round trip, read at
+    // atClusterTime (null: current data). projection null: whole documents. Close it to kill the cursor.
+    public Cursor scan(BsonValue lower, BsonValue upper, BsonTimestamp atClusterTime, int batchSize,
+                       BsonDocument projection, String comment) {
+        BsonDocument range = new BsonDocument();
+        if (lower != null) {
+            range.append("$gte", lower);
+        }
+        if (upper != null) {
+            range.append("$lt", upper);
+        }
+        BsonDocument command = new BsonDocument("find", new BsonString(collectionName()))
+                .append("filter", range.isEmpty() ? new BsonDocument() : new BsonDocument("_id", range))
+                .append("sort", new BsonDocument("_id", new BsonInt32(1)))
+                .append("hint", new BsonDocument("_id", new BsonInt32(1)))
+                .append("batchSize", new BsonInt32(batchSize))
+                .append("comment", new BsonString(comment));
+        if (projection != null) {
+            command.append("projection", projection);
+        }
+        if (atClusterTime != null) {
+            command.append("readConcern", readConcern(atClusterTime));
+        }
+        return new Cursor(database().runCommand(command, RawBsonDocument.class), batchSize);
+    }
+
+    private static BsonDocument readConcern(BsonTimestamp atClusterTime) {
+        BsonDocument readConcern = new BsonDocument("level", new BsonString("snapshot"));
+        if (atClusterTime != null) {
+            readConcern.append("atClusterTime", atClusterTime);
+        }
+        return readConcern;
+    }
+
+    private MongoDatabase database() {
+        return mongoTemplate.getDb();
+    }
+
+    private String collectionName() {
+        return mongoTemplate.getCollectionName(Product.class);
+    }
+
+    // Batches of a server cursor, as the raw BSON the server sent
+    public final class Cursor implements AutoCloseable {
+
+        private final int batchSize;
+        private List<RawBsonDocument> pending;
+        private long id;
+
+        private Cursor(RawBsonDocument response, int batchSize) {
+            this.batchSize = batchSize;
+            accept(response.getDocument("cursor"), "firstBatch");
+        }
+
+        // The next batch, null after the last one
+        public List<RawBsonDocument> next() {
+            while (pending == null || pending.isEmpty()) {
+                if (id == 0) {
+                    return null;
+                }
+                BsonDocument getMore = new BsonDocument("getMore", new BsonInt64(id))
+                        .append("collection", new BsonString(collectionName()))
+                        .append("batchSize", new BsonInt32(batchSize));
+                accept(database().runCommand(getMore, RawBsonDocument.class).getDocument("cursor"), "nextBatch");
+            }
+            List<RawBsonDocument> batch = pending;
+            pending = null;
+            return batch;
+        }
+
+        private void accept(BsonDocument cursor, String batchField) {
+            id = cursor.getNumber("id").longValue();
+            BsonArray documents = cursor.getArray(batchField);
+            pending = new ArrayList<>(documents.size());
+            for (BsonValue document : documents) {
+                pending.add((RawBsonDocument) document);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (id != 0) {
+                long cursorId = id;
+                id = 0;
+                try {
+                    database().runCommand(new BsonDocument("killCursors", new BsonString(collectionName()))
+                            .append("cursors", new BsonArray(List.of(new BsonInt64(cursorId)))));
+                } catch (RuntimeException e) {
+                    // It times out on the server anyway
+                }
+            }
+        }
+    }
+}
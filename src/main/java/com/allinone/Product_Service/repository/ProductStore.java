@@ -0,0 +1,41 @@
+// 28) What the services need from product storage: implemented by ProductRepository (MongoDB) and by
+// MappedProductRepository (embedded log)
+
+package com.allinone.Product_Service.repository;
+
+import com.allinone.Product_Service.model.Product;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.Optional;
+
+// Only lookups every backend can answer from an index: by id, in _id order, by SKU and by change
+// version. The signatures match CrudRepository's, so ProductRepository gets them from Spring Data.
+public interface ProductStore extends ProductRepositoryCustom {
+
+    <S extends Product> S save(S product);
+
+    Optional<Product> findById(String id);
+
+    List<Product> findAllById(Iterable<String> ids);
+
+    List<Product> findAll();
+
+    // 13) keyset pagination: first page, walks the _id index from the start
+    List<Product> findAllByOrderByIdAsc(Limit limit);
+
+    // Next page: one indexed range query on _id (> last id of previous page), so deep pages cost the same as the first
+    List<Product> findByIdGreaterThanOrderByIdAsc(String id, Limit limit);
+
+    // 22) point lookup on the unique skuCode index
+    Optional<Product> findBySkuCode(String skuCode);
+
+    // 31) delta sync: products changed after a version, walks the version index
+    List<Product> findByVersionGreaterThanOrderByVersionAsc(long version, Limit limit);
+
+    // 18) the most recent product change, one step on the version index
+    Optional<Product> findFirstByOrderByVersionDesc();
+
+    // Products written before versions existed, for the backfill
+    List<Product> findByVersionIsNull(Limit limit);
+}
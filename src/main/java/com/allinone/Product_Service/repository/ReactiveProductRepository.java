@@ -0,0 +1,26 @@
+// 19) Reactive counterpart of ProductRepository, used by the "reactive" profile
+
+package com.allinone.Product_Service.repository;
+
+import com.allinone.Product_Service.model.Product;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveProductRepository extends ReactiveMongoRepository<Product, String>, ReactiveProductRepositoryCustom {
+
+    // Whole collection in _id order. The driver requests the next batch only when the subscriber has
+    // asked for more, so a slow client slows the cursor down instead of filling the heap.
+    @Meta(cursorBatchSize = 1000)
+    Flux<Product> findAllByOrderByIdAsc();
+
+    // 13) keyset pagination, same queries as ProductStore
+    Flux<Product> findAllByOrderByIdAsc(Limit limit);
+
+    Flux<Product> findByIdGreaterThanOrderByIdAsc(String id, Limit limit);
+
+    // 22) point lookup on the unique skuCode index
+    Mono<Product> findBySkuCode(String skuCode);
+}
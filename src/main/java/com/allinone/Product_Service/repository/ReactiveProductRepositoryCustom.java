@@ -0,0 +1,19 @@
+// 31) Custom fragment of ReactiveProductRepository
+
+package com.allinone.Product_Service.repository;
+
+import com.allinone.Product_Service.model.Product;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ReactiveProductRepositoryCustom {
+
+    // 15) Unordered bulk insert like ProductRepositoryCustom.insertAllUnordered: emits the error message per
+    // failed list index, empty when all succeeded
+    Mono<Map<Integer, String>> insertAllUnordered(List<Product> products);
+
+    // Reserves count consecutive change versions (same sequence as ProductRepository), emits the first
+    Mono<Long> reserveVersions(int count);
+}
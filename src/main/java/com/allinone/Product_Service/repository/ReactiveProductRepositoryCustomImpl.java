@@ -0,0 +1,87 @@
+// 31) Spring Data picks this up by name (fragment interface + "Impl") and mixes it into ReactiveProductRepository
+
+package com.allinone.Product_Service.repository;
+
+import com.allinone.Product_Service.model.Product;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class ReactiveProductRepositoryCustomImpl implements ReactiveProductRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    private final ProductPriceConverter productPriceConverter;
+
+    @Override
+    public Mono<Map<Integer, String>> insertAllUnordered(List<Product> products) {
+        // Same up-front price check as the blocking repository; positions maps bulk index -> list index
+        Map<Integer, String> errors = new HashMap<>();
+        List<Product> valid = new ArrayList<>(products.size());
+        int[] positions = new int[products.size()];
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            if (product.getId() == null) {
+                product.setId(new ObjectId().toHexString());
+            }
+            try {
+                productPriceConverter.validate(product.getPrice());
+            } catch (InvalidPriceException e) {
+                errors.put(i, e.getMessage());
+                continue;
+            }
+            positions[valid.size()] = i;
+            valid.add(product);
+        }
+        if (valid.isEmpty()) {
+            return Mono.just(errors);
+        }
+        // The reactive bulk doesn't wrap failures in BulkOperationException: the driver's exception is the
+        // error itself or, once translated (e.g. to DuplicateKeyException), its cause
+        return reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)
+                .insert(valid)
+                .execute()
+                .thenReturn(errors)
+                .onErrorResume(e -> bulkWriteException(e) != null, e -> {
+                    for (BulkWriteError error : bulkWriteException(e).getWriteErrors()) {
+                        errors.put(positions[error.getIndex()], error.getMessage());
+                    }
+                    return Mono.just(errors);
+                });
+    }
+
+    private static MongoBulkWriteException bulkWriteException(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulkWriteException) {
+                return bulkWriteException;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Mono<Long> reserveVersions(int count) {
+        return reactiveMongoTemplate.findAndModify(
+                        Query.query(Criteria.where("_id").is("product")),
+                        new Update().inc("seq", count),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        Document.class,
+                        ProductRepositoryCustomImpl.VERSION_SEQUENCE)
+                .map(sequence -> sequence.get("seq", Number.class).longValue() - count + 1);
+    }
+}
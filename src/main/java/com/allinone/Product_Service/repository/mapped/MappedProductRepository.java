@@ -0,0 +1,207 @@
+// 28) ProductStore on the embedded MappedProductStore, selected with product.storage.backend=mapped
+
+package com.allinone.Product_Service.repository.mapped;
+
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.model.ProductTombstone;
+import com.allinone.Product_Service.repository.ProductStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// For a single instance without a database: products live in a local file (see MappedProductStore), so
+// lookups are a memory access instead of a network round trip. Use the "mapped" profile, which also
+// switches off the Mongo auto-configuration. Implements only ProductStore, not the whole MongoRepository:
+// the services never ask for example queries or other sort orders, so the log doesn't have to answer them.
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "product.storage.backend", havingValue = "mapped")
+public class MappedProductRepository implements ProductStore {
+
+    // Batch size of findAll() and of the sorted scans
+    private static final int SCAN_BATCH = 1000;
+
+    private final MappedProductStore store;
+
+    // 31) Single process, so the version sequence is a counter, continued from the highest version in the log
+    private final AtomicLong versionSequence;
+
+    public MappedProductRepository(@Value("${product.storage.mapped.file:data/products.log}") Path file,
+                                   @Value("${product.storage.mapped.segment-size:64MB}") DataSize segmentSize,
+                                   @Value("${product.storage.mapped.sync-writes:false}") boolean syncWrites,
+                                   @Value("${product.storage.mapped.compact-ratio:0.5}") double compactRatio,
+                                   MeterRegistry meterRegistry) throws IOException {
+        this.store = new MappedProductStore(file, Math.toIntExact(segmentSize.toBytes()), syncWrites, compactRatio);
+        this.versionSequence = new AtomicLong(store.maxVersion());
+        log.info("Opened product log {} with {} products", file.toAbsolutePath(), store.count());
+        Gauge.builder("product.storage.mapped.file", store, MappedProductStore::fileBytes)
+                .description("Size of the product log, including superseded records")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("product.storage.mapped.live", store, MappedProductStore::liveBytes)
+                .description("Bytes of the product log still in use")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("product.storage.mapped.index", store, MappedProductStore::indexBytes)
+                .description("Off-heap memory of the id and SKU indexes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        store.close();
+    }
+
+    @Override
+    public List<Product> findAllByOrderByIdAsc(Limit limit) {
+        return store.findAfter(null, limit.isLimited() ? limit.max() : Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Product> findByIdGreaterThanOrderByIdAsc(String id, Limit limit) {
+        // Like Mongo, a cursor that isn't an ObjectId just matches nothing
+        if (!ObjectId.isValid(id)) {
+            return List.of();
+        }
+        return store.findAfter(id, limit.isLimited() ? limit.max() : Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Optional<Product> findBySkuCode(String skuCode) {
+        return Optional.ofNullable(store.findBySkuCode(skuCode));
+    }
+
+    @Override
+    public List<Product> findByVersionGreaterThanOrderByVersionAsc(long version, Limit limit) {
+        return store.findChangedAfter(version, limit.isLimited() ? limit.max() : Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Optional<Product> findFirstByOrderByVersionDesc() {
+        return Optional.ofNullable(store.findLatestChanged());
+    }
+
+    // Only the startup backfill asks, once per batch; there is no index for it, so it is a scan
+    @Override
+    public List<Product> findByVersionIsNull(Limit limit) {
+        try (Stream<Product> products = store.streamAll(SCAN_BATCH)) {
+            return products.filter(product -> product.getVersion() == null)
+                    .limit(limit.isLimited() ? limit.max() : Long.MAX_VALUE)
+                    .toList();
+        }
+    }
+
+    @Override
+    public long reserveVersions(int count) {
+        return versionSequence.getAndAdd(count) + 1;
+    }
+
+    @Override
+    public boolean replaceExisting(Product product) {
+        return store.replace(product);
+    }
+
+    @Override
+    public boolean deleteWithTombstone(String id, long version, Instant deletedAt) {
+        return store.deleteById(id, version, deletedAt);
+    }
+
+    @Override
+    public List<ProductTombstone> findTombstonesAfter(long version, int limit) {
+        return store.findTombstonesAfter(version, limit);
+    }
+
+    @Override
+    public Optional<ProductTombstone> findLatestTombstone() {
+        return Optional.ofNullable(store.findLatestTombstone());
+    }
+
+    @Override
+    public long assignMissingVersions(Map<String, Long> versions, Instant lastModified) {
+        long assigned = 0;
+        for (Map.Entry<String, Long> entry : versions.entrySet()) {
+            if (store.assignVersion(entry.getKey(), entry.getValue(), lastModified)) {
+                assigned++;
+            }
+        }
+        return assigned;
+    }
+
+    @Override
+    public Stream<Product> streamAll(int batchSize) {
+        return store.streamAll(batchSize);
+    }
+
+    @Override
+    public Stream<RawBsonDocument> streamAllRaw(int batchSize, String... fields) {
+        // No projection: fields beyond the requested ones (version, lastModified) are skipped by the reader
+        return store.streamAllRaw(batchSize);
+    }
+
+    @Override
+    public Map<Integer, String> insertAllUnordered(List<Product> products) {
+        Map<Integer, String> errors = new HashMap<>();
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            if (product.getId() == null) {
+                product.setId(new ObjectId().toHexString());
+            }
+            try {
+                store.insert(product);
+            } catch (RuntimeException e) {
+                errors.put(i, e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public <S extends Product> S save(S entity) {
+        store.save(entity);
+        return entity;
+    }
+
+    @Override
+    public Optional<Product> findById(String id) {
+        return Optional.ofNullable(store.findById(id));
+    }
+
+    @Override
+    public List<Product> findAll() {
+        try (Stream<Product> products = store.streamAll(SCAN_BATCH)) {
+            return products.toList();
+        }
+    }
+
+    @Override
+    public List<Product> findAllById(Iterable<String> ids) {
+        List<Product> products = new ArrayList<>();
+        for (String id : ids) {
+            Product product = store.findById(id);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+}
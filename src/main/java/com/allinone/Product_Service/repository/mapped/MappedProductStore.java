@@ -0,0 +1,888 @@
+// 28) Embedded product store: append-only log in memory-mapped segments plus off-heap indexes
+
+package com.allinone.Product_Service.repository.mapped;
+
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.model.ProductTombstone;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
+
+// File layout: 16 byte header (magic, segment size), then records
+//   [int payload length][byte type][int CRC32C of length, type and payload][payload]
+// A PUT payload is the product as a BSON document (same shape as the Mongo document, _id first), a DELETE
+// payload the 12 id bytes, followed by the change version and deletion time (epoch millis) when the delete
+// leaves a tombstone for delta sync (29). Records never cross a segment boundary; the rest of a segment is skipped with a
+// PADDING record. The file is mapped one segment at a time (a MappedByteBuffer is limited to 2 GB).
+//
+// Every write appends a record and repoints the indexes (id -> offset, SKU hash -> offset), which live in
+// direct buffers: the product data itself never becomes Java objects until it is read, and reads decode
+// straight out of the mapped pages. Superseded records are garbage; once they make up more than
+// compactRatio of the log, a background thread copies the live records into a new file (in id order) that
+// replaces it. Writes go on meanwhile: the copy takes the read lock a batch at a time, and what was written
+// during it is replayed into the new file before the swap, which is the only step that blocks writers.
+//
+// 31) Two more indexes keyed by change version, one for the current record of each product and one for the
+// tombstones, answer "what changed after version v" in version order. Compaction keeps the tombstones younger
+// than ProductTombstone.RETENTION, and always the newest one, so the highest version issued survives it.
+//
+// Startup replays the log to rebuild the indexes. A record with a bad length or checksum is a torn write
+// from a crash: the log ends before it, and the remains are wiped so they can never be read back.
+@Slf4j
+public class MappedProductStore implements Closeable {
+
+    private static final long MAGIC = 0x50524f444c4f4731L; // "PRODLOG1"
+    private static final int FILE_HEADER = 16;
+    private static final int RECORD_HEADER = 9;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte PADDING = 3;
+    // _id is written first: int32 document length, type byte, "_id\0", then the 12 ObjectId bytes
+    private static final int ID_IN_PAYLOAD = 9;
+    // id, version, deletedAt
+    private static final int TOMBSTONE_PAYLOAD = 28;
+    // Records compaction copies per read lock
+    private static final int COPY_BATCH = 1000;
+
+    private final Path file;
+    private final boolean syncWrites;
+    private final double compactRatio;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int segmentSize;
+    private FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private long writePosition;
+    // Bytes of the current record of every live product; the rest of the log is garbage
+    private long liveBytes;
+    // Replaced by the compacted log's indexes when it is swapped in
+    private OffHeapIdIndex ids = new OffHeapIdIndex(1024);
+    private OffHeapSkuIndex skus = new OffHeapSkuIndex(1024);
+    // Keyed by (version, 0), the layout of OffHeapIdIndex
+    private OffHeapIdIndex versions = new OffHeapIdIndex(1024);
+    private OffHeapIdIndex tombstones = new OffHeapIdIndex(1024);
+    private long maxVersion;
+
+    // Changes whenever the mapping is dropped (close, deleteAll): a compaction copying from it gives up
+    private long generation;
+    private volatile boolean closed;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    // Held by the one compaction that may run at a time
+    private final Object compaction = new Object();
+
+    public MappedProductStore(Path file, int segmentSize, boolean syncWrites, double compactRatio) throws IOException {
+        this.file = file;
+        this.segmentSize = segmentSize;
+        this.syncWrites = syncWrites;
+        this.compactRatio = compactRatio;
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        // Left over from a compaction that didn't finish; the log it was copied from is still intact
+        Files.deleteIfExists(compactionFile());
+        open();
+    }
+
+    public Product findById(String id) {
+        if (!ObjectId.isValid(id)) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            long offset = ids.get(idHigh(id), idLow(id));
+            return offset < 0 ? null : readProduct(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Product findBySkuCode(String skuCode) {
+        lock.readLock().lock();
+        try {
+            long offset = findSku(skuCode);
+            return offset < 0 ? null : readProduct(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Products with an id greater than afterId (null: from the start) in id order
+    public List<Product> findAfter(String afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            int from = afterId == null ? 0 : ids.slotAfter(idHigh(afterId), idLow(afterId));
+            int to = (int) Math.min(ids.size(), (long) from + limit);
+            List<Product> products = new ArrayList<>(Math.max(0, to - from));
+            for (int slot = from; slot < to; slot++) {
+                products.add(readProduct(ids.offsetAt(slot)));
+            }
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // All products in id order, read batchSize at a time: no lock is held between batches, so writers
+    // are not blocked by a slow consumer (like a Mongo cursor, the scan sees concurrent changes or not)
+    public Stream<Product> streamAll(int batchSize) {
+        return scan(batchSize, this::readProduct);
+    }
+
+    // Same scan as raw BSON documents (a copy of the record: RawBsonDocument needs a heap array)
+    public Stream<RawBsonDocument> streamAllRaw(int batchSize) {
+        return scan(batchSize, this::readRaw);
+    }
+
+    // 31) Products whose current version is greater than this one, in version order
+    public List<Product> findChangedAfter(long version, int limit) {
+        lock.readLock().lock();
+        try {
+            int from = versions.slotAfter(version, 0);
+            int to = (int) Math.min(versions.size(), (long) from + limit);
+            List<Product> products = new ArrayList<>(Math.max(0, to - from));
+            for (int slot = from; slot < to; slot++) {
+                products.add(readProduct(versions.offsetAt(slot)));
+            }
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Tombstones with a version greater than this one, in version order
+    public List<ProductTombstone> findTombstonesAfter(long version, int limit) {
+        lock.readLock().lock();
+        try {
+            int from = tombstones.slotAfter(version, 0);
+            int to = (int) Math.min(tombstones.size(), (long) from + limit);
+            List<ProductTombstone> found = new ArrayList<>(Math.max(0, to - from));
+            for (int slot = from; slot < to; slot++) {
+                found.add(readTombstone(tombstones.offsetAt(slot)));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 18) The product with the highest version, null when no product has one
+    public Product findLatestChanged() {
+        lock.readLock().lock();
+        try {
+            return versions.size() == 0 ? null : readProduct(versions.offsetAt(versions.size() - 1));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The tombstone with the highest version, null when there is none
+    public ProductTombstone findLatestTombstone() {
+        lock.readLock().lock();
+        try {
+            return tombstones.size() == 0 ? null : readTombstone(tombstones.offsetAt(tombstones.size() - 1));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Highest change version in the log, 0 when there is none
+    public long maxVersion() {
+        lock.readLock().lock();
+        try {
+            return maxVersion;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Inserts or replaces; assigns an ObjectId to a new product. A SKU used by another product is rejected.
+    public Product save(Product product) {
+        return write(product, WriteMode.UPSERT);
+    }
+
+    // Like save, but an existing id is rejected as well
+    public Product insert(Product product) {
+        return write(product, WriteMode.INSERT);
+    }
+
+    // 31) Like save, but only if the id exists; false (and nothing written) otherwise
+    public boolean replace(Product product) {
+        return product.getId() != null && ObjectId.isValid(product.getId()) && write(product, WriteMode.REPLACE) != null;
+    }
+
+    private enum WriteMode {
+        UPSERT, INSERT, REPLACE
+    }
+
+    // null when mode is REPLACE and the product doesn't exist
+    private Product write(Product product, WriteMode mode) {
+        if (product.getId() == null) {
+            product.setId(new ObjectId().toHexString());
+        } else if (!ObjectId.isValid(product.getId())) {
+            throw new IllegalArgumentException("The mapped store only supports ObjectId ids, got " + product.getId());
+        }
+        byte[] payload = encode(product);
+
+        lock.writeLock().lock();
+        try {
+            boolean exists = ids.get(idHigh(product.getId()), idLow(product.getId())) >= 0;
+            if (mode == WriteMode.INSERT && exists) {
+                throw new DuplicateKeyException("Duplicate id " + product.getId());
+            }
+            if (mode == WriteMode.REPLACE && !exists) {
+                return null;
+            }
+            String skuCode = product.getSkuCode();
+            if (skuCode != null) {
+                long owner = findSku(skuCode);
+                if (owner >= 0 && !sameId(owner, payload)) {
+                    throw new DuplicateKeyException("Duplicate skuCode " + skuCode);
+                }
+            }
+            apply(append(PUT, payload));
+            compactIfNeeded();
+            return product;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 31) Sets version and lastModified of a product that has no version yet, false if it has one (or is gone)
+    public boolean assignVersion(String id, long version, Instant lastModified) {
+        lock.writeLock().lock();
+        try {
+            Product product = findById(id);
+            if (product == null || product.getVersion() != null) {
+                return false;
+            }
+            product.setVersion(version);
+            product.setLastModified(lastModified);
+            write(product, WriteMode.UPSERT);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Deletes without leaving a tombstone
+    public boolean deleteById(String id) {
+        return delete(id, ByteBuffer.allocate(12));
+    }
+
+    // 31) Deletes and leaves a tombstone with this change version
+    public boolean deleteById(String id, long version, Instant deletedAt) {
+        return delete(id, ByteBuffer.allocate(TOMBSTONE_PAYLOAD).putLong(12, version).putLong(20, deletedAt.toEpochMilli()));
+    }
+
+    private boolean delete(String id, ByteBuffer payload) {
+        if (!ObjectId.isValid(id)) {
+            return false;
+        }
+        new ObjectId(id).putToByteBuffer(payload.duplicate());
+        lock.writeLock().lock();
+        try {
+            if (ids.get(idHigh(id), idLow(id)) < 0) {
+                return false;
+            }
+            apply(append(DELETE, payload.array()));
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteAll() {
+        lock.writeLock().lock();
+        try {
+            unmap();
+            Files.deleteIfExists(file);
+            open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not reset " + file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rewrites the live records, in id order, into a new log and swaps it in. Tombstones go first, so one
+    // for an id that was written again later can't remove the product when the new log is replayed.
+    // Runs in the calling thread; writes made meanwhile are carried over.
+    public void compact() {
+        synchronized (compaction) {
+            try {
+                copyAndSwap();
+            } catch (IOException e) {
+                throw new IllegalStateException("Compacting " + file + " failed", e);
+            }
+        }
+    }
+
+    private void copyAndSwap() throws IOException {
+        Path target = compactionFile();
+        Files.deleteIfExists(target);
+        MappedProductStore compacted = new MappedProductStore(target, segmentSize, false, 1);
+        boolean swapped = false;
+        try {
+            long startGeneration;
+            long copiedUpTo;
+            long newestTombstone;
+            lock.readLock().lock();
+            try {
+                startGeneration = generation;
+                // Everything written from here on is replayed afterwards, in log order
+                copiedUpTo = writePosition;
+                newestTombstone = tombstones.size() == 0 ? -1 : tombstones.offsetAt(tombstones.size() - 1);
+            } finally {
+                lock.readLock().unlock();
+            }
+            long expired = Instant.now().minus(ProductTombstone.RETENTION).toEpochMilli();
+            if (!copy(tombstones, DELETE, compacted, startGeneration, offset -> offset < copiedUpTo
+                    && (offset == newestTombstone || payload(offset).getLong(20) > expired))
+                    || !copy(ids, PUT, compacted, startGeneration, offset -> true)) {
+                return;
+            }
+
+            // Catch up a segment per read lock, so little is left for the write lock
+            long replayed = copiedUpTo;
+            long behind;
+            do {
+                lock.readLock().lock();
+                try {
+                    if (generation != startGeneration) {
+                        return;
+                    }
+                    replayed = replay(replayed, Math.min(writePosition, replayed + segmentSize), compacted);
+                    behind = writePosition - replayed;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            } while (behind > segmentSize);
+
+            lock.writeLock().lock();
+            try {
+                if (generation != startGeneration) {
+                    return;
+                }
+                replay(replayed, writePosition, compacted);
+                compacted.segments.forEach(MappedByteBuffer::force);
+                // The compacted file stays mapped under its new name
+                Files.move(target, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                unmap();
+                adopt(compacted);
+                swapped = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            if (!swapped) {
+                compacted.close();
+                Files.deleteIfExists(target);
+            }
+        }
+    }
+
+    // Copies the records an index points to in index order, COPY_BATCH per read lock. False when the log
+    // was closed or reset in between.
+    private boolean copy(OffHeapIdIndex index, byte type, MappedProductStore compacted, long startGeneration,
+                         LongPredicate include) {
+        long lastHigh = 0;
+        int lastLow = 0;
+        boolean started = false;
+        while (true) {
+            lock.readLock().lock();
+            try {
+                if (generation != startGeneration) {
+                    return false;
+                }
+                int from = started ? index.slotAfter(lastHigh, lastLow) : 0;
+                int to = (int) Math.min(index.size(), (long) from + COPY_BATCH);
+                for (int slot = from; slot < to; slot++) {
+                    long offset = index.offsetAt(slot);
+                    if (include.test(offset)) {
+                        compacted.apply(compacted.append(type, payloadBytes(offset)));
+                    }
+                }
+                if (to - from < COPY_BATCH) {
+                    return true;
+                }
+                lastHigh = index.idHighAt(to - 1);
+                lastLow = index.idLowAt(to - 1);
+                started = true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    // Appends the records from position up to end (a record may run past it) to the compacted log, returns
+    // the position after the last one
+    private long replay(long position, long end, MappedProductStore compacted) {
+        while (position < end) {
+            int inSegment = (int) (position % segmentSize);
+            if (segmentSize - inSegment < RECORD_HEADER || segmentAt(position).get(inSegment + 4) == PADDING) {
+                position = (position / segmentSize + 1) * segmentSize;
+                continue;
+            }
+            compacted.apply(compacted.append(segmentAt(position).get(inSegment + 4), payloadBytes(position)));
+            position += recordSize(position);
+        }
+        return position;
+    }
+
+    // Takes over the mapping and indexes of the compacted log, which has this log's path now
+    private void adopt(MappedProductStore compacted) {
+        channel = compacted.channel;
+        segments.addAll(compacted.segments);
+        writePosition = compacted.writePosition;
+        liveBytes = compacted.liveBytes;
+        ids = compacted.ids;
+        skus = compacted.skus;
+        versions = compacted.versions;
+        tombstones = compacted.tombstones;
+    }
+
+    // Whether a background compaction is scheduled or running
+    boolean isCompacting() {
+        return compactionScheduled.get();
+    }
+
+    public long fileBytes() {
+        return writePosition;
+    }
+
+    public long liveBytes() {
+        return liveBytes;
+    }
+
+    // Direct memory held by the indexes
+    public long indexBytes() {
+        lock.readLock().lock();
+        try {
+            return ids.memoryBytes() + skus.memoryBytes() + versions.memoryBytes() + tombstones.memoryBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            unmap();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Maps the file (creating it if needed) and replays it into the indexes
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ids.clear();
+        skus.clear();
+        versions.clear();
+        tombstones.clear();
+        maxVersion = 0;
+        liveBytes = 0;
+        if (channel.size() < FILE_HEADER) {
+            MappedByteBuffer first = segment(0);
+            first.putLong(0, MAGIC);
+            first.putInt(8, segmentSize);
+            writePosition = FILE_HEADER;
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+        channel.read(header, 0);
+        if (header.getLong(0) != MAGIC) {
+            throw new IOException(file + " is not a product log");
+        }
+        // The file keeps the segment size it was written with
+        segmentSize = header.getInt(8);
+        long segmentCount = (channel.size() + segmentSize - 1) / segmentSize;
+        for (int index = 0; index < segmentCount; index++) {
+            segment(index);
+        }
+        recover();
+    }
+
+    private void recover() throws IOException {
+        long position = FILE_HEADER;
+        while (true) {
+            int index = (int) (position / segmentSize);
+            int inSegment = (int) (position % segmentSize);
+            if (index >= segments.size()) {
+                break;
+            }
+            if (segmentSize - inSegment < RECORD_HEADER) {
+                position = (long) (index + 1) * segmentSize;
+                continue;
+            }
+            MappedByteBuffer buffer = segments.get(index);
+            int length = buffer.getInt(inSegment);
+            byte type = buffer.get(inSegment + 4);
+            if (type == PADDING) {
+                position = (long) (index + 1) * segmentSize;
+                continue;
+            }
+            if ((type != PUT && type != DELETE) || length <= 0 || length > segmentSize - inSegment - RECORD_HEADER
+                    || buffer.getInt(inSegment + 5) != checksum(buffer, inSegment, length)) {
+                break;
+            }
+            apply(position);
+            position += RECORD_HEADER + length;
+        }
+        writePosition = position;
+
+        // Whatever follows the last good record was never completely written: zero the rest of its segment
+        // and drop later segments, so a shorter record appended later can't make it look valid again
+        int index = (int) (position / segmentSize);
+        if (index < segments.size()) {
+            MappedByteBuffer buffer = segments.get(index);
+            for (int i = (int) (position % segmentSize); i < segmentSize; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+            segments.subList(index + 1, segments.size()).clear();
+            channel.truncate((long) (index + 1) * segmentSize);
+        }
+    }
+
+    // Points the indexes at the record at this offset (a write, or replaying one)
+    private void apply(long offset) {
+        MappedByteBuffer buffer = segmentAt(offset);
+        int inSegment = (int) (offset % segmentSize);
+        int payload = inSegment + RECORD_HEADER;
+        boolean put = buffer.get(inSegment + 4) == PUT;
+        long idHigh = buffer.getLong(payload + (put ? ID_IN_PAYLOAD : 0));
+        int idLow = buffer.getInt(payload + (put ? ID_IN_PAYLOAD : 0) + 8);
+
+        long previous;
+        Product product = null;
+        if (put) {
+            previous = ids.put(idHigh, idLow, offset);
+            liveBytes += recordSize(offset);
+            product = readProduct(offset);
+            if (product.getSkuCode() != null) {
+                skus.put(OffHeapSkuIndex.hash(product.getSkuCode()), offset);
+            }
+        } else {
+            previous = ids.remove(idHigh, idLow);
+        }
+        if (previous >= 0) {
+            liveBytes -= recordSize(previous);
+            Product previousProduct = readProduct(previous);
+            if (previousProduct.getSkuCode() != null) {
+                skus.remove(OffHeapSkuIndex.hash(previousProduct.getSkuCode()), previous);
+            }
+            if (previousProduct.getVersion() != null) {
+                versions.remove(previousProduct.getVersion(), 0);
+            }
+        }
+
+        // After the previous version is gone: a save may keep the version
+        if (product != null && product.getVersion() != null) {
+            versions.put(product.getVersion(), 0, offset);
+            maxVersion = Math.max(maxVersion, product.getVersion());
+        } else if (!put && buffer.getInt(inSegment) >= TOMBSTONE_PAYLOAD) {
+            long version = buffer.getLong(payload + 12);
+            tombstones.put(version, 0, offset);
+            liveBytes += recordSize(offset);
+            maxVersion = Math.max(maxVersion, version);
+        }
+    }
+
+    // Writes a record at the end of the log and returns its offset
+    private long append(byte type, byte[] payload) {
+        int size = RECORD_HEADER + payload.length;
+        if (size > segmentSize - FILE_HEADER) {
+            throw new IllegalArgumentException("Record of " + size + " bytes exceeds the segment size " + segmentSize);
+        }
+        int inSegment = (int) (writePosition % segmentSize);
+        if (segmentSize - inSegment < size) {
+            if (segmentSize - inSegment >= RECORD_HEADER) {
+                MappedByteBuffer buffer = segmentAt(writePosition);
+                buffer.putInt(inSegment, 0);
+                buffer.put(inSegment + 4, PADDING);
+            }
+            writePosition += segmentSize - inSegment;
+            inSegment = 0;
+        }
+        MappedByteBuffer buffer = segmentAt(writePosition);
+        buffer.put(inSegment + RECORD_HEADER, payload);
+        buffer.putInt(inSegment, payload.length);
+        buffer.put(inSegment + 4, type);
+        buffer.putInt(inSegment + 5, checksum(buffer, inSegment, payload.length));
+        if (syncWrites) {
+            buffer.force(inSegment, size);
+        }
+        long offset = writePosition;
+        writePosition += size;
+        return offset;
+    }
+
+    // Called with the write lock held, so it only starts the compaction
+    private void compactIfNeeded() {
+        if (needsCompaction() && compactionScheduled.compareAndSet(false, true)) {
+            Thread.ofPlatform().daemon(true).name("product-log-compaction").start(this::compactInBackground);
+        }
+    }
+
+    private boolean needsCompaction() {
+        long used = writePosition - FILE_HEADER;
+        return !closed && used > segmentSize && used - liveBytes > used * compactRatio;
+    }
+
+    // Goes again while the writes made during a compaction left enough garbage for another one; a write
+    // that found one scheduled didn't start its own
+    private void compactInBackground() {
+        try {
+            boolean again;
+            do {
+                compact();
+                compactionScheduled.set(false);
+                lock.readLock().lock();
+                try {
+                    again = needsCompaction();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            } while (again && compactionScheduled.compareAndSet(false, true));
+        } catch (RuntimeException e) {
+            compactionScheduled.set(false);
+            log.warn("Compacting {} failed, retried after the next write", file, e);
+        }
+    }
+
+    private <T> Stream<T> scan(int batchSize, LongFunction<T> reader) {
+        Iterator<T> iterator = new Iterator<>() {
+            private List<T> batch = List.of();
+            private int position;
+            private long lastHigh;
+            private int lastLow;
+            private boolean started;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if (position < batch.size()) {
+                    return true;
+                }
+                if (exhausted) {
+                    return false;
+                }
+                lock.readLock().lock();
+                try {
+                    int from = started ? ids.slotAfter(lastHigh, lastLow) : 0;
+                    int to = (int) Math.min(ids.size(), (long) from + batchSize);
+                    List<T> next = new ArrayList<>(Math.max(0, to - from));
+                    for (int slot = from; slot < to; slot++) {
+                        next.add(reader.apply(ids.offsetAt(slot)));
+                    }
+                    if (to > from) {
+                        lastHigh = ids.idHighAt(to - 1);
+                        lastLow = ids.idLowAt(to - 1);
+                    }
+                    started = true;
+                    exhausted = to - from < batchSize;
+                    batch = next;
+                    position = 0;
+                } finally {
+                    lock.readLock().unlock();
+                }
+                return !batch.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.get(position++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private long findSku(String skuCode) {
+        if (skuCode == null) {
+            return -1;
+        }
+        return skus.get(OffHeapSkuIndex.hash(skuCode), offset -> skuCode.equals(readProduct(offset).getSkuCode()));
+    }
+
+    private boolean sameId(long offset, byte[] payload) {
+        MappedByteBuffer buffer = segmentAt(offset);
+        int id = (int) (offset % segmentSize) + RECORD_HEADER + ID_IN_PAYLOAD;
+        return buffer.getLong(id) == ByteBuffer.wrap(payload).getLong(ID_IN_PAYLOAD)
+                && buffer.getInt(id + 8) == ByteBuffer.wrap(payload).getInt(ID_IN_PAYLOAD + 8);
+    }
+
+    // Decodes the BSON payload in place: the reader walks the mapped bytes, only the field values are copied
+    private Product readProduct(long offset) {
+        Product product = new Product();
+        try (BsonBinaryReader reader = new BsonBinaryReader(payload(offset))) {
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = reader.readName();
+                if (reader.getCurrentBsonType() == BsonType.NULL) {
+                    reader.readNull();
+                    continue;
+                }
+                switch (name) {
+                    case "_id" -> product.setId(reader.readObjectId().toHexString());
+                    case "name" -> product.setName(reader.readString());
+                    case "description" -> product.setDescription(reader.readString());
+                    case "skuCode" -> product.setSkuCode(reader.readString());
+                    case "price" -> product.setPrice(new BigDecimal(reader.readString()));
+                    case "version" -> product.setVersion(reader.readInt64());
+                    case "lastModified" -> product.setLastModified(Instant.ofEpochMilli(reader.readDateTime()));
+                    default -> reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+        }
+        return product;
+    }
+
+    private ProductTombstone readTombstone(long offset) {
+        ByteBuffer payload = payload(offset);
+        byte[] id = new byte[12];
+        payload.get(0, id);
+        return new ProductTombstone(new ObjectId(id).toHexString(), payload.getLong(12), Instant.ofEpochMilli(payload.getLong(20)));
+    }
+
+    private RawBsonDocument readRaw(long offset) {
+        return new RawBsonDocument(payloadBytes(offset));
+    }
+
+    // Product as BSON, laid out like the document Spring Data writes (BigDecimal price as a string)
+    private static byte[] encode(Product product) {
+        BasicOutputBuffer output = new BasicOutputBuffer(256);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(output)) {
+            writer.writeStartDocument();
+            writer.writeObjectId("_id", new ObjectId(product.getId()));
+            writeString(writer, "name", product.getName());
+            writeString(writer, "description", product.getDescription());
+            writeString(writer, "skuCode", product.getSkuCode());
+            writeString(writer, "price", product.getPrice() == null ? null : product.getPrice().toString());
+            if (product.getVersion() != null) {
+                writer.writeInt64("version", product.getVersion());
+            }
+            if (product.getLastModified() != null) {
+                writer.writeDateTime("lastModified", product.getLastModified().toEpochMilli());
+            }
+            writer.writeEndDocument();
+        }
+        return output.toByteArray();
+    }
+
+    private static void writeString(BsonBinaryWriter writer, String name, String value) {
+        if (value == null) {
+            writer.writeNull(name);
+        } else {
+            writer.writeString(name, value);
+        }
+    }
+
+    private ByteBuffer payload(long offset) {
+        MappedByteBuffer buffer = segmentAt(offset);
+        int inSegment = (int) (offset % segmentSize);
+        return buffer.slice(inSegment + RECORD_HEADER, buffer.getInt(inSegment));
+    }
+
+    private byte[] payloadBytes(long offset) {
+        ByteBuffer payload = payload(offset);
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return bytes;
+    }
+
+    private int recordSize(long offset) {
+        return RECORD_HEADER + segmentAt(offset).getInt((int) (offset % segmentSize));
+    }
+
+    private static int checksum(ByteBuffer buffer, int record, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(record, 5));
+        crc.update(buffer.slice(record + RECORD_HEADER, length));
+        return (int) crc.getValue();
+    }
+
+    private MappedByteBuffer segmentAt(long offset) {
+        return segment((int) (offset / segmentSize));
+    }
+
+    // Maps segments up to this one on first use; mapping past the end of the file grows it
+    private MappedByteBuffer segment(int index) {
+        try {
+            while (segments.size() <= index) {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * segmentSize, segmentSize));
+            }
+            return segments.get(index);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map segment " + index + " of " + file, e);
+        }
+    }
+
+    // Flushes and forgets the mapping; the buffers are unmapped once collected
+    private void unmap() throws IOException {
+        generation++;
+        segments.forEach(MappedByteBuffer::force);
+        segments.clear();
+        channel.close();
+    }
+
+    private Path compactionFile() {
+        return file.resolveSibling(file.getFileName() + ".compact");
+    }
+
+    // An ObjectId as 8 + 4 bytes, the order they are compared in
+    private static long idHigh(String id) {
+        return Long.parseUnsignedLong(id, 0, 16, 16);
+    }
+
+    private static int idLow(String id) {
+        return Integer.parseUnsignedInt(id, 16, 24, 16);
+    }
+}
@@ -0,0 +1,128 @@
+// 28) id -> log offset index of the mapped store, kept outside the Java heap
+
+package com.allinone.Product_Service.repository.mapped;
+
+import java.nio.ByteBuffer;
+
+// Entries of 20 bytes (12 byte ObjectId, 8 byte log offset) in a direct buffer, sorted by id bytes, which is
+// also MongoDB's _id order. Lookup is a binary search; walking the entries gives the keyset / scan order
+// for free. New ObjectIds are increasing, so inserts are appends; only out-of-order ids shift the tail.
+// Not thread-safe, MappedProductStore guards it.
+class OffHeapIdIndex {
+
+    private static final int ENTRY = 20;
+
+    private ByteBuffer entries;
+    private int size;
+
+    OffHeapIdIndex(int initialCapacity) {
+        entries = ByteBuffer.allocateDirect(Math.max(16, initialCapacity) * ENTRY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Offset of the record for this id, -1 when there is none
+    long get(long idHigh, int idLow) {
+        int slot = find(idHigh, idLow);
+        return slot >= 0 ? offsetAt(slot) : -1;
+    }
+
+    // Returns the previous offset, -1 when the id is new
+    long put(long idHigh, int idLow, long offset) {
+        int slot = find(idHigh, idLow);
+        if (slot >= 0) {
+            long previous = offsetAt(slot);
+            entries.putLong(slot * ENTRY + 12, offset);
+            return previous;
+        }
+        slot = -slot - 1;
+        if ((size + 1) * ENTRY > entries.capacity()) {
+            grow();
+        }
+        if (slot < size) {
+            // Shift the tail one entry to the right
+            entries.put((slot + 1) * ENTRY, entries, slot * ENTRY, (size - slot) * ENTRY);
+        }
+        write(slot, idHigh, idLow, offset);
+        size++;
+        return -1;
+    }
+
+    // Returns the removed offset, -1 when the id was not there
+    long remove(long idHigh, int idLow) {
+        int slot = find(idHigh, idLow);
+        if (slot < 0) {
+            return -1;
+        }
+        long previous = offsetAt(slot);
+        entries.put(slot * ENTRY, entries, (slot + 1) * ENTRY, (size - slot - 1) * ENTRY);
+        size--;
+        return previous;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    // First slot whose id is greater than the given one (0 for no id): where a keyset page starts
+    int slotAfter(long idHigh, int idLow) {
+        int slot = find(idHigh, idLow);
+        return slot >= 0 ? slot + 1 : -slot - 1;
+    }
+
+    long idHighAt(int slot) {
+        return entries.getLong(slot * ENTRY);
+    }
+
+    int idLowAt(int slot) {
+        return entries.getInt(slot * ENTRY + 8);
+    }
+
+    long offsetAt(int slot) {
+        return entries.getLong(slot * ENTRY + 12);
+    }
+
+    long memoryBytes() {
+        return entries.capacity();
+    }
+
+    // Binary search; like Arrays.binarySearch: slot if found, else -(insertion point) - 1
+    private int find(long idHigh, int idLow) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = Long.compareUnsigned(idHighAt(middle), idHigh);
+            if (compare == 0) {
+                compare = Integer.compareUnsigned(idLowAt(middle), idLow);
+            }
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    private void write(int slot, long idHigh, int idLow, long offset) {
+        int position = slot * ENTRY;
+        entries.putLong(position, idHigh);
+        entries.putInt(position + 8, idLow);
+        entries.putLong(position + 12, offset);
+    }
+
+    private void grow() {
+        long capacity = (long) entries.capacity() + (entries.capacity() >> 1);
+        if (capacity > Integer.MAX_VALUE - ENTRY) {
+            throw new IllegalStateException("Id index is full at " + size + " products");
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect((int) capacity / ENTRY * ENTRY);
+        larger.put(0, entries, 0, size * ENTRY);
+        entries = larger;
+    }
+}
@@ -0,0 +1,125 @@
+// 28) skuCode -> log offset index of the mapped store, kept outside the Java heap
+
+package com.allinone.Product_Service.repository.mapped;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongPredicate;
+
+// Open addressing table of 16 byte slots (64 bit SKU hash, 8 byte log offset) in a direct buffer.
+// The SKU itself is not stored: a hash match is confirmed by the caller against the record the offset
+// points to. Offset 0 marks a free slot (the log header lives there), -1 a removed one.
+// Not thread-safe, MappedProductStore guards it.
+class OffHeapSkuIndex {
+
+    private static final int SLOT = 16;
+    private static final long FREE = 0;
+    private static final long REMOVED = -1;
+
+    private ByteBuffer slots;
+    private int mask;
+    private int used;
+
+    OffHeapSkuIndex(int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(16, initialCapacity) * 2 - 1));
+    }
+
+    // Offset of the record whose SKU has this hash and is accepted by `matches`, -1 when there is none
+    long get(long hash, LongPredicate matches) {
+        for (int slot = slotFor(hash); ; slot = (slot + 1) & mask) {
+            long offset = offsetAt(slot);
+            if (offset == FREE) {
+                return -1;
+            }
+            if (offset != REMOVED && hashAt(slot) == hash && matches.test(offset)) {
+                return offset;
+            }
+        }
+    }
+
+    void put(long hash, long offset) {
+        // Removed slots still count as used until the next rehash, so probe chains stay short
+        if ((used + 1) * 10L > (mask + 1) * 7L) {
+            rehash();
+        }
+        int slot = slotFor(hash);
+        while (offsetAt(slot) != FREE && offsetAt(slot) != REMOVED) {
+            slot = (slot + 1) & mask;
+        }
+        if (offsetAt(slot) == FREE) {
+            used++;
+        }
+        slots.putLong(slot * SLOT, hash);
+        slots.putLong(slot * SLOT + 8, offset);
+    }
+
+    // Removes the entry for exactly this record
+    void remove(long hash, long offset) {
+        for (int slot = slotFor(hash); offsetAt(slot) != FREE; slot = (slot + 1) & mask) {
+            if (offsetAt(slot) == offset && hashAt(slot) == hash) {
+                slots.putLong(slot * SLOT + 8, REMOVED);
+                return;
+            }
+        }
+    }
+
+    void clear() {
+        allocate(16);
+    }
+
+    long memoryBytes() {
+        return slots.capacity();
+    }
+
+    // 64 bit FNV-1a over the chars, then a final mix so neighbouring SKUs spread over the table
+    static long hash(String sku) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < sku.length(); i++) {
+            hash = (hash ^ sku.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+
+    private int slotFor(long hash) {
+        return (int) hash & mask;
+    }
+
+    private long hashAt(int slot) {
+        return slots.getLong(slot * SLOT);
+    }
+
+    private long offsetAt(int slot) {
+        return slots.getLong(slot * SLOT + 8);
+    }
+
+    private void allocate(int capacity) {
+        slots = ByteBuffer.allocateDirect(capacity * SLOT);
+        mask = capacity - 1;
+        used = 0;
+    }
+
+    // Drops removed slots, doubling the table if the live entries alone fill more than half of it
+    private void rehash() {
+        ByteBuffer old = slots;
+        int oldCapacity = mask + 1;
+        int live = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long offset = old.getLong(slot * SLOT + 8);
+            if (offset != FREE && offset != REMOVED) {
+                live++;
+            }
+        }
+        int capacity = live * 2 > oldCapacity ? oldCapacity * 2 : oldCapacity;
+        if ((long) capacity * SLOT > Integer.MAX_VALUE) {
+            throw new IllegalStateException("SKU index is full at " + live + " products");
+        }
+        allocate(capacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long offset = old.getLong(slot * SLOT + 8);
+            if (offset != FREE && offset != REMOVED) {
+                put(old.getLong(slot * SLOT), offset);
+            }
+        }
+    }
+}
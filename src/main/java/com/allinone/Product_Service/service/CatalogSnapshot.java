@@ -0,0 +1,172 @@
+// 18) Pre-serialized catalog for GET /api/product
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.event.ProductChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+// Keeps the JSON (and gzipped JSON) bytes of the whole catalog, so polling clients cost neither a Mongo
+// query nor serialization. The snapshot is rebuilt lazily on the first request after a ProductChangedEvent.
+// After maxAge, as a safety net for changes we were not told about (other instances, change stream
+// disabled), it asks for changes above the version it was built at (ProductChangesService) and is only
+// rebuilt if there are any.
+@Component
+@Slf4j
+public class CatalogSnapshot {
+
+    private final ProductService productService;
+    private final ProductChangesService productChangesService;
+    private final long maxAgeNanos;
+    private final Timer buildTimer;
+
+    // Bumped on every change event; a snapshot built for an older version is stale
+    private final AtomicLong version = new AtomicLong();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Snapshot current;
+
+    public CatalogSnapshot(ProductService productService,
+                           ProductChangesService productChangesService,
+                           MeterRegistry meterRegistry,
+                           @Value("${product.snapshot.max-age:60s}") Duration maxAge) {
+        this.productService = productService;
+        this.productChangesService = productChangesService;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.buildTimer = Timer.builder("product.snapshot.build")
+                .description("Time to query and serialize the catalog snapshot")
+                .register(meterRegistry);
+        Gauge.builder("product.snapshot.size", this, snapshot -> snapshot.current == null ? 0 : snapshot.current.json().length)
+                .tag("encoding", "identity")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("product.snapshot.size", this, snapshot -> snapshot.current == null ? 0 : snapshot.current.gzip().length)
+                .tag("encoding", "gzip")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        version.incrementAndGet();
+    }
+
+    // Current snapshot, rebuilt first if the catalog changed since it was built
+    public Snapshot get() {
+        Snapshot snapshot = current;
+        if (isFresh(snapshot)) {
+            return snapshot;
+        }
+        rebuildLock.lock();
+        try {
+            // Another request may have rebuilt it while we waited
+            snapshot = current;
+            if (isFresh(snapshot)) {
+                return snapshot;
+            }
+            if (isUnchanged(snapshot)) {
+                snapshot = snapshot.revalidated(System.nanoTime());
+            } else {
+                snapshot = build();
+            }
+            current = snapshot;
+            return snapshot;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private boolean isFresh(Snapshot snapshot) {
+        return snapshot != null
+                && snapshot.version() == version.get()
+                && System.nanoTime() - snapshot.builtAt() < maxAgeNanos;
+    }
+
+    // Only max-age ran out: nothing changed since the build, checked with an index lookup instead of a rescan
+    private boolean isUnchanged(Snapshot snapshot) {
+        return snapshot != null
+                && snapshot.version() == version.get()
+                && snapshot.changeVersion() >= 0
+                && !productChangesService.hasChangesAfter(snapshot.changeVersion());
+    }
+
+    private Snapshot build() {
+        // Read the version first: a change during the build leaves the result stale and it is rebuilt next time
+        long buildVersion = version.get();
+        long start = System.nanoTime();
+        // Everything up to it is in what we read next
+        long changeVersion = productChangesService.settledVersion();
+        try {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            productService.writeAllProducts(json);
+            byte[] jsonBytes = json.toByteArray();
+
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream(jsonBytes.length / 4 + 64);
+            try (GZIPOutputStream gzipStream = new GZIPOutputStream(gzip)) {
+                gzipStream.write(jsonBytes);
+            }
+
+            Snapshot snapshot = new Snapshot(buildVersion, changeVersion, start, jsonBytes, gzip.toByteArray(), etagOf(jsonBytes));
+            long took = System.nanoTime() - start;
+            buildTimer.record(took, TimeUnit.NANOSECONDS);
+            log.info("Built catalog snapshot {} ({} bytes, {} gzipped) in {} ms", snapshot.etag(),
+                    jsonBytes.length, snapshot.gzip().length, TimeUnit.NANOSECONDS.toMillis(took));
+            return snapshot;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Strong ETag from the content, so every instance serving the same catalog hands out the same tag
+    private static String etagOf(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // changeVersion: ProductChangesService.settledVersion() when it was built, -1 if that wasn't known
+    public record Snapshot(long version, long changeVersion, long builtAt, byte[] json, byte[] gzip, String etag) {
+
+        // Same content, another maxAge
+        Snapshot revalidated(long now) {
+            return new Snapshot(version, changeVersion, now, json, gzip, etag);
+        }
+
+        // The gzip representation needs its own strong ETag
+        public String gzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String trimmed = tag.trim();
+                if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals(gzipEtag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
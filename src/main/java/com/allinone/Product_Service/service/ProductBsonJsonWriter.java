@@ -0,0 +1,273 @@
+// 21) Writes a projected product document from raw BSON bytes straight to a JSON generator
+
+package com.allinone.Product_Service.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.bson.ByteBuf;
+import org.bson.RawBsonDocument;
+import org.bson.types.Decimal128;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Currency;
+
+// Hot read path for the list / stream endpoints: the document stays as the bytes the driver received,
+// and id, name, description, skuCode and price are copied field by field into the generator in the same shape
+// (and order) as ProductResponse. No Product, no ProductResponse, no BigDecimal per row; strings are
+// handed over as UTF-8 byte ranges. One instance per stream, it reuses its small buffers.
+public class ProductBsonJsonWriter {
+
+    // BSON element types we read, see bsonspec.org
+    private static final byte DOUBLE = 0x01;
+    private static final byte STRING = 0x02;
+    private static final byte DOCUMENT = 0x03;
+    private static final byte ARRAY = 0x04;
+    private static final byte BINARY = 0x05;
+    private static final byte OBJECT_ID = 0x07;
+    private static final byte BOOLEAN = 0x08;
+    private static final byte DATE_TIME = 0x09;
+    private static final byte REGEX = 0x0B;
+    private static final byte DB_POINTER = 0x0C;
+    private static final byte JAVASCRIPT = 0x0D;
+    private static final byte SYMBOL = 0x0E;
+    private static final byte JAVASCRIPT_WITH_SCOPE = 0x0F;
+    private static final byte INT32 = 0x10;
+    private static final byte TIMESTAMP = 0x11;
+    private static final byte INT64 = 0x12;
+    private static final byte DECIMAL128 = 0x13;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Output fields in ProductResponse order, with the BSON field each one comes from
+    // 34) plus the currency of a price stored in minor units, which is read but not written
+    private static final String[] JSON_FIELDS = {"id", "name", "description", "skuCode", "price"};
+    public static final String[] BSON_FIELDS = {"_id", "name", "description", "skuCode", "price", "currency"};
+    private static final int PRICE = 4;
+    private static final int CURRENCY = 5;
+
+    private final JsonGenerator generator;
+    private final char[] hexBuffer = new char[24];
+    private final char[] numberBuffer = new char[64];
+
+    // Currency code of the last minor-units price and its decimal places, documents rarely differ
+    private byte[] currencyCode = new byte[0];
+    private int currencyDigits;
+
+    // Offset of each field's value in the current document (-1 = missing) and its BSON type
+    private final int[] valueOffsets = new int[BSON_FIELDS.length];
+    private final byte[] valueTypes = new byte[BSON_FIELDS.length];
+
+    public ProductBsonJsonWriter(JsonGenerator generator) {
+        this.generator = generator;
+    }
+
+    public void write(RawBsonDocument document) throws IOException {
+        ByteBuf buffer = document.getByteBuffer();
+        byte[] bytes = buffer.array();
+        int start = buffer.arrayOffset() + buffer.position();
+        locateFields(bytes, start);
+
+        generator.writeStartObject();
+        for (int field = 0; field < JSON_FIELDS.length; field++) {
+            generator.writeFieldName(JSON_FIELDS[field]);
+            if (field == PRICE && valueOffsets[field] >= 0) {
+                writePrice(bytes, valueOffsets[field], valueTypes[field]);
+            } else {
+                writeValue(bytes, valueOffsets[field], valueTypes[field]);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    // Single pass over the elements, remembering where our fields are; everything else is skipped
+    private void locateFields(byte[] bytes, int start) {
+        Arrays.fill(valueOffsets, -1);
+        int end = start + readInt32(bytes, start) - 1;
+        int position = start + 4;
+        while (position < end) {
+            byte type = bytes[position++];
+            int nameStart = position;
+            while (bytes[position] != 0) {
+                position++;
+            }
+            int field = fieldIndex(bytes, nameStart, position - nameStart);
+            position++;
+            if (field >= 0) {
+                valueOffsets[field] = position;
+                valueTypes[field] = type;
+            }
+            position = skipValue(bytes, position, type);
+        }
+    }
+
+    private void writeValue(byte[] bytes, int offset, byte type) throws IOException {
+        if (offset < 0) {
+            generator.writeNull();
+            return;
+        }
+        switch (type) {
+            case OBJECT_ID -> {
+                for (int i = 0; i < 12; i++) {
+                    int b = bytes[offset + i] & 0xFF;
+                    hexBuffer[i * 2] = HEX[b >>> 4];
+                    hexBuffer[i * 2 + 1] = HEX[b & 0x0F];
+                }
+                generator.writeString(hexBuffer, 0, hexBuffer.length);
+            }
+            // Length prefix includes the trailing 0 byte
+            case STRING -> generator.writeUTF8String(bytes, offset + 4, readInt32(bytes, offset) - 1);
+            case DOUBLE -> generator.writeNumber(Double.longBitsToDouble(readInt64(bytes, offset)));
+            case INT32 -> generator.writeNumber(readInt32(bytes, offset));
+            case INT64 -> generator.writeNumber(readInt64(bytes, offset));
+            case DECIMAL128 -> generator.writeNumber(
+                    Decimal128.fromIEEE754BIDEncoding(readInt64(bytes, offset + 8), readInt64(bytes, offset)).bigDecimalValue());
+            default -> generator.writeNull();
+        }
+    }
+
+    // 34) Price as the JSON number Jackson writes for the BigDecimal ProductPriceConverter reads, in
+    // any of the stored representations
+    private void writePrice(byte[] bytes, int offset, byte type) throws IOException {
+        switch (type) {
+            case STRING -> writeNumberText(bytes, offset);
+            case DECIMAL128 -> writeDecimal128(readInt64(bytes, offset), readInt64(bytes, offset + 8));
+            case INT64 -> {
+                int currencyOffset = valueOffsets[CURRENCY];
+                long minorUnits = readInt64(bytes, offset);
+                if (currencyOffset < 0 || valueTypes[CURRENCY] != STRING || minorUnits == Long.MIN_VALUE) {
+                    writeValue(bytes, offset, type);
+                } else {
+                    writeScaled(minorUnits < 0, Math.abs(minorUnits), currencyDigits(bytes, currencyOffset));
+                }
+            }
+            default -> writeValue(bytes, offset, type);
+        }
+    }
+
+    // Decimal128 (IEEE 754 BID): sign in bit 63 of high, then 14 bits of exponent and 113 of coefficient,
+    // unless bits 62-61 are both set (huge coefficient, infinity, NaN). Prices have coefficients that
+    // fit in low, so those are written from the bits; the rest takes the BigDecimal way.
+    private void writeDecimal128(long low, long high) throws IOException {
+        boolean plainForm = (high & 0x6000000000000000L) != 0x6000000000000000L;
+        if (plainForm && (high & 0x0001FFFFFFFFFFFFL) == 0 && low >= 0) {
+            int exponent = (int) ((high >>> 49) & 0x3FFF) - 6176;
+            if (exponent <= 0) {
+                writeScaled(high < 0 && low != 0, low, -exponent);
+                return;
+            }
+        }
+        generator.writeNumber(Decimal128.fromIEEE754BIDEncoding(high, low).bigDecimalValue());
+    }
+
+    // unscaled * 10^-scale in the plain notation of BigDecimal.toString(), which is what Jackson writes;
+    // where toString() would use an exponent (more than 6 leading zeros), it is left to BigDecimal
+    private void writeScaled(boolean negative, long unscaled, int scale) throws IOException {
+        int digits = 1;
+        for (long rest = unscaled; rest >= 10; rest /= 10) {
+            digits++;
+        }
+        if (digits - 1 - scale < -6) {
+            generator.writeNumber(BigDecimal.valueOf(negative ? -unscaled : unscaled, scale));
+            return;
+        }
+        int length = (negative ? 1 : 0) + (scale == 0 ? digits : Math.max(digits, scale + 1) + 1);
+        int position = length;
+        long rest = unscaled;
+        for (int i = 0; i < scale; i++) {
+            numberBuffer[--position] = (char) ('0' + rest % 10);
+            rest /= 10;
+        }
+        if (scale > 0) {
+            numberBuffer[--position] = '.';
+        }
+        do {
+            numberBuffer[--position] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (negative) {
+            numberBuffer[--position] = '-';
+        }
+        generator.writeNumber(numberBuffer, 0, length);
+    }
+
+    private int currencyDigits(byte[] bytes, int offset) {
+        int length = readInt32(bytes, offset) - 1;
+        if (!Arrays.equals(bytes, offset + 4, offset + 4 + length, currencyCode, 0, currencyCode.length)) {
+            currencyCode = Arrays.copyOfRange(bytes, offset + 4, offset + 4 + length);
+            currencyDigits = Math.max(0, Currency.getInstance(new String(currencyCode, StandardCharsets.US_ASCII))
+                    .getDefaultFractionDigits());
+        }
+        return currencyDigits;
+    }
+
+    // Price must come out as a JSON number like Jackson writes BigDecimal, but Spring Data stores
+    // BigDecimal as a string: copy its (ASCII) text into the number buffer and emit it as number text
+    private void writeNumberText(byte[] bytes, int offset) throws IOException {
+        int length = readInt32(bytes, offset) - 1;
+        if (length > numberBuffer.length) {
+            generator.writeNumber(new String(bytes, offset + 4, length, StandardCharsets.US_ASCII));
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            numberBuffer[i] = (char) bytes[offset + 4 + i];
+        }
+        generator.writeNumber(numberBuffer, 0, length);
+    }
+
+    private int fieldIndex(byte[] bytes, int nameStart, int nameLength) {
+        for (int field = 0; field < BSON_FIELDS.length; field++) {
+            String name = BSON_FIELDS[field];
+            if (name.length() == nameLength && nameEquals(bytes, nameStart, name)) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean nameEquals(byte[] bytes, int start, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (bytes[start + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipValue(byte[] bytes, int position, byte type) {
+        return switch (type) {
+            case DOUBLE, DATE_TIME, TIMESTAMP, INT64 -> position + 8;
+            case STRING, JAVASCRIPT, SYMBOL -> position + 4 + readInt32(bytes, position);
+            case DOCUMENT, ARRAY, JAVASCRIPT_WITH_SCOPE -> position + readInt32(bytes, position);
+            case BINARY -> position + 5 + readInt32(bytes, position);
+            case OBJECT_ID -> position + 12;
+            case BOOLEAN -> position + 1;
+            case REGEX -> skipCString(bytes, skipCString(bytes, position));
+            case DB_POINTER -> position + 4 + readInt32(bytes, position) + 12;
+            case INT32 -> position + 4;
+            case DECIMAL128 -> position + 16;
+            // null, undefined, min key, max key carry no value
+            default -> position;
+        };
+    }
+
+    private static int skipCString(byte[] bytes, int position) {
+        while (bytes[position] != 0) {
+            position++;
+        }
+        return position + 1;
+    }
+
+    // BSON is little endian
+    private static int readInt32(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF)
+                | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16
+                | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    private static long readInt64(byte[] bytes, int offset) {
+        return (readInt32(bytes, offset) & 0xFFFFFFFFL) | ((long) readInt32(bytes, offset + 4) << 32);
+    }
+}
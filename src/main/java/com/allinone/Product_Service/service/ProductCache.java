@@ -0,0 +1,183 @@
+// 17) Read-through cache in front of the product reads
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.allinone.Product_Service.event.ProductChangedEvent;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Caffeine uses W-TinyLFU eviction: frequently read products survive a scan of one-off reads.
+// Entries are dropped on every ProductChangedEvent (local writes and, if enabled, the change stream).
+// 20) Async caches on purpose: a plain Cache.get(key, loader) runs the loader inside ConcurrentHashMap.compute,
+// i.e. inside a synchronized block, which pins a virtual thread to its carrier for the whole Mongo round trip.
+// Here only an empty future is installed under the lock and the caller loads outside of it.
+@Component
+@Slf4j
+public class ProductCache {
+
+    private static final String ALL_KEY = "all";
+
+    private final AsyncCache<String, ProductResponse> productsById;
+    private final AsyncCache<String, List<ProductResponse>> allProducts;
+
+    // Where the hottest ids are written on shutdown and read back for the next warm-up (empty = off)
+    private final String hotKeysFile;
+    private final int warmUpSize;
+
+    public ProductCache(MeterRegistry meterRegistry,
+                        @Value("${product.cache.maximum-size:100000}") long maximumSize,
+                        @Value("${product.cache.ttl:10m}") Duration ttl,
+                        @Value("${product.cache.warm-up.file:}") String hotKeysFile,
+                        @Value("${product.cache.warm-up.size:1000}") int warmUpSize) {
+        this.productsById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        this.allProducts = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        this.hotKeysFile = hotKeysFile;
+        this.warmUpSize = warmUpSize;
+
+        // Hit / miss / eviction counters on the metrics endpoint
+        CaffeineCacheMetrics.monitor(meterRegistry, productsById.synchronous(), "product.byId");
+        CaffeineCacheMetrics.monitor(meterRegistry, allProducts.synchronous(), "product.all");
+    }
+
+    // Cached product, loaded with the loader on a miss. A loader returning null (not found) is not cached.
+    public ProductResponse getProduct(String id, Function<String, ProductResponse> loader) {
+        return load(productsById, id, loader);
+    }
+
+    // 23) Cached products by id, all misses loaded with one call of the loader (id -> product, missing
+    // ids left out). The result holds the ids that exist, in no particular order.
+    public Map<String, ProductResponse> getProducts(Collection<String> ids,
+                                                    Function<Set<String>, Map<String, ProductResponse>> loader) {
+        CompletableFuture<Map<String, ProductResponse>> loading = new CompletableFuture<>();
+        AtomicReference<Set<String>> missing = new AtomicReference<>();
+        CompletableFuture<Map<String, ProductResponse>> cached = productsById.getAll(ids, (keys, executor) -> {
+            missing.set(Set.copyOf(keys));
+            return loading;
+        });
+        if (missing.get() != null) {
+            Map<String, ProductResponse> loaded;
+            try {
+                loaded = loader.apply(missing.get());
+            } catch (Throwable e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+            loading.complete(loaded);
+        }
+        return join(cached);
+    }
+
+    public List<ProductResponse> getAllProducts(Supplier<List<ProductResponse>> loader) {
+        return load(allProducts, ALL_KEY, key -> loader.get());
+    }
+
+    public void putProduct(ProductResponse productResponse) {
+        productsById.synchronous().put(productResponse.getId(), productResponse);
+    }
+
+    // The first caller for a key installs its own future and runs the loader on its own thread;
+    // concurrent callers for the same key wait on that future (parking, not pinning). The future is
+    // completed whatever the loader throws, Errors included, or every later caller for the key would
+    // wait on it forever.
+    private static <V> V load(AsyncCache<String, V> cache, String key, Function<String, V> loader) {
+        CompletableFuture<V> loading = new CompletableFuture<>();
+        CompletableFuture<V> cached = cache.get(key, (k, executor) -> loading);
+        if (cached == loading) {
+            V value;
+            try {
+                value = loader.apply(key);
+            } catch (Throwable e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+            loading.complete(value);
+            return value;
+        }
+        return join(cached);
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    // Called for local writes and change-stream events alike
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getProductId() == null) {
+            productsById.synchronous().invalidateAll();
+        } else {
+            productsById.synchronous().invalidate(event.getProductId());
+        }
+        allProducts.synchronous().invalidateAll();
+    }
+
+    // Ids saved by the previous run, most frequently used first
+    public List<String> loadHotKeys() {
+        if (hotKeysFile.isBlank() || !Files.exists(Path.of(hotKeysFile))) {
+            return List.of();
+        }
+        try (var lines = Files.lines(Path.of(hotKeysFile))) {
+            return lines.filter(line -> !line.isBlank()).limit(warmUpSize).toList();
+        } catch (IOException e) {
+            log.warn("Could not read cache hot keys from {}", hotKeysFile, e);
+            return List.of();
+        }
+    }
+
+    @PreDestroy
+    void saveHotKeys() {
+        if (hotKeysFile.isBlank()) {
+            return;
+        }
+        // W-TinyLFU already knows which entries are used most, ask the eviction policy for them
+        List<String> hottest = productsById.synchronous().policy().eviction()
+                .map(eviction -> List.copyOf(eviction.hottest(warmUpSize).keySet()))
+                .orElse(List.of());
+        try {
+            Files.write(Path.of(hotKeysFile), hottest);
+            log.info("Saved {} hot product ids to {}", hottest.size(), hotKeysFile);
+        } catch (IOException e) {
+            log.warn("Could not save cache hot keys to {}", hotKeysFile, e);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+// 31) Delta sync: what changed since a token, instead of the whole catalog on every poll
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.dto.ProductChangesResponse;
+import com.allinone.Product_Service.dto.ProductChangesResponse.Change;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.model.ProductTombstone;
+import com.allinone.Product_Service.repository.ProductStore;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Every write gets the next version of one sequence (see ProductService), deletes leave a tombstone with
+// theirs. A token is the highest version the client has seen plus the time it was issued; a poll reads
+// the products and tombstones above that version from their version indexes, merged in version order.
+//
+// Versions are reserved before the write is committed, so a write with a lower version can become
+// visible after one with a higher version. The token therefore never moves to a version whose write may
+// still be running on this instance (ProductVersionReservations), nor past a change younger than
+// settle-time, which covers writes of other instances. Changes beyond the token are returned, but again
+// on the next poll too (applying a change twice is harmless).
+@Service
+@Slf4j
+@Timed("product.service")
+public class ProductChangesService {
+
+    private final ProductStore productRepository;
+    private final ProductVersionReservations versionReservations;
+    private final TaskExecutor taskExecutor;
+    private final int maxLimit;
+    private final Duration settleTime;
+    private final int backfillBatchSize;
+
+    public ProductChangesService(ProductStore productRepository,
+                                 ProductVersionReservations versionReservations,
+                                 @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+                                 @Value("${product.changes.max-limit:1000}") int maxLimit,
+                                 @Value("${product.changes.settle-time:2s}") Duration settleTime,
+                                 @Value("${product.changes.backfill-batch-size:1000}") int backfillBatchSize) {
+        this.productRepository = productRepository;
+        this.versionReservations = versionReservations;
+        this.taskExecutor = taskExecutor;
+        this.maxLimit = maxLimit;
+        this.settleTime = settleTime;
+        this.backfillBatchSize = backfillBatchSize;
+    }
+
+    // since: token of the previous call, null / blank for a full sync from the start
+    public ProductChangesResponse getChanges(String since, int limit) {
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+        int pageSize = Math.min(limit, maxLimit);
+        Instant now = Instant.now();
+        Token token = since == null || since.isBlank() ? new Token(0, now) : decodeToken(since);
+        if (token.issuedAt().isBefore(now.minus(ProductTombstone.RETENTION))) {
+            // The tombstones of deletes since then may have expired
+            throw new ResponseStatusException(HttpStatus.GONE, "Token is older than " + ProductTombstone.RETENTION.toDays()
+                    + " days, sync again without since");
+        }
+
+        // One extra row of each tells whether there is more. The window's limit is taken after the reads: it
+        // also covers writes that committed while they ran.
+        List<Change> changes;
+        long openVersion;
+        try (ProductVersionReservations.Window window = versionReservations.openWindow()) {
+            List<Product> products = productRepository.findByVersionGreaterThanOrderByVersionAsc(token.version(), Limit.of(pageSize + 1));
+            List<ProductTombstone> tombstones = productRepository.findTombstonesAfter(token.version(), pageSize + 1);
+            changes = merge(products, tombstones, pageSize + 1);
+            openVersion = window.limit();
+        }
+        boolean hasMore = changes.size() > pageSize;
+        if (hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+
+        Instant settled = now.minus(settleTime);
+        long nextVersion = token.version();
+        for (Change change : changes) {
+            if (change.getVersion() >= openVersion || change.getModifiedAt() == null || change.getModifiedAt().isAfter(settled)) {
+                break;
+            }
+            nextVersion = change.getVersion();
+        }
+        // Changes beyond this page may be older than now: keep the old issue time until the client caught up
+        Instant issuedAt = hasMore ? token.issuedAt() : settled;
+
+        return ProductChangesResponse.builder()
+                .changes(changes)
+                .nextToken(encodeToken(new Token(nextVersion, issuedAt)))
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // 18) Highest version up to which every change is written and visible (same rules as the tokens), -1
+    // when the newest change is too recent to tell. Something read after this call contains all of them.
+    public long settledVersion() {
+        Instant settled = Instant.now().minus(settleTime);
+        try (ProductVersionReservations.Window window = versionReservations.openWindow()) {
+            Product product = productRepository.findFirstByOrderByVersionDesc().orElse(null);
+            ProductTombstone tombstone = productRepository.findLatestTombstone().orElse(null);
+            long version = 0;
+            Instant modifiedAt = Instant.EPOCH;
+            if (product != null && product.getVersion() != null) {
+                version = product.getVersion();
+                modifiedAt = product.getLastModified();
+            }
+            if (tombstone != null && tombstone.getVersion() > version) {
+                version = tombstone.getVersion();
+                modifiedAt = tombstone.getDeletedAt();
+            }
+            if (version >= window.limit() || modifiedAt == null || modifiedAt.isAfter(settled)) {
+                return -1;
+            }
+            return version;
+        }
+    }
+
+    // 18) Whether anything was written with a higher version: one index lookup each for products and tombstones
+    public boolean hasChangesAfter(long version) {
+        return !productRepository.findByVersionGreaterThanOrderByVersionAsc(version, Limit.of(1)).isEmpty()
+                || !productRepository.findTombstonesAfter(version, 1).isEmpty();
+    }
+
+    // Products written before versions existed get one now, so they show up in the next sync
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillVersionsOnStartup() {
+        taskExecutor.execute(this::backfillVersions);
+    }
+
+    void backfillVersions() {
+        long total = 0;
+        try {
+            while (true) {
+                List<Product> batch = productRepository.findByVersionIsNull(Limit.of(backfillBatchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                long assigned = versionReservations.write(batch.size(), firstVersion -> {
+                    Map<String, Long> versions = new LinkedHashMap<>();
+                    long version = firstVersion;
+                    for (Product product : batch) {
+                        versions.put(product.getId(), version++);
+                    }
+                    return productRepository.assignMissingVersions(versions, Instant.now());
+                });
+                total += assigned;
+                if (assigned == 0) {
+                    // Nothing could be set; don't spin on the same batch
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Assigning change versions to existing products failed after {}, retried on next start", total, e);
+            return;
+        }
+        if (total > 0) {
+            log.info("Assigned change versions to {} existing products", total);
+        }
+    }
+
+    // Both lists are in version order and versions are unique across them
+    private static List<Change> merge(List<Product> products, List<ProductTombstone> tombstones, int limit) {
+        List<Change> changes = new ArrayList<>(Math.min(limit, products.size() + tombstones.size()));
+        int p = 0;
+        int t = 0;
+        while (changes.size() < limit && (p < products.size() || t < tombstones.size())) {
+            if (t == tombstones.size() || (p < products.size() && products.get(p).getVersion() < tombstones.get(t).getVersion())) {
+                Product product = products.get(p++);
+                changes.add(Change.builder()
+                        .type(Change.Type.UPSERT)
+                        .id(product.getId())
+                        .version(product.getVersion())
+                        .modifiedAt(product.getLastModified())
+                        .product(ProductMapper.mapToProductResponse(product))
+                        .build());
+            } else {
+                ProductTombstone tombstone = tombstones.get(t++);
+                changes.add(Change.builder()
+                        .type(Change.Type.DELETE)
+                        .id(tombstone.getId())
+                        .version(tombstone.getVersion())
+                        .modifiedAt(tombstone.getDeletedAt())
+                        .build());
+            }
+        }
+        return changes;
+    }
+
+    // "<version>.<issued at, epoch millis>", base64url encoded so clients treat it as opaque
+    private static String encodeToken(Token token) {
+        String value = token.version() + "." + token.issuedAt().toEpochMilli();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Token decodeToken(String since) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(since), StandardCharsets.UTF_8);
+            int separator = value.indexOf('.');
+            return new Token(Long.parseLong(value.substring(0, separator)),
+                    Instant.ofEpochMilli(Long.parseLong(value.substring(separator + 1))));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid token");
+        }
+    }
+
+    private record Token(long version, Instant issuedAt) {
+    }
+}
@@ -0,0 +1,529 @@
+// 36) Point-in-time export of the product collection: _id range partitions scanned in parallel into gzip files
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.dto.ProductExportManifest;
+import com.allinone.Product_Service.dto.ProductExportStatus;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductSnapshotReader;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoCommandException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+// An export is a directory under product.export.directory with one gzip file per _id range and a
+// manifest.json. The ranges come from a random sample of ids, so they hold about the same number of
+// documents; `parallelism` of them are scanned at a time, each on its own cursor, and all of them at the
+// same cluster time (ProductSnapshotReader), which makes the files one point-in-time copy.
+//
+// The manifest is rewritten whenever a partition is complete. Resuming an export (?resume=<id>) keeps
+// the complete partitions and writes the others again; if the snapshot has expired by then they are read
+// at a new one and the manifest is no longer marked consistent.
+//
+// Load on the primary is limited by `parallelism` (open cursors), batch-size and max-bytes-per-second (BSON
+// read from MongoDB, all partitions together). Files are written through a buffer-size buffer on a
+// FileChannel, so every partition does few large writes.
+@Service
+@ConditionalOnProperty(name = "product.storage.backend", havingValue = "mongo", matchIfMissing = true)
+@Slf4j
+public class ProductExportJob {
+
+    public enum Format {
+        // The API's JSON, one product per line (also what the import reads)
+        NDJSON("ndjson"),
+        // Whole documents back to back, like mongodump: zcat part-*.bson.gz > product.bson, then mongorestore
+        BSON("bson");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    static final String MANIFEST = "manifest.json";
+
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    // Sampled ids per partition for the range boundaries
+    private static final int SAMPLES_PER_PARTITION = 10;
+
+    private final ProductSnapshotReader snapshotReader;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor taskExecutor;
+    private final Path directory;
+    private final int partitions;
+    private final int parallelism;
+    private final int batchSize;
+    private final Throttle throttle;
+    private final int bufferSize;
+
+    private final Counter exportedDocuments;
+    private final Counter exportedBytes;
+
+    // The running or last export of this instance
+    private final AtomicReference<Run> current = new AtomicReference<>();
+
+    public ProductExportJob(ProductSnapshotReader snapshotReader,
+                            MongoTemplate mongoTemplate,
+                            ObjectMapper objectMapper,
+                            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+                            MeterRegistry meterRegistry,
+                            @Value("${product.export.directory:data/export}") String directory,
+                            @Value("${product.export.partitions:16}") int partitions,
+                            @Value("${product.export.parallelism:2}") int parallelism,
+                            @Value("${product.export.batch-size:1000}") int batchSize,
+                            @Value("${product.export.max-bytes-per-second:0}") DataSize maxBytesPerSecond,
+                            @Value("${product.export.buffer-size:256KB}") DataSize bufferSize) {
+        this.snapshotReader = snapshotReader;
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.taskExecutor = taskExecutor;
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+        this.partitions = partitions;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.throttle = new Throttle(maxBytesPerSecond.toBytes());
+        this.bufferSize = (int) bufferSize.toBytes();
+
+        this.exportedDocuments = Counter.builder("product.export.documents")
+                .description("Products written to export files")
+                .register(meterRegistry);
+        this.exportedBytes = Counter.builder("product.export.bytes")
+                .description("Compressed bytes of completed export partitions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    // Starts a new export (resumeId null) or continues one, in the background; 409 while one is running.
+    // format is only used for a new export.
+    public ProductExportStatus start(Format format, String resumeId) {
+        Run run = begin(format, resumeId);
+        taskExecutor.execute(() -> execute(run));
+        return run.status();
+    }
+
+    // Same, on the calling thread
+    public ProductExportStatus run(Format format, String resumeId) {
+        Run run = begin(format, resumeId);
+        execute(run);
+        return run.status();
+    }
+
+    // The running or last export, null when there was none
+    public ProductExportStatus status() {
+        Run run = current.get();
+        return run == null ? null : run.status();
+    }
+
+    // Stops the running export after the batches being written; false when none is running
+    public boolean cancel() {
+        Run run = current.get();
+        return run != null && run.stop(ProductExportStatus.State.CANCELLED, "Cancelled");
+    }
+
+    private Run begin(Format format, String resumeId) {
+        Run previous = current.get();
+        if (previous != null && !previous.stopped()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "An export is already running");
+        }
+        Run run = resumeId == null ? newExport(format) : resumedExport(resumeId);
+        if (!current.compareAndSet(previous, run)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "An export is already running");
+        }
+        return run;
+    }
+
+    private Run newExport(Format format) {
+        Instant now = Instant.now();
+        try {
+            Files.createDirectories(directory);
+            String id = ID_FORMAT.format(now);
+            for (int attempt = 2; ; attempt++) {
+                try {
+                    Files.createDirectory(directory.resolve(id));
+                    break;
+                } catch (FileAlreadyExistsException e) {
+                    id = ID_FORMAT.format(now) + "-" + attempt;
+                }
+            }
+            return new Run(directory.resolve(id), ProductExportManifest.builder()
+                    .id(id)
+                    .format(format.name())
+                    .database(mongoTemplate.getDb().getName())
+                    .collection(mongoTemplate.getCollectionName(Product.class))
+                    .startedAt(now)
+                    .build());
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Can't create the export directory", e);
+        }
+    }
+
+    private Run resumedExport(String id) {
+        if (!id.matches("[A-Za-z0-9_-]+")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid export id");
+        }
+        Path exportDirectory = directory.resolve(id);
+        Path manifest = exportDirectory.resolve(MANIFEST);
+        if (!Files.isRegularFile(manifest)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No export " + id);
+        }
+        try {
+            return new Run(exportDirectory, objectMapper.readValue(manifest.toFile(), ProductExportManifest.class));
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Can't read the manifest of " + id, e);
+        }
+    }
+
+    private void execute(Run run) {
+        ExecutorService executor = null;
+        try {
+            BsonTimestamp atClusterTime = snapshot(run.manifest);
+            if (run.manifest.getPartitions() == null) {
+                run.manifest.setPartitions(partitions(run.format));
+            }
+            List<ProductExportManifest.Partition> pending = new ArrayList<>();
+            for (ProductExportManifest.Partition partition : run.manifest.getPartitions()) {
+                Path file = run.directory.resolve(partition.getFile());
+                if (!partition.isCompleted() || !Files.exists(file) || Files.size(file) != partition.getBytes()) {
+                    partition.setCompleted(false);
+                    pending.add(partition);
+                }
+            }
+            run.saveManifest();
+            log.info("Exporting {} partitions of {} to {} ({} already complete), {} at a time",
+                    pending.size(), run.manifest.getCollection(), run.directory,
+                    run.manifest.getPartitions().size() - pending.size(), parallelism);
+
+            executor = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("product-export-", 0).factory());
+            for (ProductExportManifest.Partition partition : pending) {
+                executor.execute(() -> exportPartition(run, partition, atClusterTime));
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // cancelled partitions stop after their current batch
+            }
+            run.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.stop(ProductExportStatus.State.CANCELLED, "Interrupted");
+        } catch (IOException | RuntimeException e) {
+            log.warn("Export {} failed", run.manifest.getId(), e);
+            run.stop(ProductExportStatus.State.FAILED, e.getMessage());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            ProductExportStatus status = run.status();
+            log.info("Export {} {}: {}/{} partitions, {} documents, {} bytes, {} documents/s", status.getId(),
+                    status.getState(), status.getCompletedPartitions(), status.getTotalPartitions(),
+                    status.getDocuments(), status.getBytes(), Math.round(status.getDocumentsPerSecond()));
+        }
+    }
+
+    // The cluster time to read at: a new one for a new export, the export's own when resuming while it is
+    // still readable, otherwise a new one (and the export is no longer one point in time)
+    private BsonTimestamp snapshot(ProductExportManifest manifest) {
+        if (manifest.getPartitions() == null) {
+            BsonTimestamp atClusterTime = snapshotReader.snapshot(null);
+            if (atClusterTime == null) {
+                log.warn("MongoDB has no snapshot reads here (needs 5.0+ as a replica set): the partitions are "
+                        + "read at different times");
+            }
+            manifest.setAtClusterTime(format(atClusterTime));
+            manifest.setConsistent(atClusterTime != null);
+            return atClusterTime;
+        }
+        BsonTimestamp saved = parse(manifest.getAtClusterTime());
+        if (saved != null) {
+            try {
+                return snapshotReader.snapshot(saved);
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() != ProductSnapshotReader.SNAPSHOT_TOO_OLD) {
+                    throw e;
+                }
+            }
+            log.warn("The snapshot of export {} has expired, the remaining partitions are read at a new one", manifest.getId());
+        }
+        manifest.setConsistent(false);
+        return snapshotReader.snapshot(null);
+    }
+
+    // Ranges between sampled ids; the first and last are open-ended so that every id is in exactly one
+    private List<ProductExportManifest.Partition> partitions(Format format) {
+        List<BsonValue> sample = partitions > 1 ? snapshotReader.sampleIds(partitions * SAMPLES_PER_PARTITION) : List.of();
+        List<BsonValue> boundaries = new ArrayList<>();
+        for (int i = 1; i < partitions; i++) {
+            int position = i * sample.size() / partitions;
+            if (position < sample.size() && (boundaries.isEmpty() || !boundaries.getLast().equals(sample.get(position)))) {
+                boundaries.add(sample.get(position));
+            }
+        }
+        List<ProductExportManifest.Partition> result = new ArrayList<>();
+        for (int i = 0; i <= boundaries.size(); i++) {
+            result.add(ProductExportManifest.Partition.builder()
+                    .index(i)
+                    .lowerId(i == 0 ? null : new BsonDocument("_id", boundaries.get(i - 1)).toJson())
+                    .upperId(i == boundaries.size() ? null : new BsonDocument("_id", boundaries.get(i)).toJson())
+                    .file(String.format("part-%05d.%s.gz", i, format.extension))
+                    .build());
+        }
+        return result;
+    }
+
+    private void exportPartition(Run run, ProductExportManifest.Partition partition, BsonTimestamp atClusterTime) {
+        if (run.stopped()) {
+            return;
+        }
+        Path file = run.directory.resolve(partition.getFile());
+        long documents = 0;
+        MessageDigest sha256 = sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             GZIPOutputStream gzip = new GZIPOutputStream(new DigestOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize), sha256), bufferSize);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(gzip);
+             ProductSnapshotReader.Cursor cursor = snapshotReader.scan(id(partition.getLowerId()), id(partition.getUpperId()),
+                     atClusterTime, batchSize, run.format == Format.NDJSON ? projection() : null,
+                     "product-export " + run.manifest.getId())) {
+            generator.setRootValueSeparator(null);
+            ProductBsonJsonWriter writer = new ProductBsonJsonWriter(generator);
+            List<RawBsonDocument> batch;
+            while ((batch = cursor.next()) != null) {
+                if (run.stopped()) {
+                    return;
+                }
+                long bytes = 0;
+                for (RawBsonDocument document : batch) {
+                    bytes += document.getByteBuffer().remaining();
+                }
+                throttle.acquire(bytes);
+                for (RawBsonDocument document : batch) {
+                    if (run.format == Format.NDJSON) {
+                        writer.write(document);
+                        generator.writeRaw('\n');
+                    } else {
+                        generator.flush();
+                        ByteBuffer bson = document.getByteBuffer().asNIO();
+                        gzip.write(bson.array(), bson.arrayOffset() + bson.position(), bson.remaining());
+                    }
+                }
+                documents += batch.size();
+                run.documents.addAndGet(batch.size());
+                exportedDocuments.increment(batch.size());
+            }
+            generator.flush();
+            gzip.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (MongoCommandException e) {
+            String message = e.getErrorCode() == ProductSnapshotReader.SNAPSHOT_TOO_OLD
+                    ? "The snapshot expired (raise MongoDB's minSnapshotHistoryWindowInSeconds or the export's "
+                    + "parallelism); resuming continues at a new snapshot"
+                    : e.getMessage();
+            log.warn("Export {} partition {} failed: {}", run.manifest.getId(), partition.getIndex(), message);
+            run.stop(ProductExportStatus.State.FAILED, message);
+            return;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Export {} partition {} failed", run.manifest.getId(), partition.getIndex(), e);
+            run.stop(ProductExportStatus.State.FAILED, e.getMessage());
+            return;
+        }
+        try {
+            run.completed(partition, documents, Files.size(file), HexFormat.of().formatHex(sha256.digest()), atClusterTime);
+        } catch (IOException e) {
+            run.stop(ProductExportStatus.State.FAILED, e.getMessage());
+        }
+    }
+
+    private static BsonDocument projection() {
+        BsonDocument projection = new BsonDocument();
+        for (String field : ProductBsonJsonWriter.BSON_FIELDS) {
+            projection.append(field, new BsonInt32(1));
+        }
+        return projection;
+    }
+
+    private static BsonValue id(String extendedJson) {
+        return extendedJson == null ? null : BsonDocument.parse(extendedJson).get("_id");
+    }
+
+    private static String format(BsonTimestamp timestamp) {
+        return timestamp == null ? null : Integer.toUnsignedString(timestamp.getTime()) + "." + Integer.toUnsignedString(timestamp.getInc());
+    }
+
+    private static BsonTimestamp parse(String timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        int dot = timestamp.indexOf('.');
+        return new BsonTimestamp(Integer.parseUnsignedInt(timestamp.substring(0, dot)), Integer.parseUnsignedInt(timestamp.substring(dot + 1)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Bytes per second shared by all partitions; a batch waits until the ones before it are paid for
+    private static final class Throttle {
+
+        private final long bytesPerSecond;
+        private long nextFree = System.nanoTime();
+
+        private Throttle(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void acquire(long bytes) throws InterruptedException {
+            if (bytesPerSecond <= 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                wait = Math.max(nextFree - now, 0);
+                nextFree = Math.max(nextFree, now) + bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+            }
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    // State of one export
+    private final class Run {
+
+        private final Path directory;
+        private final ProductExportManifest manifest;
+        private final Format format;
+        private final Instant startedAt = Instant.now();
+        private final AtomicLong documents = new AtomicLong();
+        // Guarded by this
+        private long bytes;
+
+        private volatile ProductExportStatus.State state = ProductExportStatus.State.RUNNING;
+        private volatile String message;
+        private volatile Instant finishedAt;
+
+        private Run(Path directory, ProductExportManifest manifest) {
+            this.directory = directory;
+            this.manifest = manifest;
+            this.format = Format.valueOf(manifest.getFormat());
+        }
+
+        private synchronized void completed(ProductExportManifest.Partition partition, long documents, long bytes,
+                                            String sha256, BsonTimestamp atClusterTime) throws IOException {
+            partition.setDocuments(documents);
+            partition.setBytes(bytes);
+            partition.setSha256(sha256);
+            String readAt = format(atClusterTime);
+            partition.setAtClusterTime(readAt == null || readAt.equals(manifest.getAtClusterTime()) ? null : readAt);
+            partition.setCompleted(true);
+            this.bytes += bytes;
+            exportedBytes.increment(bytes);
+            saveManifest();
+        }
+
+        // Written to a temporary file first, so there is always a whole manifest
+        private synchronized void saveManifest() throws IOException {
+            Path temporary = directory.resolve(MANIFEST + ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temporary.toFile(), manifest);
+            Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private boolean stopped() {
+            return state != ProductExportStatus.State.RUNNING;
+        }
+
+        // False when it had already stopped
+        private synchronized boolean stop(ProductExportStatus.State state, String message) {
+            if (stopped()) {
+                return false;
+            }
+            this.message = message;
+            this.finishedAt = Instant.now();
+            this.state = state;
+            return true;
+        }
+
+        private synchronized void finish() throws IOException {
+            if (stopped()) {
+                return;
+            }
+            if (manifest.getPartitions().stream().allMatch(ProductExportManifest.Partition::isCompleted)) {
+                manifest.setCompletedAt(Instant.now());
+                saveManifest();
+            }
+            finishedAt = Instant.now();
+            state = ProductExportStatus.State.COMPLETED;
+        }
+
+        private synchronized ProductExportStatus status() {
+            Instant end = finishedAt != null ? finishedAt : Instant.now();
+            double seconds = Math.max(Duration.between(startedAt, end).toMillis(), 1) / 1000.0;
+            List<ProductExportManifest.Partition> all = manifest.getPartitions() == null ? List.of() : manifest.getPartitions();
+            return ProductExportStatus.builder()
+                    .id(manifest.getId())
+                    .state(state)
+                    .directory(directory.toString())
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .totalPartitions(all.size())
+                    .completedPartitions((int) all.stream().filter(ProductExportManifest.Partition::isCompleted).count())
+                    .documents(documents.get())
+                    .bytes(bytes)
+                    .documentsPerSecond(documents.get() / seconds)
+                    .consistent(manifest.isConsistent())
+                    .message(message)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+// 35) A CSV or NDJSON product file, split on record boundaries and parsed chunk by chunk from a memory mapping
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.dto.ProductRequest;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// One record per line (\n or \r\n), UTF-8:
+// - CSV: a header line naming the columns (name, description, skuCode, price; any order, others ignored),
+//   fields quoted RFC 4180 style ("" inside quotes). A quoted field can't contain a line break: chunks are
+//   split at line breaks without reading what comes before them.
+// - NDJSON: one ProductRequest object per line.
+// Blank lines are skipped. Chunks are mapped one at a time and only read, so the file's pages stay in the
+// OS page cache instead of the heap; any number of chunks can be parsed in parallel.
+public class ProductImportFile implements Closeable {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        // From the file extension: .csv, otherwise NDJSON (.ndjson, .jsonl, ...)
+        public static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+        }
+    }
+
+    // Bytes [start, end) of the file, whole records only
+    public record Chunk(int index, long start, long end) {
+
+        public long length() {
+            return end - start;
+        }
+    }
+
+    // Called by parse() for each record, in file order; offset is where the record starts in the file
+    public interface RecordHandler {
+
+        // May block, e.g. while the write queue is full
+        void onProduct(long offset, ProductRequest productRequest) throws InterruptedException;
+
+        void onError(long offset, String message);
+    }
+
+    // Largest chunk a single mapping can hold, with room for the record that crosses the nominal end
+    public static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private static final String[] COLUMNS = {"name", "description", "skuCode", "price"};
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private final Format format;
+    private final ObjectReader productReader;
+    // Where the first record starts (after the CSV header)
+    private final long dataStart;
+    // CSV: column of name, description, skuCode, price in the file, -1 when missing
+    private final int[] columns;
+
+    private ProductImportFile(Path path, FileChannel channel, Format format, ObjectReader productReader) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+        this.format = format;
+        this.productReader = productReader;
+        if (format == Format.CSV) {
+            long headerEnd = nextRecordStart(0);
+            byte[] header = new byte[(int) Math.min(headerEnd, Integer.MAX_VALUE)];
+            channel.read(ByteBuffer.wrap(header), 0);
+            this.columns = headerColumns(splitCsv(trimLine(header, header.length)));
+            this.dataStart = headerEnd;
+        } else {
+            this.columns = null;
+            this.dataStart = 0;
+        }
+    }
+
+    // productReader reads ProductRequest (NDJSON only)
+    public static ProductImportFile open(Path path, Format format, ObjectReader productReader) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ProductImportFile(path, channel, format, productReader);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public Format format() {
+        return format;
+    }
+
+    // Chunks of about chunkSize bytes, each ending after a line break (or at the end of the file)
+    public List<Chunk> split(long chunkSize) throws IOException {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 byte and 1GB");
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        long start = dataStart;
+        while (start < size) {
+            long end = nextRecordStart(Math.min(start + chunkSize, size));
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Record at " + start + " of " + path + " is longer than 2GB");
+            }
+            chunks.add(new Chunk(chunks.size(), start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    // Parses the chunk's records into handler, on the calling thread
+    public void parse(Chunk chunk, RecordHandler handler) throws IOException, InterruptedException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start(), chunk.length());
+        byte[] line = new byte[256];
+        int position = 0;
+        int limit = buffer.limit();
+        while (position < limit) {
+            int end = position;
+            while (end < limit && buffer.get(end) != '\n') {
+                end++;
+            }
+            int length = end - position;
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            buffer.get(position, line, 0, length);
+            long offset = chunk.start() + position;
+            position = end + 1;
+
+            String text = trimLine(line, length);
+            if (text.isBlank()) {
+                continue;
+            }
+            ProductRequest productRequest;
+            try {
+                productRequest = format == Format.CSV ? csvProduct(text) : productReader.readValue(text);
+            } catch (IOException | RuntimeException e) {
+                handler.onError(offset, e.getMessage());
+                continue;
+            }
+            handler.onProduct(offset, productRequest);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Position after the first line break at or after position - 1, i.e. the first record starting at or
+    // after position; the file size when there is none
+    private long nextRecordStart(long position) throws IOException {
+        if (position <= 0) {
+            position = 1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long offset = position - 1;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    private static String trimLine(byte[] line, int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int[] headerColumns(List<String> header) {
+        int[] positions = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            positions[i] = -1;
+            for (int j = 0; j < header.size(); j++) {
+                if (header.get(j).strip().equalsIgnoreCase(COLUMNS[i])) {
+                    positions[i] = j;
+                }
+            }
+        }
+        if (positions[0] < 0) {
+            throw new IllegalArgumentException("CSV header of " + path + " has no name column");
+        }
+        return positions;
+    }
+
+    private ProductRequest csvProduct(String line) {
+        List<String> fields = splitCsv(line);
+        String price = column(fields, 3);
+        return ProductRequest.builder()
+                .name(column(fields, 0))
+                .description(column(fields, 1))
+                .skuCode(column(fields, 2))
+                .price(price == null ? null : new BigDecimal(price.strip()))
+                .build();
+    }
+
+    // Null for a missing column and for an empty field
+    private String column(List<String> fields, int column) {
+        int position = columns[column];
+        if (position < 0 || position >= fields.size() || fields.get(position).isEmpty()) {
+            return null;
+        }
+        return fields.get(position);
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
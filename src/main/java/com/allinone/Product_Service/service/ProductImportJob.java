@@ -0,0 +1,594 @@
+// 35) Bulk import of a CSV / NDJSON product file: parallel parsing, bounded unordered bulk writes, resumable
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.dto.ProductImportStatus;
+import com.allinone.Product_Service.dto.ProductRequest;
+import com.allinone.Product_Service.event.ProductChangedEvent;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.InvalidPriceException;
+import com.allinone.Product_Service.repository.ProductPriceConverter;
+import com.allinone.Product_Service.repository.ProductStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.allinone.Product_Service.service.ProductMapper.mapToProduct;
+
+// The file is split into chunks of chunk-size on record boundaries (ProductImportFile). `parallelism`
+// threads parse chunks into batches of batch-size products, which `writers` threads insert with unordered
+// bulk writes. At most queue-capacity parsed batches wait for a writer; parsers block when it is full, so
+// the heap holds about (parallelism + queue-capacity + writers) * batch-size products whatever the file size.
+//
+// Once all records of a chunk are written, the chunk is recorded in <file>.import-checkpoint.json. Running
+// the import of an unchanged file again (after a failure, a cancel or a restart) skips the recorded chunks.
+// Ids are derived from the import's start second and each record's offset in the file, so records of a
+// chunk that was cut off halfway are rejected as duplicate ids when it is imported again, and counted as
+// already imported. Change versions are assigned like for POST /api/product/batch.
+//
+// Caches and in-memory indexes aren't updated per product: one INVALIDATE event at the end makes them
+// rebuild, and tells /api/product/events subscribers to sync again.
+@Service
+@Slf4j
+public class ProductImportJob {
+
+    // Next to the imported file
+    static final String CHECKPOINT_SUFFIX = ".import-checkpoint.json";
+
+    // Offsets take the low 5 bytes of the id
+    private static final long MAX_FILE_SIZE = 1L << 40;
+
+    // Errors kept in the status
+    private static final int MAX_ERRORS = 100;
+
+    private final ProductStore productRepository;
+    private final ProductVersionReservations versionReservations;
+    // 34) Same price rules as the endpoints: a bad price fails its record, not the batch
+    private final ProductPriceConverter productPriceConverter;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TaskExecutor taskExecutor;
+    private final Path directory;
+    private final long chunkSize;
+    private final int batchSize;
+    private final int parallelism;
+    private final int writers;
+    private final int queueCapacity;
+    private final Duration progressInterval;
+
+    private final Counter importedRecords;
+    private final Counter alreadyImportedRecords;
+    private final Counter failedRecords;
+    private final Counter completedBytes;
+
+    // The running or last job of this instance
+    private final AtomicReference<Run> current = new AtomicReference<>();
+
+    public ProductImportJob(ProductStore productRepository,
+                            ProductVersionReservations versionReservations,
+                            ProductPriceConverter productPriceConverter,
+                            ObjectMapper objectMapper,
+                            ApplicationEventPublisher eventPublisher,
+                            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+                            MeterRegistry meterRegistry,
+                            @Value("${product.import.directory:data/import}") String directory,
+                            @Value("${product.import.chunk-size:16MB}") DataSize chunkSize,
+                            @Value("${product.import.batch-size:1000}") int batchSize,
+                            @Value("${product.import.parallelism:0}") int parallelism,
+                            @Value("${product.import.writers:4}") int writers,
+                            @Value("${product.import.queue-capacity:16}") int queueCapacity,
+                            @Value("${product.import.progress-interval:10s}") Duration progressInterval) {
+        this.productRepository = productRepository;
+        this.versionReservations = versionReservations;
+        this.productPriceConverter = productPriceConverter;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.taskExecutor = taskExecutor;
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+        this.chunkSize = chunkSize.toBytes();
+        this.batchSize = batchSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.writers = writers;
+        this.queueCapacity = queueCapacity;
+        this.progressInterval = progressInterval;
+
+        this.importedRecords = recordCounter(meterRegistry, "imported");
+        this.alreadyImportedRecords = recordCounter(meterRegistry, "already-imported");
+        this.failedRecords = recordCounter(meterRegistry, "failed");
+        this.completedBytes = Counter.builder("product.import.bytes")
+                .description("Bytes of the import file whose records have all been written")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private static Counter recordCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("product.import.records")
+                .description("Records of import files handled, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // A file in product.import.directory (the admin endpoint can't read anything else)
+    public Path resolve(String file) {
+        Path path = directory.resolve(file).normalize();
+        if (!path.startsWith(directory)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File must be in the import directory");
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No such file: " + file);
+        }
+        return path;
+    }
+
+    // Starts the import in the background and returns right away; 409 while another one is running.
+    // format null: from the file extension.
+    public ProductImportStatus start(Path file, ProductImportFile.Format format) {
+        Run run = begin(file, format);
+        taskExecutor.execute(() -> execute(run));
+        return run.status();
+    }
+
+    // Same, on the calling thread, logging progress every progress-interval (the import command)
+    public ProductImportStatus run(Path file, ProductImportFile.Format format) {
+        Run run = begin(file, format);
+        execute(run);
+        return run.status();
+    }
+
+    // The running or last import, null when there was none
+    public ProductImportStatus status() {
+        Run run = current.get();
+        return run == null ? null : run.status();
+    }
+
+    // Stops the running import after the batches being written; false when none is running
+    public boolean cancel() {
+        Run run = current.get();
+        return run != null && run.stop(ProductImportStatus.State.CANCELLED, "Cancelled");
+    }
+
+    private Run begin(Path file, ProductImportFile.Format format) {
+        Run run = new Run(file, format != null ? format : ProductImportFile.Format.of(file));
+        Run previous = current.get();
+        if (previous != null && previous.state == ProductImportStatus.State.RUNNING || !current.compareAndSet(previous, run)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "An import is already running");
+        }
+        return run;
+    }
+
+    private void execute(Run run) {
+        ExecutorService parsers = null;
+        ExecutorService writerPool = null;
+        try (ProductImportFile file = ProductImportFile.open(run.path, run.format, objectMapper.readerFor(ProductRequest.class))) {
+            if (file.size() >= MAX_FILE_SIZE) {
+                throw new IllegalArgumentException("Files up to 1TB can be imported");
+            }
+            run.resume(file);
+            List<ProductImportFile.Chunk> chunks = file.split(run.checkpoint.chunkSize());
+            List<ProductImportFile.Chunk> pending = run.prepare(chunks);
+            log.info("Importing {} ({} chunks, {} already done) with {} parsers and {} writers",
+                    run.path, chunks.size(), chunks.size() - pending.size(), parallelism, writers);
+
+            BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(queueCapacity);
+            AtomicInteger nextChunk = new AtomicInteger();
+            parsers = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("product-import-parse-", 0).factory());
+            writerPool = Executors.newFixedThreadPool(writers, Thread.ofPlatform().name("product-import-write-", 0).factory());
+            for (int i = 0; i < parallelism; i++) {
+                parsers.execute(() -> parseChunks(run, file, pending, nextChunk, queue));
+            }
+            for (int i = 0; i < writers; i++) {
+                writerPool.execute(() -> writeBatches(run, queue));
+            }
+            parsers.shutdown();
+            awaitWithProgress(run, parsers);
+            // One end marker per writer, after the last batch
+            for (int i = 0; i < writers; i++) {
+                while (!run.stopped() && !queue.offer(Batch.END, 100, TimeUnit.MILLISECONDS)) {
+                    // writers are busy, the queue is full
+                }
+            }
+            if (run.stopped()) {
+                writerPool.shutdownNow();
+            }
+            writerPool.shutdown();
+            awaitWithProgress(run, writerPool);
+            run.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.stop(ProductImportStatus.State.CANCELLED, "Interrupted");
+        } catch (IOException | RuntimeException e) {
+            log.warn("Import of {} failed", run.path, e);
+            run.stop(ProductImportStatus.State.FAILED, e.getMessage());
+        } finally {
+            if (parsers != null) {
+                parsers.shutdownNow();
+            }
+            if (writerPool != null) {
+                writerPool.shutdownNow();
+            }
+            if (run.imported.get() > run.importedBefore) {
+                eventPublisher.publishEvent(ProductChangedEvent.builder()
+                        .type(ProductChangedEvent.Type.INVALIDATE)
+                        .build());
+            }
+            ProductImportStatus status = run.status();
+            log.info("Import of {} {}: {} imported, {} already imported, {} failed, {} records/s", run.path,
+                    status.getState(), status.getImported(), status.getAlreadyImported(), status.getFailed(),
+                    Math.round(status.getRecordsPerSecond()));
+        }
+    }
+
+    private void awaitWithProgress(Run run, ExecutorService executor) throws InterruptedException {
+        while (!executor.awaitTermination(progressInterval.toMillis(), TimeUnit.MILLISECONDS)) {
+            ProductImportStatus status = run.status();
+            log.info("Importing {}: {}/{} chunks, {} imported, {} failed, {} records/s", run.path,
+                    status.getCompletedChunks(), status.getTotalChunks(), status.getImported(), status.getFailed(),
+                    Math.round(status.getRecordsPerSecond()));
+        }
+    }
+
+    // Parser thread: takes the next pending chunk until none is left
+    private void parseChunks(Run run, ProductImportFile file, List<ProductImportFile.Chunk> pending,
+                             AtomicInteger nextChunk, BlockingQueue<Batch> queue) {
+        try {
+            int index;
+            while (!run.stopped() && (index = nextChunk.getAndIncrement()) < pending.size()) {
+                parseChunk(run, file, new ChunkProgress(pending.get(index)), queue);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Parsing {} failed", run.path, e);
+            run.stop(ProductImportStatus.State.FAILED, e.getMessage());
+        }
+    }
+
+    private void parseChunk(Run run, ProductImportFile file, ChunkProgress chunk, BlockingQueue<Batch> queue)
+            throws IOException, InterruptedException {
+        ChunkParser parser = new ChunkParser(run, chunk, queue);
+        file.parse(chunk.chunk, parser);
+        if (!parser.batch.products.isEmpty()) {
+            enqueue(run, parser.batch, queue);
+        }
+        // The parse's own share: the chunk is done when this and all its batches are
+        run.release(chunk);
+    }
+
+    // Blocks while queue-capacity batches are waiting for a writer
+    private void enqueue(Run run, Batch batch, BlockingQueue<Batch> queue) throws InterruptedException {
+        batch.chunk.outstanding.incrementAndGet();
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (run.stopped()) {
+                throw new InterruptedException("Import stopped");
+            }
+        }
+    }
+
+    // Writer thread: until its end marker
+    private void writeBatches(Run run, BlockingQueue<Batch> queue) {
+        try {
+            while (true) {
+                Batch batch = queue.take();
+                if (batch == Batch.END || run.stopped()) {
+                    return;
+                }
+                write(run, batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Writing products from {} failed", run.path, e);
+            run.stop(ProductImportStatus.State.FAILED, e.getMessage());
+        }
+    }
+
+    private void write(Run run, Batch batch) {
+        Map<Integer, String> failures = versionReservations.write(batch.products.size(), firstVersion -> {
+            ProductService.assignVersions(batch.products, firstVersion);
+            return productRepository.insertAllUnordered(batch.products);
+        });
+        int alreadyImported = 0;
+        for (Map.Entry<Integer, String> failure : failures.entrySet()) {
+            if (isDuplicateId(failure.getValue())) {
+                alreadyImported++;
+            } else {
+                run.failed(batch.offsets[failure.getKey()], failure.getValue());
+            }
+        }
+        run.imported.addAndGet(batch.products.size() - failures.size());
+        run.alreadyImported.addAndGet(alreadyImported);
+        run.handled.addAndGet(batch.products.size());
+        importedRecords.increment(batch.products.size() - failures.size());
+        alreadyImportedRecords.increment(alreadyImported);
+        run.release(batch.chunk);
+    }
+
+    // The record was written by an earlier, interrupted run (MongoDB's duplicate key error on the _id index,
+    // or the mapped store's)
+    private static boolean isDuplicateId(String message) {
+        return message != null && (message.contains("index: _id_ ") || message.startsWith("Duplicate id "));
+    }
+
+    // Collects a chunk's products into batches for the writers
+    private final class ChunkParser implements ProductImportFile.RecordHandler {
+
+        private final Run run;
+        private final ChunkProgress chunk;
+        private final BlockingQueue<Batch> queue;
+        private Batch batch;
+
+        private ChunkParser(Run run, ChunkProgress chunk, BlockingQueue<Batch> queue) {
+            this.run = run;
+            this.chunk = chunk;
+            this.queue = queue;
+            this.batch = new Batch(chunk, batchSize);
+        }
+
+        @Override
+        public void onProduct(long offset, ProductRequest productRequest) throws InterruptedException {
+            Product product = mapToProduct(productRequest);
+            try {
+                productPriceConverter.validate(product.getPrice());
+            } catch (InvalidPriceException e) {
+                run.failed(offset, e.getMessage());
+                return;
+            }
+            product.setId(run.id(offset));
+            batch.add(product, offset);
+            if (batch.products.size() == batchSize) {
+                enqueue(run, batch, queue);
+                batch = new Batch(chunk, batchSize);
+            }
+        }
+
+        @Override
+        public void onError(long offset, String message) {
+            run.failed(offset, message);
+        }
+    }
+
+    // Products parsed from one chunk, with the offsets of their records
+    private static final class Batch {
+
+        // No more batches
+        private static final Batch END = new Batch(null, 0);
+
+        private final ChunkProgress chunk;
+        private final List<Product> products;
+        private final long[] offsets;
+
+        private Batch(ChunkProgress chunk, int batchSize) {
+            this.chunk = chunk;
+            this.products = new ArrayList<>(batchSize);
+            this.offsets = new long[batchSize];
+        }
+
+        private void add(Product product, long offset) {
+            offsets[products.size()] = offset;
+            products.add(product);
+        }
+    }
+
+    // A chunk with its parse plus batches not yet written
+    private static final class ChunkProgress {
+
+        private final ProductImportFile.Chunk chunk;
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+
+        private ChunkProgress(ProductImportFile.Chunk chunk) {
+            this.chunk = chunk;
+        }
+    }
+
+    // What <file>.import-checkpoint.json holds. The chunks are only valid for a file of that size and
+    // modification time, split with that chunk size; idTime / idFile are the id prefix of the first run.
+    record Checkpoint(long size, long lastModified, ProductImportFile.Format format, long chunkSize,
+                      int idTime, int idFile, long[] done, long imported, long alreadyImported, long failed) {
+    }
+
+    // State of one import
+    private final class Run {
+
+        private final Path path;
+        private final ProductImportFile.Format format;
+        private final Path checkpointPath;
+        private final Instant startedAt = Instant.now();
+
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong alreadyImported = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        // Records handled by this run, for the rate
+        private final AtomicLong handled = new AtomicLong();
+        private final List<ProductImportStatus.RecordError> errors = new ArrayList<>();
+        private long importedBefore;
+
+        // Guarded by this
+        private Checkpoint checkpoint;
+        private final BitSet done = new BitSet();
+        private long totalBytes;
+        private long doneBytes;
+        private int totalChunks;
+        private boolean checkpointWarned;
+
+        private volatile ProductImportStatus.State state = ProductImportStatus.State.RUNNING;
+        private volatile String message;
+        private volatile Instant finishedAt;
+
+        private Run(Path path, ProductImportFile.Format format) {
+            this.path = path;
+            this.format = format;
+            this.checkpointPath = path.resolveSibling(path.getFileName() + CHECKPOINT_SUFFIX);
+        }
+
+        // Continues from the checkpoint if it is for this file as it is now, otherwise starts over
+        private synchronized void resume(ProductImportFile file) throws IOException {
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            if (Files.exists(checkpointPath)) {
+                Checkpoint saved = objectMapper.readValue(checkpointPath.toFile(), Checkpoint.class);
+                if (saved.size() == file.size() && saved.lastModified() == lastModified && saved.format() == format) {
+                    checkpoint = saved;
+                    done.or(BitSet.valueOf(saved.done()));
+                    imported.set(saved.imported());
+                    alreadyImported.set(saved.alreadyImported());
+                    failed.set(saved.failed());
+                    importedBefore = saved.imported();
+                    return;
+                }
+                log.info("{} has changed since its checkpoint, importing it from the start", path);
+            }
+            checkpoint = new Checkpoint(file.size(), lastModified, format, chunkSize,
+                    (int) startedAt.getEpochSecond(), path.toAbsolutePath().toString().hashCode(), new long[0], 0, 0, 0);
+        }
+
+        // The chunks still to import
+        private synchronized List<ProductImportFile.Chunk> prepare(List<ProductImportFile.Chunk> chunks) {
+            totalChunks = chunks.size();
+            List<ProductImportFile.Chunk> pending = new ArrayList<>();
+            for (ProductImportFile.Chunk chunk : chunks) {
+                totalBytes += chunk.length();
+                if (done.get(chunk.index())) {
+                    doneBytes += chunk.length();
+                } else {
+                    pending.add(chunk);
+                }
+            }
+            return pending;
+        }
+
+        // 4 bytes start second (an ObjectId's timestamp), 3 bytes of the file's hash, 5 bytes record offset
+        private String id(long offset) {
+            byte[] bytes = new byte[12];
+            ByteBuffer.wrap(bytes)
+                    .putInt(checkpoint.idTime())
+                    .putLong((long) (checkpoint.idFile() & 0xFFFFFF) << 40 | offset);
+            return new ObjectId(bytes).toHexString();
+        }
+
+        private void failed(long offset, String message) {
+            failed.incrementAndGet();
+            handled.incrementAndGet();
+            failedRecords.increment();
+            synchronized (errors) {
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add(ProductImportStatus.RecordError.builder()
+                            .offset(offset)
+                            .message(message)
+                            .build());
+                }
+            }
+        }
+
+        // One share of the chunk done; the last one records it in the checkpoint
+        private void release(ChunkProgress chunk) {
+            if (chunk.outstanding.decrementAndGet() > 0) {
+                return;
+            }
+            synchronized (this) {
+                done.set(chunk.chunk.index());
+                doneBytes += chunk.chunk.length();
+                saveCheckpoint();
+            }
+            completedBytes.increment(chunk.chunk.length());
+        }
+
+        private synchronized void saveCheckpoint() {
+            checkpoint = new Checkpoint(checkpoint.size(), checkpoint.lastModified(), format, checkpoint.chunkSize(),
+                    checkpoint.idTime(), checkpoint.idFile(), done.toLongArray(),
+                    imported.get(), alreadyImported.get(), failed.get());
+            try {
+                Path temporary = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+                objectMapper.writeValue(temporary.toFile(), checkpoint);
+                Files.move(temporary, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                if (!checkpointWarned) {
+                    checkpointWarned = true;
+                    log.warn("Can't write checkpoint {}, the import can't be resumed", checkpointPath, e);
+                }
+            }
+        }
+
+        private boolean stopped() {
+            return state != ProductImportStatus.State.RUNNING;
+        }
+
+        // False when it had already stopped
+        private synchronized boolean stop(ProductImportStatus.State state, String message) {
+            if (stopped()) {
+                return false;
+            }
+            this.message = message;
+            this.finishedAt = Instant.now();
+            this.state = state;
+            return true;
+        }
+
+        private synchronized void finish() {
+            if (stopped()) {
+                return;
+            }
+            // Also records the counts when there was nothing left to do
+            saveCheckpoint();
+            finishedAt = Instant.now();
+            state = ProductImportStatus.State.COMPLETED;
+        }
+
+        private ProductImportStatus status() {
+            Instant end = finishedAt != null ? finishedAt : Instant.now();
+            double seconds = Math.max(Duration.between(startedAt, end).toMillis(), 1) / 1000.0;
+            List<ProductImportStatus.RecordError> errorSample;
+            synchronized (errors) {
+                errorSample = List.copyOf(errors);
+            }
+            synchronized (this) {
+                return ProductImportStatus.builder()
+                        .file(path.toString())
+                        .format(format.name())
+                        .state(state)
+                        .startedAt(startedAt)
+                        .finishedAt(finishedAt)
+                        .totalBytes(totalBytes)
+                        .completedBytes(doneBytes)
+                        .totalChunks(totalChunks)
+                        .completedChunks(done.cardinality())
+                        .imported(imported.get())
+                        .alreadyImported(alreadyImported.get())
+                        .failed(failed.get())
+                        .recordsPerSecond(handled.get() / seconds)
+                        .errors(errorSample)
+                        .message(message)
+                        .build();
+            }
+        }
+    }
+}
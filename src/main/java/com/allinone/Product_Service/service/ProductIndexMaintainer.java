@@ -0,0 +1,165 @@
+// 24) Shared build / change-event handling for the in-memory product indexes (search, price)
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.event.ProductChangedEvent;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+// Builds the index from the collection after startup (in the background) and keeps it current from
+// ProductChangedEvents. Events that arrive while a build is running are replayed once it has finished,
+// so a document read by the build can't overwrite a newer version from an event.
+// A failed build (e.g. MongoDB not reachable yet at startup) is retried with exponential backoff; until
+// one succeeds the index is not ready and the services answer 503 rather than incomplete results.
+@Slf4j
+public abstract class ProductIndexMaintainer {
+
+    private static final long MIN_RETRY_DELAY_MILLIS = 1_000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60_000;
+
+    private final ProductStore productRepository;
+    private final TaskExecutor taskExecutor;
+    private final int buildBatchSize;
+
+    // Guards `building`, `rebuildRequested`, `retryDelayMillis` and `pendingEvents`, and is held while an
+    // event is applied, so a build can't start (and clear / fill the index) halfway through one
+    private final ReentrantLock buildLock = new ReentrantLock();
+    private boolean building;
+    private boolean rebuildRequested;
+    private long retryDelayMillis = MIN_RETRY_DELAY_MILLIS;
+    private final List<ProductChangedEvent> pendingEvents = new ArrayList<>();
+    private volatile boolean ready;
+
+    protected ProductIndexMaintainer(ProductStore productRepository, TaskExecutor taskExecutor, int buildBatchSize) {
+        this.productRepository = productRepository;
+        this.taskExecutor = taskExecutor;
+        this.buildBatchSize = buildBatchSize;
+    }
+
+    // Name for log messages
+    protected abstract String indexName();
+
+    protected abstract void clearIndex();
+
+    // Add or replace the product; must be idempotent
+    protected abstract void indexProduct(Product product);
+
+    protected abstract void removeProduct(String productId);
+
+    // Called after every applied event, e.g. to compact
+    protected void afterChange() {
+    }
+
+    // Called once the build has read the collection, before queued events are replayed; throwing fails the
+    // build like a failed read (not ready, retried)
+    protected void afterBuild() {
+    }
+
+    // False while the index is being built and after a failed build, i.e. whenever it may be incomplete
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        taskExecutor.execute(this::rebuild);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        buildLock.lock();
+        try {
+            if (building) {
+                pendingEvents.add(event);
+                return;
+            }
+            apply(event);
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    private void apply(ProductChangedEvent event) {
+        switch (event.getType()) {
+            case INSERT, UPDATE -> {
+                if (event.getProduct() != null) {
+                    indexProduct(event.getProduct());
+                }
+            }
+            case DELETE -> removeProduct(event.getProductId());
+            case INVALIDATE -> taskExecutor.execute(this::rebuild);
+        }
+        afterChange();
+    }
+
+    private void rebuild() {
+        buildLock.lock();
+        try {
+            if (building) {
+                // e.g. INVALIDATE during a build: run again once this one is done
+                rebuildRequested = true;
+                return;
+            }
+            building = true;
+        } finally {
+            buildLock.unlock();
+        }
+
+        long start = System.currentTimeMillis();
+        boolean built = false;
+        try {
+            ready = false;
+            clearIndex();
+            try (Stream<Product> products = productRepository.streamAll(buildBatchSize)) {
+                products.forEach(this::indexProduct);
+            }
+            afterBuild();
+            built = true;
+            log.info("Built {} index in {} ms", indexName(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Building the {} index failed", indexName(), e);
+        } finally {
+            // Replay what happened meanwhile; new events keep queueing until we're done
+            while (true) {
+                List<ProductChangedEvent> events;
+                buildLock.lock();
+                try {
+                    if (pendingEvents.isEmpty()) {
+                        ready = built;
+                        building = false;
+                        if (!built) {
+                            log.info("Retrying the {} index build in {} ms", indexName(), retryDelayMillis);
+                            CompletableFuture.delayedExecutor(retryDelayMillis, TimeUnit.MILLISECONDS, taskExecutor)
+                                    .execute(this::rebuild);
+                            retryDelayMillis = Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+                            rebuildRequested = false;
+                        } else {
+                            retryDelayMillis = MIN_RETRY_DELAY_MILLIS;
+                            if (rebuildRequested) {
+                                rebuildRequested = false;
+                                taskExecutor.execute(this::rebuild);
+                            }
+                        }
+                        break;
+                    }
+                    events = new ArrayList<>(pendingEvents);
+                    pendingEvents.clear();
+                } finally {
+                    buildLock.unlock();
+                }
+                events.forEach(this::apply);
+            }
+        }
+    }
+}
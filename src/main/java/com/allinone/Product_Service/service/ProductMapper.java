@@ -0,0 +1,35 @@
+// 19) Mapping between the DTOs and the Product document, shared by the servlet and reactive services
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.dto.ProductRequest;
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.allinone.Product_Service.model.Product;
+
+public final class ProductMapper {
+
+    private ProductMapper() {
+    }
+
+    // Helper method to convert ProductRequest → Product
+    public static Product mapToProduct(ProductRequest productRequest) {
+        return Product.builder()
+                .name(productRequest.getName())            // set name
+                .description(productRequest.getDescription()) // set description
+                .skuCode(productRequest.getSkuCode())      // set SKU code
+                .price(productRequest.getPrice())          // set price
+                .build();
+    }
+
+    // Helper method to convert Product → ProductResponse
+    public static ProductResponse mapToProductResponse(Product product) {
+        return ProductResponse.builder()
+                .id(product.getId())                // set ID
+                .name(product.getName())            // set name
+                .description(product.getDescription()) // set description
+                .skuCode(product.getSkuCode())      // set SKU code
+                .price(product.getPrice())          // set price
+                .build();
+    }
+}
+
@@ -0,0 +1,286 @@
+// 24) In-memory sorted price index for range and top-N queries
+
+package com.allinone.Product_Service.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Prices are kept as long minor units (cents) in one primitive array sorted by (price, product id),
+// with the product ids in a parallel array. A price band is two binary searches plus a slice, the
+// N cheapest are the first N slots. Writes insert / remove in place with System.arraycopy, which is
+// a memmove of the tail and cheap next to a Mongo round trip even at a million products.
+// A stored price whose minor units don't fit a long (e.g. 1e400, written before prices were validated)
+// is left out and counted, instead of failing the write's event or the whole build.
+@Slf4j
+public class ProductPriceIndex {
+
+    // Price scale of the minor units: 2 -> cents
+    public static final int SCALE = 2;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] prices = new long[1024];
+    private String[] productIds = new String[1024];
+    private int size;
+
+    // Current price of every indexed product, to find its slot on update / removal
+    private final Map<String, Long> priceByProductId = new HashMap<>();
+
+    // Products left out because their price has no long minor units
+    private final Set<String> unindexable = new HashSet<>();
+
+    // ArithmeticException when the minor units don't fit a long
+    public static long toMinorUnits(BigDecimal price, RoundingMode roundingMode) {
+        BigInteger minorUnits = scaledOrNull(price, roundingMode);
+        if (minorUnits == null || minorUnits.bitLength() > 63) {
+            throw new ArithmeticException("Price " + price + " is outside the minor unit range");
+        }
+        return minorUnits.longValue();
+    }
+
+    // For query bounds: a bound beyond the long range lies beyond every indexed price
+    public static long toMinorUnitsClamped(BigDecimal price, RoundingMode roundingMode) {
+        BigInteger minorUnits = scaledOrNull(price, roundingMode);
+        if (minorUnits == null || minorUnits.bitLength() > 63) {
+            return price.signum() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return minorUnits.longValue();
+    }
+
+    public static boolean fitsMinorUnits(BigDecimal price, RoundingMode roundingMode) {
+        BigInteger minorUnits = scaledOrNull(price, roundingMode);
+        return minorUnits != null && minorUnits.bitLength() <= 63;
+    }
+
+    // Unscaled value at SCALE, or null when it can't fit a long anyway. Guards the exponent first, so
+    // 1E+999999999 / 1E-999999999 from a request body don't build a billion-digit power of ten.
+    private static BigInteger scaledOrNull(BigDecimal price, RoundingMode roundingMode) {
+        if (price.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+        int integerDigits = price.precision() - price.scale();
+        if (integerDigits > 19) {
+            return null;
+        }
+        if (integerDigits < -SCALE) {
+            // Below a tenth of a minor unit everything rounds alike
+            price = BigDecimal.valueOf(price.signum(), SCALE + 1);
+        }
+        return price.setScale(SCALE, roundingMode).unscaledValue();
+    }
+
+    public static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    // Add or move a product; a null price takes it out of the index
+    public void upsert(String productId, BigDecimal price) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+            if (price == null) {
+                return;
+            }
+            if (!fitsMinorUnits(price, RoundingMode.HALF_UP)) {
+                unindexable.add(productId);
+                log.warn("Price {} of product {} is outside the minor unit range, left out of the price index", price, productId);
+                return;
+            }
+            long minorUnits = toMinorUnits(price, RoundingMode.HALF_UP);
+            int slot = -slotOf(minorUnits, productId) - 1;
+            if (size == prices.length) {
+                int capacity = size + (size >> 1);
+                prices = Arrays.copyOf(prices, capacity);
+                productIds = Arrays.copyOf(productIds, capacity);
+            }
+            System.arraycopy(prices, slot, prices, slot + 1, size - slot);
+            System.arraycopy(productIds, slot, productIds, slot + 1, size - slot);
+            prices[slot] = minorUnits;
+            productIds[slot] = productId;
+            size++;
+            priceByProductId.put(productId, minorUnits);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Replaces the whole content with one sort instead of one insert per product (used by the startup build)
+    public void load(Map<String, BigDecimal> pricesByProductId) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(pricesByProductId.size());
+        Set<String> outOfRange = new HashSet<>();
+        pricesByProductId.forEach((productId, price) -> {
+            if (price == null) {
+                return;
+            }
+            if (fitsMinorUnits(price, RoundingMode.HALF_UP)) {
+                entries.add(Map.entry(productId, toMinorUnits(price, RoundingMode.HALF_UP)));
+            } else {
+                outOfRange.add(productId);
+            }
+        });
+        if (!outOfRange.isEmpty()) {
+            log.warn("{} products have prices outside the minor unit range and are left out of the price index, e.g. {}",
+                    outOfRange.size(), outOfRange.iterator().next());
+        }
+        entries.sort(Map.Entry.<String, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey(Comparator.naturalOrder())));
+
+        lock.writeLock().lock();
+        try {
+            int capacity = Math.max(1024, entries.size() + (entries.size() >> 2));
+            prices = new long[capacity];
+            productIds = new String[capacity];
+            priceByProductId.clear();
+            unindexable.clear();
+            unindexable.addAll(outOfRange);
+            size = entries.size();
+            for (int i = 0; i < size; i++) {
+                Map.Entry<String, Long> entry = entries.get(i);
+                prices[i] = entry.getValue();
+                productIds[i] = entry.getKey();
+                priceByProductId.put(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        load(Map.of());
+    }
+
+    // Product ids with minPrice <= price <= maxPrice (null = open end), cheapest first or most expensive first
+    public List<String> range(BigDecimal minPrice, BigDecimal maxPrice, boolean descending, int limit) {
+        lock.readLock().lock();
+        try {
+            int from = minPrice == null ? 0 : atOrAbove(minPrice);
+            int to = maxPrice == null ? size : upperBound(toMinorUnitsClamped(maxPrice, RoundingMode.FLOOR));
+            int count = Math.max(0, Math.min(limit, to - from));
+            List<String> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(productIds[descending ? to - 1 - i : from + i]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int unindexableCount() {
+        lock.readLock().lock();
+        try {
+            return unindexable.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Approximate heap held by the index: both arrays, the id map (16 byte boxed Long + 32 byte node per
+    // entry plus its table) and the id strings (24 hex chars). Assumes compressed oops (4 byte references).
+    public long memoryFootprintBytes() {
+        lock.readLock().lock();
+        try {
+            long arrays = 16L + 8L * prices.length + 16L + 4L * productIds.length;
+            long map = (long) priceByProductId.size() * (16 + 32) + 4L * Integer.highestOneBit(Math.max(1, priceByProductId.size()) * 2);
+            long ids = (long) size * (24 + 16 + 24);
+            return arrays + map + ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(String productId) {
+        unindexable.remove(productId);
+        Long minorUnits = priceByProductId.remove(productId);
+        if (minorUnits == null) {
+            return;
+        }
+        int slot = slotOf(minorUnits, productId);
+        if (slot >= 0) {
+            System.arraycopy(prices, slot + 1, prices, slot, size - slot - 1);
+            System.arraycopy(productIds, slot + 1, productIds, slot, size - slot - 1);
+            size--;
+            productIds[size] = null;
+        }
+    }
+
+    // Binary search on (price, product id); like Arrays.binarySearch: slot if found, else -(insertion point) - 1
+    private int slotOf(long minorUnits, String productId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = Long.compare(prices[middle], minorUnits);
+            if (compare == 0) {
+                compare = productIds[middle].compareTo(productId);
+            }
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    // First slot whose price is >= minorUnits
+    private int lowerBound(long minorUnits) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (prices[middle] < minorUnits) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // First slot whose price is >= price; a clamped bound above the range must not match a price at Long.MAX_VALUE
+    private int atOrAbove(BigDecimal price) {
+        long minorUnits = toMinorUnitsClamped(price, RoundingMode.CEILING);
+        if (minorUnits == Long.MAX_VALUE && !fitsMinorUnits(price, RoundingMode.CEILING)) {
+            return size;
+        }
+        return lowerBound(minorUnits);
+    }
+
+    // First slot whose price is > minorUnits
+    private int upperBound(long minorUnits) {
+        return minorUnits == Long.MAX_VALUE ? size : lowerBound(minorUnits + 1);
+    }
+}
@@ -0,0 +1,153 @@
+// 34) Rewrites stored prices into the configured representation, in the background after startup
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductPriceConverter;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// One pass in _id order over the documents whose price isn't stored as configured yet, batch-size per
+// round trip, with an optional pause between batches to limit the load. Reads keep working throughout
+// (ProductPriceConverter reads every representation). Each update only applies if the price is still the
+// one that was read, so a concurrent write wins and several instances can run it at the same time.
+// The stored value changes but not the price: versions aren't bumped, but the change stream does report
+// each rewritten document once.
+@Component
+@ConditionalOnProperty(name = "product.storage.backend", havingValue = "mongo", matchIfMissing = true)
+@Slf4j
+public class ProductPriceMigration {
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductPriceConverter productPriceConverter;
+    private final TaskExecutor taskExecutor;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration pause;
+    private final Counter migrated;
+
+    public ProductPriceMigration(MongoTemplate mongoTemplate,
+                                 ProductPriceConverter productPriceConverter,
+                                 @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${product.price.migration.enabled:true}") boolean enabled,
+                                 @Value("${product.price.migration.batch-size:1000}") int batchSize,
+                                 @Value("${product.price.migration.pause:0ms}") Duration pause) {
+        this.mongoTemplate = mongoTemplate;
+        this.productPriceConverter = productPriceConverter;
+        this.taskExecutor = taskExecutor;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.migrated = Counter.builder("product.price.migrated")
+                .description("Product prices rewritten into the configured representation")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (enabled) {
+            taskExecutor.execute(this::migrate);
+        }
+    }
+
+    // Returns the number of documents rewritten
+    public long migrate() {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class));
+        Bson pending = pendingFilter();
+        Object lastId = null;
+        long total = 0;
+        long skipped = 0;
+        try {
+            while (true) {
+                Bson filter = lastId == null ? pending : Filters.and(Filters.gt("_id", lastId), pending);
+                List<Document> batch = collection.find(filter)
+                        .projection(Projections.include("price", "currency"))
+                        .sort(Sorts.ascending("_id"))
+                        .limit(batchSize)
+                        .into(new ArrayList<>(batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                List<WriteModel<Document>> updates = new ArrayList<>(batch.size());
+                for (Document document : batch) {
+                    lastId = document.get("_id");
+                    Object stored = document.get("price");
+                    Object rewritten;
+                    try {
+                        BigDecimal price = productPriceConverter.fromStored(stored, document.getString("currency"));
+                        rewritten = productPriceConverter.toStored(price);
+                    } catch (RuntimeException e) {
+                        // e.g. more decimal places than the currency has: leave it, it is still readable
+                        log.warn("Can't migrate price {} of product {}: {}", stored, lastId, e.getMessage());
+                        skipped++;
+                        continue;
+                    }
+                    String currency = productPriceConverter.currencyCode();
+                    updates.add(new UpdateOneModel<>(
+                            Filters.and(Filters.eq("_id", lastId), Filters.eq("price", stored)),
+                            Updates.combine(Updates.set("price", rewritten),
+                                    currency == null ? Updates.unset("currency") : Updates.set("currency", currency))));
+                }
+                if (!updates.isEmpty()) {
+                    long modified = collection.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+                    migrated.increment(modified);
+                    total += modified;
+                }
+                if (!pause.isZero()) {
+                    Thread.sleep(pause.toMillis());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Price migration interrupted after {} products, continues on next start", total);
+            return total;
+        } catch (RuntimeException e) {
+            log.warn("Price migration failed after {} products, retried on next start", total, e);
+            return total;
+        }
+        if (total > 0 || skipped > 0) {
+            log.info("Migrated {} product prices to {} ({} left as they were)", total,
+                    productPriceConverter.getRepresentation(), skipped);
+        }
+        return total;
+    }
+
+    // Documents with a price that isn't in the configured type (or currency) yet
+    private Bson pendingFilter() {
+        Bson hasPrice = Filters.ne("price", null);
+        return switch (productPriceConverter.getRepresentation()) {
+            case DECIMAL128 -> Filters.and(hasPrice, Filters.not(Filters.type("price", BsonType.DECIMAL128)));
+            case STRING -> Filters.and(hasPrice, Filters.not(Filters.type("price", BsonType.STRING)));
+            case MINOR_UNITS -> Filters.and(hasPrice, Filters.or(
+                    Filters.not(Filters.type("price", BsonType.INT64)),
+                    Filters.ne("currency", productPriceConverter.currencyCode())));
+        };
+    }
+}
@@ -0,0 +1,105 @@
+// 24) Price band / top-N queries served from the in-memory ProductPriceIndex
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The index is built after startup and kept current from change events, see ProductIndexMaintainer
+@Service
+public class ProductPriceService extends ProductIndexMaintainer {
+
+    private final ProductPriceIndex index = new ProductPriceIndex();
+    private final ProductService productService;
+    private final int maxLimit;
+
+    // Startup build collects here first and sorts once, instead of inserting product by product
+    private Map<String, BigDecimal> buildBuffer;
+
+    public ProductPriceService(ProductStore productRepository,
+                               ProductService productService,
+                               @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+                               MeterRegistry meterRegistry,
+                               @Value("${product.price-index.build-batch-size:1000}") int buildBatchSize,
+                               @Value("${product.price-index.max-limit:1000}") int maxLimit) {
+        super(productRepository, taskExecutor, buildBatchSize);
+        this.productService = productService;
+        this.maxLimit = maxLimit;
+        Gauge.builder("product.price.index.products", index, ProductPriceIndex::size)
+                .description("Products in the price index")
+                .register(meterRegistry);
+        Gauge.builder("product.price.index.memory", index, ProductPriceIndex::memoryFootprintBytes)
+                .description("Approximate heap held by the price index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("product.price.index.unindexable", index, ProductPriceIndex::unindexableCount)
+                .description("Products left out of the price index because their price is outside the minor unit range")
+                .register(meterRegistry);
+    }
+
+    // sort: "price" (cheapest first) or "-price" (most expensive first)
+    public List<ProductResponse> getProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice, String sort, int limit) {
+        if (!isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Price index is still being built");
+        }
+        if (sort != null && !sort.equals("price") && !sort.equals("-price")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sort must be price or -price");
+        }
+        if (limit < 1 || limit > maxLimit) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxLimit);
+        }
+        // Bounds beyond the indexable range are clamped by the index
+        List<String> productIds = index.range(minPrice, maxPrice, "-price".equals(sort), limit);
+        // Product data comes from the read-through cache
+        return productService.getProductsByIds(productIds);
+    }
+
+    @Override
+    protected String indexName() {
+        return "price";
+    }
+
+    @Override
+    protected void clearIndex() {
+        index.clear();
+        buildBuffer = new HashMap<>();
+    }
+
+    @Override
+    protected void indexProduct(Product product) {
+        if (buildBuffer != null) {
+            buildBuffer.put(product.getId(), product.getPrice());
+        } else {
+            index.upsert(product.getId(), product.getPrice());
+        }
+    }
+
+    @Override
+    protected void removeProduct(String productId) {
+        index.remove(productId);
+    }
+
+    // Sort everything the build collected into the index in one go
+    @Override
+    protected void afterBuild() {
+        if (buildBuffer != null) {
+            index.load(buildBuffer);
+            buildBuffer = null;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+// 23) In-memory inverted index over product name + description
+
+package com.allinone.Product_Service.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Every indexed product gets an internal int doc number. Each term maps to a posting list of
+// (doc, term frequency) kept in two growing int arrays; since doc numbers are handed out in
+// increasing order the lists are always sorted, so a multi-term query is a merge-intersection
+// starting from the shortest list. Hits are ranked with BM25, name matches count double.
+// Updating a product tombstones its old doc and appends a new one; compact() drops tombstones.
+public class ProductSearchIndex {
+
+    // BM25 parameters (the usual defaults)
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int NAME_WEIGHT = 2;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<String, Integer> docByProductId = new HashMap<>();
+    private String[] productIds = new String[1024];
+    private int[] docLengths = new int[1024];
+    private final BitSet deleted = new BitSet();
+    private int docCount;
+    private int liveDocs;
+    private long totalLength;
+
+    // Index (or re-index) one product
+    public void upsert(String productId, String name, String description) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        int length = addTerms(termFrequencies, name, NAME_WEIGHT) + addTerms(termFrequencies, description, 1);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+            int doc = docCount++;
+            if (doc == productIds.length) {
+                productIds = Arrays.copyOf(productIds, doc * 2);
+                docLengths = Arrays.copyOf(docLengths, doc * 2);
+            }
+            productIds[doc] = productId;
+            docLengths[doc] = length;
+            docByProductId.put(productId, doc);
+            liveDocs++;
+            totalLength += length;
+            termFrequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, key -> new PostingList()).add(doc, frequency));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docByProductId.clear();
+            deleted.clear();
+            productIds = new String[1024];
+            docLengths = new int[1024];
+            docCount = 0;
+            liveDocs = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Products containing every term of the query, best first; offset/limit select the page
+    public Hits search(String query, int offset, int limit) {
+        List<String> terms = new ArrayList<>(tokenize(query).keySet());
+        if (terms.isEmpty()) {
+            return new Hits(0, List.of());
+        }
+
+        lock.readLock().lock();
+        try {
+            PostingList[] lists = new PostingList[terms.size()];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.get(terms.get(i));
+                if (lists[i] == null) {
+                    return new Hits(0, List.of());
+                }
+            }
+            // Rarest term first: it bounds the number of candidates
+            Arrays.sort(lists, (left, right) -> Integer.compare(left.size, right.size));
+
+            float averageLength = liveDocs == 0 ? 1 : (float) totalLength / liveDocs;
+            TopHits top = new TopHits(offset + limit);
+            int[] cursors = new int[lists.length];
+            int total = 0;
+            PostingList shortest = lists[0];
+            candidates:
+            for (int i = 0; i < shortest.size; i++) {
+                int doc = shortest.docs[i];
+                if (deleted.get(doc)) {
+                    continue;
+                }
+                float score = termScore(shortest, i, doc, averageLength);
+                for (int list = 1; list < lists.length; list++) {
+                    int position = lists[list].seek(doc, cursors[list]);
+                    cursors[list] = position;
+                    if (position == lists[list].size) {
+                        // One list is exhausted: no later doc can contain every term
+                        break candidates;
+                    }
+                    if (lists[list].docs[position] != doc) {
+                        continue candidates;
+                    }
+                    score += termScore(lists[list], position, doc, averageLength);
+                }
+                total++;
+                top.offer(doc, score);
+            }
+
+            int[] ranked = top.sortedDocs();
+            List<String> page = new ArrayList<>(Math.max(0, Math.min(limit, ranked.length - offset)));
+            for (int i = offset; i < ranked.length; i++) {
+                page.add(productIds[ranked[i]]);
+            }
+            return new Hits(total, page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Rewrites doc numbers and posting lists without the tombstoned docs
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if (deleted.isEmpty()) {
+                return;
+            }
+            int[] newDoc = new int[docCount];
+            int next = 0;
+            for (int doc = 0; doc < docCount; doc++) {
+                if (deleted.get(doc)) {
+                    newDoc[doc] = -1;
+                } else {
+                    newDoc[doc] = next;
+                    productIds[next] = productIds[doc];
+                    docLengths[next] = docLengths[doc];
+                    docByProductId.put(productIds[next], next);
+                    next++;
+                }
+            }
+            Arrays.fill(productIds, next, docCount, null);
+            postings.values().removeIf(list -> list.remap(newDoc) == 0);
+            docCount = next;
+            deleted.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Tombstones as a share of all docs, to decide when to compact
+    public double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return docCount == 0 ? 0 : (double) (docCount - liveDocs) / docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(String productId) {
+        Integer doc = docByProductId.remove(productId);
+        if (doc != null) {
+            deleted.set(doc);
+            liveDocs--;
+            totalLength -= docLengths[doc];
+        }
+    }
+
+    private float termScore(PostingList list, int position, int doc, float averageLength) {
+        float idf = (float) Math.log(1 + (liveDocs - list.size + 0.5) / (list.size + 0.5));
+        int frequency = list.frequencies[position];
+        float norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+        return idf * (frequency * (K1 + 1)) / (frequency + norm);
+    }
+
+    private static int addTerms(Map<String, Integer> termFrequencies, String text, int weight) {
+        int count = 0;
+        for (Map.Entry<String, Integer> entry : tokenize(text).entrySet()) {
+            termFrequencies.merge(entry.getKey(), entry.getValue() * weight, Integer::sum);
+            count += entry.getValue();
+        }
+        return count;
+    }
+
+    // Lower-cased runs of letters / digits, with their counts
+    static Map<String, Integer> tokenize(String text) {
+        Map<String, Integer> terms = new HashMap<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean tokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                terms.merge(text.substring(start, i).toLowerCase(Locale.ROOT), 1, Integer::sum);
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    public record Hits(int total, List<String> productIds) {
+    }
+
+    // Sorted (doc, frequency) pairs in two parallel int arrays
+    private static final class PostingList {
+        int[] docs = new int[4];
+        int[] frequencies = new int[4];
+        int size;
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                int capacity = size + (size >> 1) + 1;
+                docs = Arrays.copyOf(docs, capacity);
+                frequencies = Arrays.copyOf(frequencies, capacity);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        // First position >= from whose doc is >= target (galloping, then binary search)
+        int seek(int target, int from) {
+            int bound = 1;
+            while (from + bound < size && docs[from + bound] < target) {
+                bound <<= 1;
+            }
+            int low = from + (bound >> 1);
+            int high = Math.min(from + bound, size - 1);
+            if (low >= size || docs[high] < target) {
+                return size;
+            }
+            int found = Arrays.binarySearch(docs, low, high + 1, target);
+            return found >= 0 ? found : -found - 1;
+        }
+
+        // Applies the doc renumbering of compact(); returns the remaining size
+        int remap(int[] newDoc) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = newDoc[docs[i]];
+                if (doc >= 0) {
+                    docs[kept] = doc;
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            docs = Arrays.copyOf(docs, Math.max(kept, 1));
+            frequencies = Arrays.copyOf(frequencies, Math.max(kept, 1));
+            return kept;
+        }
+    }
+
+    // Keeps the best `capacity` hits in a primitive min-heap (worst hit at the root)
+    private static final class TopHits {
+        private final int[] docs;
+        private final float[] scores;
+        private int size;
+
+        TopHits(int capacity) {
+            docs = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        void offer(int doc, float score) {
+            if (docs.length == 0) {
+                return;
+            }
+            if (size < docs.length) {
+                docs[size] = doc;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (score > scores[0]) {
+                docs[0] = doc;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        // Best first
+        int[] sortedDocs() {
+            int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = docs[0];
+                size--;
+                docs[0] = docs[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (scores[i] >= scores[parent]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int doc = docs[a];
+            docs[a] = docs[b];
+            docs[b] = doc;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
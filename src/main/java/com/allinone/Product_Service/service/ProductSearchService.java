@@ -0,0 +1,89 @@
+// 23) Keyword search served from the in-memory ProductSearchIndex
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.allinone.Product_Service.dto.ProductSearchResponse;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+// The index is built after startup and kept current from change events, see ProductIndexMaintainer
+@Service
+public class ProductSearchService extends ProductIndexMaintainer {
+
+    private final ProductSearchIndex index = new ProductSearchIndex();
+    private final ProductService productService;
+    private final int maxResultWindow;
+
+    public ProductSearchService(ProductStore productRepository,
+                                ProductService productService,
+                                @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+                                MeterRegistry meterRegistry,
+                                @Value("${product.search.build-batch-size:1000}") int buildBatchSize,
+                                @Value("${product.search.max-result-window:1000}") int maxResultWindow) {
+        super(productRepository, taskExecutor, buildBatchSize);
+        this.productService = productService;
+        this.maxResultWindow = maxResultWindow;
+        Gauge.builder("product.search.index.documents", index, ProductSearchIndex::size)
+                .description("Products in the search index")
+                .register(meterRegistry);
+    }
+
+    public ProductSearchResponse search(String query, int page, int size) {
+        if (!isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Search index is still being built");
+        }
+        if (page < 0 || size < 1 || (long) (page + 1) * size > maxResultWindow) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "page and size must stay within the first " + maxResultWindow + " results");
+        }
+        ProductSearchIndex.Hits hits = index.search(query, page * size, size);
+        // Hits are ids; the product data comes from the read-through cache
+        List<ProductResponse> items = productService.getProductsByIds(hits.productIds());
+        return ProductSearchResponse.builder()
+                .total(hits.total())
+                .page(page)
+                .size(size)
+                .items(items)
+                .build();
+    }
+
+    @Override
+    protected String indexName() {
+        return "search";
+    }
+
+    @Override
+    protected void clearIndex() {
+        index.clear();
+    }
+
+    @Override
+    protected void indexProduct(Product product) {
+        index.upsert(product.getId(), product.getName(), product.getDescription());
+    }
+
+    @Override
+    protected void removeProduct(String productId) {
+        index.remove(productId);
+    }
+
+    // Updates leave tombstones behind, squeeze them out once they pile up
+    @Override
+    protected void afterChange() {
+        if (index.deletedRatio() > 0.25) {
+            index.compact();
+        }
+    }
+}
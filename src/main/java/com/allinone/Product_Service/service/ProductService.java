@@ -3,19 +3,50 @@
 package com.allinone.Product_Service.service;
 
 // Lombok to generate constructor for final fields
+import com.allinone.Product_Service.dto.BatchCreateResponse;
+import com.allinone.Product_Service.dto.ProductPageResponse;
 import com.allinone.Product_Service.dto.ProductRequest;
 import com.allinone.Product_Service.dto.ProductResponse;
+import com.allinone.Product_Service.event.ProductChangedEvent;
 import com.allinone.Product_Service.model.Product;
-import com.allinone.Product_Service.repository.ProductRepository;
+import com.allinone.Product_Service.repository.InvalidPriceException;
+import com.allinone.Product_Service.repository.ProductPriceConverter;
+import com.allinone.Product_Service.repository.ProductStore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 
 // Lombok to enable logging using log.info(), etc.
 import lombok.extern.slf4j.Slf4j;
 
 // Marks this class as a Spring service
+import org.bson.RawBsonDocument;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static com.allinone.Product_Service.service.ProductMapper.mapToProduct;
+import static com.allinone.Product_Service.service.ProductMapper.mapToProductResponse;
 
 // Annotate as a Spring Service
 @Service
@@ -25,46 +56,322 @@ import java.util.List;
 
 // Enables SLF4J logger as `log`
 @Slf4j
+
+// 26) product.service timer per public method (tags class, method, exception)
+@Timed("product.service")
 public class ProductService {
 
     // Injected repository for MongoDB interaction
-    private final ProductRepository productRepository;
+    private final ProductStore productRepository;
+
+    // 34) Checks prices before anything is written (and before a coalesced insert, where a bad one would
+    // otherwise fail the shared flush), so every write path answers 400 for the same prices
+    private final ProductPriceConverter productPriceConverter;
+
+    // Spring's configured ObjectMapper, used for the NDJSON stream
+    private final ObjectMapper objectMapper;
+
+    // Only present when product.write-coalescing.enabled=true
+    private final ObjectProvider<ProductWriteCoalescer> writeCoalescer;
+
+    // Read-through cache for getAllProducts / getProductById
+    private final ProductCache productCache;
+
+    // Tells the cache (and other listeners) about our own writes
+    private final ApplicationEventPublisher eventPublisher;
+
+    // 31) Reserves the change versions of our writes and keeps them open until the write finished
+    private final ProductVersionReservations versionReservations;
+
+    // Upper bound for one page, so a client can't turn a page request back into a full findAll()
+    @Value("${product.page.max-size:500}")
+    private int maxPageSize;
+
+    // Documents fetched per cursor round trip while streaming
+    @Value("${product.stream.batch-size:1000}")
+    private int streamBatchSize;
+
+    // Products per bulk write in createProducts
+    @Value("${product.batch.chunk-size:1000}")
+    private int batchChunkSize;
 
     // Method to create and save a product from ProductRequest DTO
     public void createProduct(ProductRequest productRequest) {
         // Build a Product object from the incoming request
-        Product product = Product.builder()
-                .name(productRequest.getName())            // set name
-                .description(productRequest.getDescription()) // set description
-                .price(productRequest.getPrice())          // set price
-                .build();
+        Product product = mapToProduct(productRequest);
+
+        productPriceConverter.validate(product.getPrice());
 
-        // Save to MongoDB
-        productRepository.save(product);
+        // Save to MongoDB, either directly or as part of a coalesced bulk insert
+        ProductWriteCoalescer coalescer = writeCoalescer.getIfAvailable();
+        if (coalescer != null) {
+            try {
+                coalescer.insert(product);
+            } catch (ProductWritePendingException e) {
+                // Announced once it is stored after all
+                e.getCompletion().thenRun(() -> publishInserted(product));
+                throw e;
+            }
+        } else {
+            // 31) change version for delta sync (the coalescer reserves one block per flush instead)
+            versionReservations.write(1, version -> {
+                assignVersions(List.of(product), version);
+                return productRepository.save(product);
+            });
+        }
 
         // Log product creation (product.getId() may be null if ID is generated by DB)
         log.info("Product {} is saved", product.getId());
+        publishInserted(product);
     }
 
-    // Fetch all products and map to response DTOs
+    // 15) Create many products with unordered bulk inserts, chunkSize documents per write.
+    // Takes an iterator so an NDJSON body can be inserted while it is still being read.
+    public BatchCreateResponse createProducts(Iterator<ProductRequest> productRequests) {
+        List<String> ids = new ArrayList<>();
+        List<BatchCreateResponse.ItemError> errors = new ArrayList<>();
+
+        List<Product> chunk = new ArrayList<>(batchChunkSize);
+        while (productRequests.hasNext()) {
+            ProductRequest productRequest = productRequests.next();
+            if (productRequest == null) {
+                // Keep positions aligned with the request, but nothing to insert
+                errors.add(itemError(ids.size() + chunk.size(), "Product must not be null"));
+                flushChunk(chunk, ids, errors);
+                ids.add(null);
+                continue;
+            }
+            Product product = mapToProduct(productRequest);
+            try {
+                productPriceConverter.validate(product.getPrice());
+            } catch (InvalidPriceException e) {
+                errors.add(itemError(ids.size() + chunk.size(), e.getMessage()));
+                flushChunk(chunk, ids, errors);
+                ids.add(null);
+                continue;
+            }
+            chunk.add(product);
+            if (chunk.size() == batchChunkSize) {
+                flushChunk(chunk, ids, errors);
+            }
+        }
+        flushChunk(chunk, ids, errors);
+
+        log.info("Batch created {} products, {} failed", ids.size() - errors.size(), errors.size());
+        return BatchCreateResponse.builder()
+                .ids(ids)
+                .errors(errors)
+                .build();
+    }
+
+    // Insert the pending chunk and record its ids / failures at the right request positions
+    private void flushChunk(List<Product> chunk, List<String> ids, List<BatchCreateResponse.ItemError> errors) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        int offset = ids.size();
+        // 31) one block of versions per chunk, one round trip
+        Map<Integer, String> failures = versionReservations.write(chunk.size(), firstVersion -> {
+            assignVersions(chunk, firstVersion);
+            return productRepository.insertAllUnordered(chunk);
+        });
+        for (int i = 0; i < chunk.size(); i++) {
+            String failure = failures.get(i);
+            if (failure == null) {
+                ids.add(chunk.get(i).getId());
+                publishInserted(chunk.get(i));
+            } else {
+                ids.add(null);
+                errors.add(itemError(offset + i, failure));
+            }
+        }
+        chunk.clear();
+    }
+
+    // 31) Replaces the product's fields; null when it doesn't exist. A SKU taken by another product fails
+    // with DataIntegrityViolationException like on create.
+    public ProductResponse updateProduct(String id, ProductRequest productRequest) {
+        Product product = mapToProduct(productRequest);
+        productPriceConverter.validate(product.getPrice());
+        product.setId(id);
+        // Replace without upsert: a product deleted concurrently stays deleted (save() would recreate it)
+        boolean replaced = versionReservations.write(1, version -> {
+            assignVersions(List.of(product), version);
+            return productRepository.replaceExisting(product);
+        });
+        if (!replaced) {
+            return null;
+        }
+        log.info("Product {} is updated", id);
+        eventPublisher.publishEvent(ProductChangedEvent.builder()
+                .type(ProductChangedEvent.Type.UPDATE)
+                .productId(id)
+                .product(product)
+                .build());
+        return mapToProductResponse(product);
+    }
+
+    // 31) Deletes the product and leaves a tombstone for delta sync; false when it doesn't exist
+    public boolean deleteProduct(String id) {
+        if (!versionReservations.write(1, version -> productRepository.deleteWithTombstone(id, version, Instant.now()))) {
+            return false;
+        }
+        log.info("Product {} is deleted", id);
+        eventPublisher.publishEvent(ProductChangedEvent.builder()
+                .type(ProductChangedEvent.Type.DELETE)
+                .productId(id)
+                .build());
+        return true;
+    }
+
+    // 31) Stamps consecutive versions starting at firstVersion, reserved with ProductVersionReservations
+    static void assignVersions(List<Product> products, long firstVersion) {
+        Instant now = Instant.now();
+        for (int i = 0; i < products.size(); i++) {
+            products.get(i).setVersion(firstVersion + i);
+            products.get(i).setLastModified(now);
+        }
+    }
+
+    private BatchCreateResponse.ItemError itemError(int index, String message) {
+        return BatchCreateResponse.ItemError.builder()
+                .index(index)
+                .message(message)
+                .build();
+    }
+
+    private void publishInserted(Product product) {
+        eventPublisher.publishEvent(ProductChangedEvent.builder()
+                .type(ProductChangedEvent.Type.INSERT)
+                .productId(product.getId())
+                .product(product)
+                .build());
+    }
+
+    // Fetch all products and map to response DTOs (served from the cache until the collection changes)
     public List<ProductResponse> getAllProducts() {
+        return productCache.getAllProducts(this::loadAllProducts);
+    }
+
+    // 17) Single product by id, read through the cache; null when it doesn't exist
+    public ProductResponse getProductById(String id) {
+        return productCache.getProduct(id, key -> productRepository.findById(key)
+                .map(ProductMapper::mapToProductResponse)
+                .orElse(null));
+    }
+
+    // 23) Several products by id in the given order, missing ones left out: cached ones from the cache,
+    // the rest with a single findAllById instead of one round trip per product
+    public List<ProductResponse> getProductsByIds(List<String> ids) {
+        Map<String, ProductResponse> products = productCache.getProducts(ids, missing -> {
+            Map<String, ProductResponse> loaded = new HashMap<>();
+            productRepository.findAllById(missing).forEach(product -> loaded.put(product.getId(), mapToProductResponse(product)));
+            return loaded;
+        });
+        return ids.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // 22) Single product by SKU code, served from the unique skuCode index; null when it doesn't exist
+    public ProductResponse getProductBySkuCode(String skuCode) {
+        return productRepository.findBySkuCode(skuCode)
+                .map(ProductMapper::mapToProductResponse)
+                .orElse(null);
+    }
+
+    // Cold-start warm-up: preload the products that were hottest in the previous run
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpCache() {
+        List<String> hotIds = productCache.loadHotKeys();
+        if (hotIds.isEmpty()) {
+            return;
+        }
+        List<Product> products = productRepository.findAllById(hotIds);
+        products.forEach(product -> productCache.putProduct(mapToProductResponse(product)));
+        log.info("Warmed up product cache with {} products", products.size());
+    }
+
+    private List<ProductResponse> loadAllProducts() {
         // Retrieve all Product entities
         List<Product> products = productRepository.findAll();
 
         // Map each Product to a ProductResponse DTO
         return products.stream()
-                .map(this::mapToProductResponse) // convert to response :- means products have external field from the database that is not required, so we are mapping with dto's so that only the mentioned field in that dto is responded.
+                .map(ProductMapper::mapToProductResponse) // convert to response :- means products have external field from the database that is not required, so we are mapping with dto's so that only the mentioned field in that dto is responded.
                 .toList();                       // Java 16+ toList()
     }
 
-    // Helper method to convert Product → ProductResponse
-    private ProductResponse mapToProductResponse(Product product) {
-        return ProductResponse.builder()
-                .id(product.getId())                // set ID
-                .name(product.getName())            // set name
-                .description(product.getDescription()) // set description
-                .price(product.getPrice())          // set price
+    // 13) Fetch one page of products after the given cursor (keyset pagination on _id)
+    public ProductPageResponse getProductPage(String cursor, int size) {
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be positive");
+        }
+        int pageSize = Math.min(size, maxPageSize);
+
+        // Ask for one extra row: if it comes back there is a next page, and we don't need a count query
+        Limit limit = Limit.of(pageSize + 1);
+        List<Product> products = cursor == null || cursor.isBlank()
+                ? productRepository.findAllByOrderByIdAsc(limit)
+                : productRepository.findByIdGreaterThanOrderByIdAsc(decodeCursor(cursor), limit);
+
+        boolean hasNext = products.size() > pageSize;
+        List<Product> page = hasNext ? products.subList(0, pageSize) : products;
+
+        return ProductPageResponse.builder()
+                .items(page.stream().map(ProductMapper::mapToProductResponse).toList())
+                .nextCursor(hasNext ? encodeCursor(page.get(pageSize - 1).getId()) : null)
                 .build();
     }
-}
 
+    // 14) Write every product as one JSON line (NDJSON) while reading it from the cursor.
+    // Only one batch is held in memory; a client disconnect makes the write throw, which closes the cursor.
+    public void streamAllProducts(OutputStream outputStream) throws IOException {
+        // 21) projected raw BSON written straight into the generator, see ProductBsonJsonWriter
+        long count = 0;
+        try (Stream<RawBsonDocument> documents = productRepository.streamAllRaw(streamBatchSize, ProductBsonJsonWriter.BSON_FIELDS);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            // One line per product, we write the newlines ourselves
+            generator.setRootValueSeparator(null);
+            ProductBsonJsonWriter writer = new ProductBsonJsonWriter(generator);
+            for (RawBsonDocument document : (Iterable<RawBsonDocument>) documents::iterator) {
+                writer.write(document);
+                generator.writeRaw('\n');
+                count++;
+                // First flush gets the first byte out right away, afterwards once per cursor batch
+                if (count == 1 || count % streamBatchSize == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        log.info("Streamed {} products", count);
+    }
+
+    // 18) Write the whole catalog as one JSON array straight from the cursor (used to build the catalog snapshot)
+    public void writeAllProducts(OutputStream outputStream) throws IOException {
+        try (Stream<RawBsonDocument> documents = productRepository.streamAllRaw(streamBatchSize, ProductBsonJsonWriter.BSON_FIELDS);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            ProductBsonJsonWriter writer = new ProductBsonJsonWriter(generator);
+            generator.writeStartArray();
+            for (RawBsonDocument document : (Iterable<RawBsonDocument>) documents::iterator) {
+                writer.write(document);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    // Cursor is the last _id of the page, base64url encoded so clients treat it as opaque; the reactive
+    // service uses the same format
+    static String encodeCursor(String lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,157 @@
+// 31) Change versions are reserved through here, so delta sync knows which of them may still be written
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.repository.ProductStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+// A write reserves its versions (ProductStore.reserveVersions) before it commits, so a lower version
+// can become visible after a higher one. Every reservation of this instance stays open until its write
+// has finished, and ProductChangesService never moves a token to or past the lowest open one.
+//
+// Reservations held by other instances aren't known here; for those the token still waits settle-time.
+// A write that holds its versions longer than that is counted (product.changes.reservations.overdue): a
+// client polling another instance may have skipped it and should sync again.
+@Component
+@Slf4j
+public class ProductVersionReservations {
+
+    private final ProductStore productRepository;
+    private final Duration settleTime;
+    private final Timer holdTime;
+    private final Counter overdue;
+
+    // Guarded by this. First versions of the open reservations, and for reservations whose round trip is
+    // still running a lower bound of their first version -> how many
+    private final TreeSet<Long> open = new TreeSet<>();
+    private final TreeMap<Long, Integer> pending = new TreeMap<>();
+    private final List<Window> windows = new ArrayList<>();
+    private long highestReserved;
+
+    public ProductVersionReservations(ProductStore productRepository,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${product.changes.settle-time:2s}") Duration settleTime) {
+        this.productRepository = productRepository;
+        this.settleTime = settleTime;
+        this.holdTime = Timer.builder("product.changes.reservations.hold")
+                .description("From reserving change versions until the write using them finished")
+                .register(meterRegistry);
+        this.overdue = Counter.builder("product.changes.reservations.overdue")
+                .description("Writes that held their change versions longer than settle-time")
+                .register(meterRegistry);
+    }
+
+    // Reserves count consecutive versions, runs the write with the first one and releases them when it
+    // returns or throws
+    public <T> T write(int count, LongFunction<T> write) {
+        long start = System.nanoTime();
+        long firstVersion = reserve(count);
+        try {
+            return write.apply(firstVersion);
+        } finally {
+            release(firstVersion, System.nanoTime() - start);
+        }
+    }
+
+    // Call before reading changes; the window's limit is the lowest version that may still be written
+    public synchronized Window openWindow() {
+        Window window = new Window(lowestOpen());
+        windows.add(window);
+        return window;
+    }
+
+    private long reserve(int count) {
+        // The sequence only grows, so the versions will be above what this instance got so far. Until the
+        // round trip returns, that bound stands in for them.
+        long lowerBound;
+        synchronized (this) {
+            lowerBound = highestReserved + 1;
+            pending.merge(lowerBound, 1, Integer::sum);
+        }
+        long firstVersion;
+        try {
+            firstVersion = productRepository.reserveVersions(count);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                removePending(lowerBound);
+            }
+            throw e;
+        }
+        // One step, so there is no moment where neither the bound nor the versions are open
+        synchronized (this) {
+            removePending(lowerBound);
+            open.add(firstVersion);
+            highestReserved = Math.max(highestReserved, firstVersion + count - 1);
+        }
+        return firstVersion;
+    }
+
+    private void release(long firstVersion, long holdNanos) {
+        synchronized (this) {
+            open.remove(firstVersion);
+            // A poll running right now may have read before this write committed
+            for (Window window : windows) {
+                window.limit = Math.min(window.limit, firstVersion);
+            }
+        }
+        holdTime.record(holdNanos, TimeUnit.NANOSECONDS);
+        if (holdNanos > settleTime.toNanos()) {
+            overdue.increment();
+            log.warn("Write with change version {} took {} ms, longer than the settle time", firstVersion,
+                    TimeUnit.NANOSECONDS.toMillis(holdNanos));
+        }
+    }
+
+    private void removePending(long lowerBound) {
+        pending.computeIfPresent(lowerBound, (bound, reservations) -> reservations == 1 ? null : reservations - 1);
+    }
+
+    private long lowestOpen() {
+        long lowest = Long.MAX_VALUE;
+        if (!open.isEmpty()) {
+            lowest = open.first();
+        }
+        if (!pending.isEmpty()) {
+            lowest = Math.min(lowest, pending.firstKey());
+        }
+        return lowest;
+    }
+
+    // Versions below the limit are all committed or given up: those written during the window lower it,
+    // and closing it takes what is still open then into account
+    public final class Window implements AutoCloseable {
+
+        private long limit;
+
+        private Window(long limit) {
+            this.limit = limit;
+        }
+
+        // Lowest version a token must not reach, Long.MAX_VALUE when nothing was in flight
+        public long limit() {
+            synchronized (ProductVersionReservations.this) {
+                return Math.min(limit, lowestOpen());
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (ProductVersionReservations.this) {
+                windows.remove(this);
+            }
+        }
+    }
+}
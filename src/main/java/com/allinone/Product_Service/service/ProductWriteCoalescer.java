@@ -0,0 +1,229 @@
+// 16) Write-coalescing buffer for single product creates
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductRepositoryCustom;
+import com.allinone.Product_Service.repository.ProductStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Concurrent createProduct calls are queued here and written by one flusher thread as a single
+// unordered bulk insert, once maxBatchSize products are waiting or the oldest one waited maxDelay.
+// Every caller blocks until the bulk write containing its product has been acknowledged, at most
+// write-timeout. A write that times out while still queued is taken back out (503, safe to retry); one the
+// flusher already took may still be stored, so the caller gets ProductWritePendingException with the id
+// instead. Writes still queued when the flusher stops (shutdown, or an Error that killed it) are failed, so
+// no caller is left waiting.
+@Component
+@ConditionalOnProperty(name = "product.write-coalescing.enabled", havingValue = "true")
+@Slf4j
+public class ProductWriteCoalescer {
+
+    private final ProductStore productRepository;
+    private final ProductVersionReservations versionReservations;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long enqueueTimeoutMillis;
+    private final long writeTimeoutMillis;
+    private final boolean virtualThreads;
+
+    private final DistributionSummary flushSize;
+    private final Timer flushLatency;
+    private final Timer waitLatency;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public ProductWriteCoalescer(ProductStore productRepository,
+                                 ProductVersionReservations versionReservations,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${product.write-coalescing.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${product.write-coalescing.max-batch-size:500}") int maxBatchSize,
+                                 @Value("${product.write-coalescing.max-delay-ms:5}") long maxDelayMillis,
+                                 @Value("${product.write-coalescing.enqueue-timeout-ms:1000}") long enqueueTimeoutMillis,
+                                 @Value("${product.write-coalescing.write-timeout-ms:30000}") long writeTimeoutMillis,
+                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.productRepository = productRepository;
+        this.versionReservations = versionReservations;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.writeTimeoutMillis = writeTimeoutMillis;
+        this.virtualThreads = virtualThreads;
+
+        Gauge.builder("product.write.coalescer.queue.depth", queue, BlockingQueue::size)
+                .description("Products waiting to be flushed")
+                .register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("product.write.coalescer.flush.size")
+                .description("Products written per bulk insert")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("product.write.coalescer.flush.latency")
+                .description("Duration of one bulk insert")
+                .register(meterRegistry);
+        this.waitLatency = Timer.builder("product.write.coalescer.wait")
+                .description("Time from enqueue until the product's write was acknowledged")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        // 20) same thread kind as the request threads, so both modes can be compared like for like
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon(true);
+        flusher = builder.name("product-write-coalescer").start(this::runFlusher);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // The flusher drains what is still queued before it exits; whatever it didn't get to is failed
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        failQueued();
+    }
+
+    // Queue the product and wait until its bulk write is acknowledged; failures are rethrown to the caller
+    public void insert(Product product) {
+        // Known before the write, so a caller that stops waiting can still be told where the product will be
+        if (product.getId() == null) {
+            product.setId(new ObjectId().toHexString());
+        }
+        PendingWrite pendingWrite = new PendingWrite(product, System.nanoTime(), new CompletableFuture<>());
+        try {
+            if (!running || !queue.offer(pendingWrite, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Write queue is full");
+            }
+            // Stopped while we were queueing: the flusher may be gone already
+            if (!running && queue.remove(pendingWrite)) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Write queue is shutting down");
+            }
+            pendingWrite.result().get(writeTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw notAcknowledged(pendingWrite, "Interrupted while waiting for write", e);
+        } catch (TimeoutException e) {
+            throw notAcknowledged(pendingWrite, "Write not acknowledged in time", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Still queued: never written, so the caller may retry. Otherwise the flusher has it and it may still be stored.
+    private RuntimeException notAcknowledged(PendingWrite pendingWrite, String message, Exception cause) {
+        if (queue.remove(pendingWrite)) {
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, message, cause);
+        }
+        return new ProductWritePendingException(pendingWrite.product().getId(), pendingWrite.result(), cause);
+    }
+
+    private void runFlusher() {
+        try {
+            flushUntilStopped();
+        } finally {
+            // Also reached when an Error killed the loop: refuse new writes and fail the queued ones
+            running = false;
+            failQueued();
+        }
+    }
+
+    private void flushUntilStopped() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Collect more until the batch is full or the oldest write has waited long enough
+                long deadline = first.enqueuedAt() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<Product> products = batch.stream().map(PendingWrite::product).toList();
+        flushSize.record(products.size());
+        long start = System.nanoTime();
+        try {
+            // 31) change versions for delta sync, one block for the whole flush
+            Map<Integer, String> failures = versionReservations.write(products.size(), firstVersion -> {
+                ProductService.assignVersions(products, firstVersion);
+                return productRepository.insertAllUnordered(products);
+            });
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            for (int i = 0; i < batch.size(); i++) {
+                PendingWrite pendingWrite = batch.get(i);
+                String failure = failures.get(i);
+                if (failure == null) {
+                    pendingWrite.result().complete(null);
+                } else if (ProductRepositoryCustom.isDuplicateKey(failure)) {
+                    // 409 like a direct insert with an existing SKU
+                    pendingWrite.result().completeExceptionally(new DuplicateKeyException(failure));
+                } else {
+                    pendingWrite.result().completeExceptionally(new UncategorizedMongoDbException(failure, null));
+                }
+                waitLatency.record(System.nanoTime() - pendingWrite.enqueuedAt(), TimeUnit.NANOSECONDS);
+            }
+        } catch (RuntimeException | Error e) {
+            // The whole bulk write failed (e.g. Mongo unreachable): every caller gets the error
+            log.warn("Coalesced insert of {} products failed", batch.size(), e);
+            batch.forEach(pendingWrite -> pendingWrite.result().completeExceptionally(e));
+            if (e instanceof Error) {
+                throw e;
+            }
+        }
+    }
+
+    private void failQueued() {
+        List<PendingWrite> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(pendingWrite -> pendingWrite.result().completeExceptionally(
+                new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Write queue stopped")));
+    }
+
+    private record PendingWrite(Product product, long enqueuedAt, CompletableFuture<Void> result) {
+    }
+}
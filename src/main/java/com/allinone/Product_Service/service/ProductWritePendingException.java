@@ -0,0 +1,24 @@
+// 16) A coalesced create that wasn't acknowledged within write-timeout but is already being written
+
+package com.allinone.Product_Service.service;
+
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+// The product may still be stored, so this is not a retryable 503: the controller answers 202 with the id the
+// product will have, and the client checks there instead of creating it a second time.
+@Getter
+public class ProductWritePendingException extends RuntimeException {
+
+    private final String productId;
+
+    // Completes when the write is acknowledged after all, exceptionally when it failed
+    private final transient CompletableFuture<Void> completion;
+
+    public ProductWritePendingException(String productId, CompletableFuture<Void> completion, Throwable cause) {
+        super("Write of product " + productId + " not acknowledged in time, it may still be stored", cause);
+        this.productId = productId;
+        this.completion = completion;
+    }
+}
@@ -0,0 +1,188 @@
+// 19) Reactive version of ProductService for the WebFlux stack
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.dto.BatchCreateResponse;
+import com.allinone.Product_Service.dto.ProductPageResponse;
+import com.allinone.Product_Service.dto.ProductRequest;
+import com.allinone.Product_Service.dto.ProductResponse;
+import com.allinone.Product_Service.event.ProductChangedEvent;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductPriceConverter;
+import com.allinone.Product_Service.repository.ReactiveProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveProductService {
+
+    private final ReactiveProductRepository reactiveProductRepository;
+
+    // 34) Same price rules as ProductService
+    private final ProductPriceConverter productPriceConverter;
+
+    // Same events as the servlet path, so cache and snapshot stay correct in this mode too
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Same limits as ProductService
+    @Value("${product.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${product.batch.chunk-size:1000}")
+    private int batchChunkSize;
+
+    public Mono<Void> createProduct(ProductRequest productRequest) {
+        Product newProduct = ProductMapper.mapToProduct(productRequest);
+        // 31) change version for delta sync, like ProductService; 34) only for a valid price
+        return Mono.fromRunnable(() -> productPriceConverter.validate(newProduct.getPrice()))
+                .then(reactiveProductRepository.reserveVersions(1))
+                .flatMap(version -> {
+                    newProduct.setVersion(version);
+                    newProduct.setLastModified(Instant.now());
+                    return reactiveProductRepository.save(newProduct);
+                })
+                .doOnNext(product -> {
+                    log.info("Product {} is saved", product.getId());
+                    publishInserted(product);
+                })
+                .then();
+    }
+
+    // 15) Batch create like ProductService.createProducts: one unordered bulk insert and one block of change
+    // versions per chunk, chunks one after the other in request order
+    public Mono<BatchCreateResponse> createProducts(List<ProductRequest> productRequests) {
+        int chunks = (productRequests.size() + batchChunkSize - 1) / batchChunkSize;
+        // subList rather than Flux.fromIterable(...).buffer(): the list may hold nulls, a Flux can't
+        return createChunks(Flux.range(0, chunks).map(chunk -> productRequests.subList(chunk * batchChunkSize,
+                Math.min(productRequests.size(), (chunk + 1) * batchChunkSize))));
+    }
+
+    // NDJSON body: each chunk is inserted as soon as it has been read
+    public Mono<BatchCreateResponse> createProducts(Flux<ProductRequest> productRequests) {
+        return createChunks(productRequests.buffer(batchChunkSize));
+    }
+
+    private Mono<BatchCreateResponse> createChunks(Flux<List<ProductRequest>> chunks) {
+        return Mono.defer(() -> {
+            BatchCreateResponse response = BatchCreateResponse.builder()
+                    .ids(new ArrayList<>())
+                    .errors(new ArrayList<>())
+                    .build();
+            return chunks.concatMap(chunk -> insertChunk(chunk, response))
+                    .then(Mono.fromSupplier(() -> {
+                        response.getErrors().sort(Comparator.comparingInt(BatchCreateResponse.ItemError::getIndex));
+                        log.info("Batch created {} products, {} failed", response.getIds().size() - response.getErrors().size(),
+                                response.getErrors().size());
+                        return response;
+                    }));
+        });
+    }
+
+    // Inserts the chunk and records its ids / failures at the right request positions
+    private Mono<Void> insertChunk(List<ProductRequest> chunk, BatchCreateResponse response) {
+        int offset = response.getIds().size();
+        response.getIds().addAll(Collections.nCopies(chunk.size(), null));
+        List<Product> products = new ArrayList<>(chunk.size());
+        List<Integer> positions = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            if (chunk.get(i) == null) {
+                response.getErrors().add(itemError(offset + i, "Product must not be null"));
+            } else {
+                products.add(ProductMapper.mapToProduct(chunk.get(i)));
+                positions.add(offset + i);
+            }
+        }
+        if (products.isEmpty()) {
+            return Mono.empty();
+        }
+        return reactiveProductRepository.reserveVersions(products.size())
+                .flatMap(firstVersion -> {
+                    ProductService.assignVersions(products, firstVersion);
+                    return reactiveProductRepository.insertAllUnordered(products);
+                })
+                .doOnNext(failures -> {
+                    for (int i = 0; i < products.size(); i++) {
+                        String failure = failures.get(i);
+                        if (failure == null) {
+                            response.getIds().set(positions.get(i), products.get(i).getId());
+                            publishInserted(products.get(i));
+                        } else {
+                            response.getErrors().add(itemError(positions.get(i), failure));
+                        }
+                    }
+                })
+                .then();
+    }
+
+    // 22) empty Mono when the product doesn't exist
+    public Mono<ProductResponse> getProductById(String id) {
+        return reactiveProductRepository.findById(id).map(ProductMapper::mapToProductResponse);
+    }
+
+    public Mono<ProductResponse> getProductBySkuCode(String skuCode) {
+        return reactiveProductRepository.findBySkuCode(skuCode).map(ProductMapper::mapToProductResponse);
+    }
+
+    // Streams the catalog with backpressure: nothing is collected into a list
+    public Flux<ProductResponse> getAllProducts() {
+        return reactiveProductRepository.findAllByOrderByIdAsc()
+                .map(ProductMapper::mapToProductResponse);
+    }
+
+    // 13) One page after the cursor, same cursor format and page rules as ProductService.getProductPage
+    public Mono<ProductPageResponse> getProductPage(String cursor, int size) {
+        return Mono.defer(() -> {
+            if (size < 1) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be positive"));
+            }
+            int pageSize = Math.min(size, maxPageSize);
+
+            // One extra row tells whether there is a next page
+            Limit limit = Limit.of(pageSize + 1);
+            Flux<Product> products = cursor == null || cursor.isBlank()
+                    ? reactiveProductRepository.findAllByOrderByIdAsc(limit)
+                    : reactiveProductRepository.findByIdGreaterThanOrderByIdAsc(ProductService.decodeCursor(cursor), limit);
+            return products.collectList().map(found -> {
+                boolean hasNext = found.size() > pageSize;
+                List<Product> page = hasNext ? found.subList(0, pageSize) : found;
+                return ProductPageResponse.builder()
+                        .items(page.stream().map(ProductMapper::mapToProductResponse).toList())
+                        .nextCursor(hasNext ? ProductService.encodeCursor(page.get(pageSize - 1).getId()) : null)
+                        .build();
+            });
+        });
+    }
+
+    private void publishInserted(Product product) {
+        eventPublisher.publishEvent(ProductChangedEvent.builder()
+                .type(ProductChangedEvent.Type.INSERT)
+                .productId(product.getId())
+                .product(product)
+                .build());
+    }
+
+    private static BatchCreateResponse.ItemError itemError(int index, String message) {
+        return BatchCreateResponse.ItemError.builder()
+                .index(index)
+                .message(message)
+                .build();
+    }
+}
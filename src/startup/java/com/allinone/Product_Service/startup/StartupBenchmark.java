@@ -0,0 +1,314 @@
+// 30) Startup benchmark: time to the first successful request and resident memory per JVM mode
+
+package com.allinone.Product_Service.startup;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.MongoVersion;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Starts the packaged service as a separate JVM, runs times per mode, and reports how long it took from
+// launching the process to the first 200 from GET /api/product/page (a real MongoDB query) and the
+// resident set size right after it. Modes:
+//   cold      plain java -jar
+//   cds       with a dynamic class-data-sharing archive: classes come parsed and verified from the archive
+//   aot       with the Spring AOT output (-Dspring.aot.enabled=true): bean definitions are generated code
+//             instead of classpath scanning and condition evaluation at startup
+//   aot-cds   both
+// The CDS archives are created first by training runs (-XX:ArchiveClassesAtExit) that call every
+// ProductController endpoint, so the classes of the request path are in the archive too. An archive only
+// matches the exact jar and JVM it was created with; it is recreated on every benchmark run.
+//
+// Options (key=value):
+//   app=<jar>                 extracted application jar (java -Djarmode=tools -jar ... extract), required
+//   modes=cold,cds,aot,aot-cds
+//   runs=5                    launches per mode, the report shows the median and best
+//   jvm-args=-Xmx512m,...     extra JVM options for every launch, comma separated
+//   work=<dir>                archives and process logs (default: next to the application directory)
+//   output=<file>             also write the report as JSON
+// All processes use an in-memory MongoDB stand-in running in this JVM.
+public final class StartupBenchmark {
+
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+    private static final List<String> MODES = List.of("cold", "cds", "aot", "aot-cds");
+
+    private final Path app;
+    private final Path work;
+    private final List<String> jvmArgs;
+    private final String mongoUri;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    private StartupBenchmark(Path app, Path work, List<String> jvmArgs, String mongoUri) {
+        this.app = app;
+        this.work = work;
+        this.jvmArgs = jvmArgs;
+        this.mongoUri = mongoUri;
+    }
+
+    // Exits explicitly: netty event loop threads started for the embedded stand-in outlive its shutdown
+    public static void main(String[] args) {
+        int status = 1;
+        try {
+            run(args);
+            status = 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        System.exit(status);
+    }
+
+    private static void run(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        if (!options.containsKey("app")) {
+            throw new IllegalArgumentException("app=<extracted application jar> is required");
+        }
+        Path app = Path.of(options.get("app")).toAbsolutePath();
+        Path work = Path.of(options.getOrDefault("work", app.getParent().resolveSibling("benchmark").toString())).toAbsolutePath();
+        List<String> modes = List.of(options.getOrDefault("modes", String.join(",", MODES)).split(","));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        List<String> jvmArgs = options.getOrDefault("jvm-args", "").isBlank()
+                ? List.of()
+                : List.of(options.get("jvm-args").split(","));
+        for (String mode : modes) {
+            if (!MODES.contains(mode)) {
+                throw new IllegalArgumentException("Unknown mode " + mode + ", expected one of " + MODES);
+            }
+        }
+        Files.createDirectories(work);
+
+        MongoServer mongoServer = embeddedMongo();
+        try {
+            StartupBenchmark benchmark = new StartupBenchmark(app, work, jvmArgs, mongoServer.getConnectionString());
+            for (String mode : modes) {
+                if (mode.endsWith("cds")) {
+                    benchmark.train(mode);
+                }
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            System.out.printf("%n%-8s %6s %14s %14s %12s%n", "MODE", "RUNS", "FIRST p50 ms", "FIRST min ms", "RSS p50 MB");
+            for (String mode : modes) {
+                long[] firstRequestMillis = new long[runs];
+                long[] rssKb = new long[runs];
+                for (int run = 0; run < runs; run++) {
+                    Launch launch = benchmark.launch(mode, List.of(), mode + "-" + run);
+                    try {
+                        firstRequestMillis[run] = launch.awaitFirstRequest();
+                        rssKb[run] = launch.residentKb();
+                    } finally {
+                        launch.stop();
+                    }
+                }
+                Arrays.sort(firstRequestMillis);
+                Arrays.sort(rssKb);
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("runs", runs);
+                row.put("firstRequestMillisP50", firstRequestMillis[runs / 2]);
+                row.put("firstRequestMillisMin", firstRequestMillis[0]);
+                row.put("firstRequestMillis", firstRequestMillis);
+                row.put("residentMbP50", rssKb[runs / 2] / 1024.0);
+                report.put(mode, row);
+                System.out.printf("%-8s %6d %14d %14d %12.1f%n", mode, runs, firstRequestMillis[runs / 2],
+                        firstRequestMillis[0], rssKb[runs / 2] / 1024.0);
+            }
+            if (options.containsKey("output")) {
+                benchmark.objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(options.get("output")), report);
+            }
+        } finally {
+            mongoServer.shutdownNow();
+        }
+    }
+
+    // Creates the CDS archive of a cds mode from a run that goes through every ProductController endpoint.
+    // The archive is written when the JVM exits, so the process is stopped normally (SIGTERM).
+    private void train(String mode) throws Exception {
+        Path archive = archive(mode);
+        Files.deleteIfExists(archive);
+        System.out.printf("Training %s, archive %s%n", mode, archive);
+        Launch launch = launch(mode.equals("aot-cds") ? "aot" : "cold", List.of("-XX:ArchiveClassesAtExit=" + archive), mode + "-training");
+        try {
+            launch.awaitFirstRequest();
+            exerciseController(launch.baseUrl);
+        } finally {
+            launch.stop();
+        }
+        if (!Files.exists(archive)) {
+            throw new IllegalStateException("Training run did not write " + archive + ", see " + launch.log);
+        }
+    }
+
+    private void exerciseController(String baseUrl) throws IOException, InterruptedException {
+        String sku = "STARTUP-" + System.nanoTime();
+        String product = "{\"name\":\"Startup phone\",\"description\":\"training\",\"skuCode\":\"" + sku + "\",\"price\":199.99}";
+        send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/product"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(product)));
+        send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/product/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[" + product.replace(sku, sku + "-B") + "]")));
+        send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/product/batch"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(product.replace(sku, sku + "-N") + "\n")));
+
+        JsonNode found = objectMapper.readTree(send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/product/sku/" + sku))));
+        for (String path : List.of("/api/product/" + found.path("id").asText(), "/api/product", "/api/product/page?size=10",
+                "/api/product/stream", "/api/product/search?q=phone", "/api/product?minPrice=1&maxPrice=500&sort=price")) {
+            send(HttpRequest.newBuilder(URI.create(baseUrl + path)));
+        }
+    }
+
+    private String send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private Launch launch(String mode, List<String> extraJvmArgs, String name) throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.addAll(extraJvmArgs);
+        if (mode.equals("cds") || mode.equals("aot-cds")) {
+            command.add("-XX:SharedArchiveFile=" + archive(mode));
+        }
+        if (mode.startsWith("aot")) {
+            command.add("-Dspring.aot.enabled=true");
+        }
+        command.addAll(List.of("-jar", app.toString(),
+                "--server.port=" + port,
+                "--spring.data.mongodb.uri=" + mongoUri,
+                // Same log volume in every mode; the log goes to a file, not a terminal
+                "--logging.level.com.allinone.Product_Service=WARN"));
+
+        Path log = work.resolve(name + ".log");
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        return new Launch(process, System.nanoTime(), "http://localhost:" + port, log);
+    }
+
+    private Path archive(String mode) {
+        return work.resolve(mode + ".jsa");
+    }
+
+    // The stand-in reports 4.0 by default, which the 5.x driver refuses; claim 6.0 (wire version 17)
+    private static MongoServer embeddedMongo() {
+        // Without Spring's logging setup logback logs every connection of the stand-in at INFO
+        ((Logger) LoggerFactory.getLogger("de.bwaldvogel")).setLevel(Level.WARN);
+        MongoServer mongoServer = new MongoServer(new MemoryBackend().version(new MongoVersion() {
+            @Override
+            public List<Integer> getVersionArray() {
+                return List.of(6, 0, 0);
+            }
+
+            @Override
+            public int getWireVersion() {
+                return 17;
+            }
+        }));
+        mongoServer.bind("127.0.0.1", 0);
+        return mongoServer;
+    }
+
+    private final class Launch {
+
+        private final Process process;
+        private final long startNanos;
+        private final String baseUrl;
+        private final Path log;
+
+        private Launch(Process process, long startNanos, String baseUrl, Path log) {
+            this.process = process;
+            this.startNanos = startNanos;
+            this.baseUrl = baseUrl;
+            this.log = log;
+        }
+
+        // Polls until the first 200 and returns the milliseconds since the process was launched
+        long awaitFirstRequest() throws InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/product/page?size=1"))
+                    .timeout(Duration.ofSeconds(5))
+                    .build();
+            long deadline = startNanos + START_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Service exited with " + process.exitValue() + ", see " + log);
+                }
+                try {
+                    if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    }
+                } catch (ConnectException | HttpTimeoutException e) {
+                    // Not listening yet
+                } catch (IOException e) {
+                    // Connection dropped while the server is coming up
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("No successful request within " + START_TIMEOUT + ", see " + log);
+        }
+
+        // VmRSS from /proc (Linux only), -1 elsewhere
+        long residentKb() {
+            Path status = Path.of("/proc", String.valueOf(process.pid()), "status");
+            try {
+                if (!Files.exists(status)) {
+                    return -1;
+                }
+                return Files.readAllLines(status).stream()
+                        .filter(line -> line.startsWith("VmRSS:"))
+                        .map(line -> line.replaceAll("\\D", ""))
+                        .mapToLong(Long::parseLong)
+                        .findFirst()
+                        .orElse(-1);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void stop() throws InterruptedException {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
@@ -4,28 +4,77 @@ package com.allinone.Product_Service;
 
 // These lines are like bringing in tools you'll use
 import com.allinone.Product_Service.dto.ProductRequest;
+import com.allinone.Product_Service.dto.ProductResponse;
 import com.allinone.Product_Service.repository.ProductRepository;
+import com.allinone.Product_Service.dto.ProductExportManifest;
+import com.allinone.Product_Service.dto.ProductExportStatus;
+import com.allinone.Product_Service.dto.ProductImportStatus;
+import com.allinone.Product_Service.service.ProductExportJob;
+import com.allinone.Product_Service.service.ProductImportJob;
+import com.allinone.Product_Service.service.ProductPriceMigration;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import com.allinone.Product_Service.dto.BatchCreateResponse;
+import com.allinone.Product_Service.dto.ProductChangesResponse;
+import com.allinone.Product_Service.dto.ProductPageResponse;
+import com.allinone.Product_Service.dto.ProductProtobuf;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.model.ProductTombstone;
 import org.junit.jupiter.api.Assertions; // To check if something is true or correct
+import org.junit.jupiter.api.BeforeEach; // Runs before every test
 import org.junit.jupiter.api.Test; // To say "this is a test"
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired; // Helps Spring automatically give you objects
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc; // Lets us test web APIs without starting a real server
 import org.springframework.boot.test.context.SpringBootTest; // Starts the full Spring Boot app during test
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.MediaType; // Tells what kind of content we're sending (e.g., JSON)
 import org.springframework.test.context.DynamicPropertyRegistry; // Allows changing Spring properties (like DB connection) during test
 import org.springframework.test.context.DynamicPropertySource; // Helps us provide those dynamic properties
 import org.springframework.test.web.servlet.MockMvc; // A magic tool to send fake HTTP requests to our API
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders; // Helps build those fake HTTP requests
 import org.testcontainers.containers.MongoDBContainer; // Lets us spin up a real MongoDB in a Docker container
 import org.testcontainers.junit.jupiter.Container; // Marks a Testcontainer as special
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.math.BigDecimal; // Used for money values
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status; // Used to check response status (like 200, 201, etc.)
 
 // This tells Spring to load the full app for testing
 @SpringBootTest
 @AutoConfigureMockMvc // This sets up MockMvc for sending fake HTTP requests
+@AutoConfigureObservability(tracing = false) // 26) keep the Prometheus registry, tests turn metrics export off by default
 class ProductServiceApplicationTests {
 
 	// This starts a real MongoDB server inside a Docker container
@@ -42,6 +91,21 @@ class ProductServiceApplicationTests {
 	@Autowired
 	private ProductRepository productRepository; // Allows us to talk to the database
 
+	@Autowired
+	private MongoTemplate mongoTemplate; // Lower-level access, used to explain queries
+
+	@Autowired
+	private ProductPriceMigration productPriceMigration;
+
+	@Autowired
+	private ProductImportJob productImportJob;
+
+	@Autowired
+	private ProductExportJob productExportJob;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
 	// This code runs when the test starts. It starts the MongoDB container.
 	static {
 		mongoDBContainer.start();
@@ -51,6 +115,24 @@ class ProductServiceApplicationTests {
 	@DynamicPropertySource
 	static void setProperties(DynamicPropertyRegistry registry) {
 		registry.add("spring.data.mongodb.uri", mongoDBContainer::getReplicaSetUrl);
+		// 31) tests read their own writes right away, no need to wait for changes to settle
+		registry.add("product.changes.settle-time", () -> "0s");
+		// 18) every snapshot request past max-age: checks for changes instead of trusting the snapshot
+		registry.add("product.snapshot.max-age", () -> "0s");
+		// 32) the change stream feeds /api/product/events (the container is a replica set)
+		registry.add("product.change-stream.enabled", () -> "true");
+		// 35) several chunks even for a small import file
+		registry.add("product.import.chunk-size", () -> "64B");
+		// 36) several partitions even for a small catalog
+		registry.add("product.export.directory", () -> "target/export-test");
+		registry.add("product.export.partitions", () -> "4");
+		registry.add("product.export.batch-size", () -> "7");
+	}
+
+	// Every test starts from an empty product collection
+	@BeforeEach
+	void cleanUp() {
+		productRepository.deleteAll();
 	}
 
 	// This is our test method: It checks if creating a product works
@@ -72,6 +154,551 @@ class ProductServiceApplicationTests {
 		Assertions.assertEquals(1, productRepository.findAll().size());
 	}
 
+	// 13) Walks all pages with the cursor and checks every product is returned exactly once
+	@Test
+	void shouldPageThroughProductsWithCursor() throws Exception {
+		productRepository.saveAll(IntStream.range(0, 7)
+				.mapToObj(i -> Product.builder().name("Product " + i).price(BigDecimal.valueOf(i)).build())
+				.toList());
+
+		Set<String> seenIds = new HashSet<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			var request = MockMvcRequestBuilders.get("/api/product/page").param("size", "3");
+			if (cursor != null) {
+				request.param("cursor", cursor);
+			}
+			String body = mockMvc.perform(request)
+					.andExpect(status().isOk())
+					.andReturn().getResponse().getContentAsString();
+			ProductPageResponse page = objectMapper.readValue(body, ProductPageResponse.class);
+			page.getItems().forEach(item -> Assertions.assertTrue(seenIds.add(item.getId())));
+			cursor = page.getNextCursor();
+			pages++;
+		} while (cursor != null);
+
+		Assertions.assertEquals(7, seenIds.size());
+		Assertions.assertEquals(3, pages);
+	}
+
+	// 14) Streams the catalog as NDJSON: one JSON document per line
+	@Test
+	void shouldStreamProductsAsNdjson() throws Exception {
+		productRepository.saveAll(IntStream.range(0, 5)
+				.mapToObj(i -> Product.builder().name("Product " + i).price(BigDecimal.valueOf(i)).build())
+				.toList());
+
+		MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/product/stream"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		String body = mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+
+		List<String> lines = body.lines().toList();
+		Assertions.assertEquals(5, lines.size());
+		for (String line : lines) {
+			Assertions.assertNotNull(objectMapper.readValue(line, ProductResponse.class).getId());
+		}
+	}
+
+	// 21) The raw BSON read path must produce exactly what mapping the entity would
+	@Test
+	void shouldWriteSameJsonFromRawBson() throws Exception {
+		Product product = productRepository.save(Product.builder()
+				.name("\"Quoted\" Größe ✓")
+				.skuCode("SKU-1")
+				.price(new BigDecimal("1299.90"))
+				.build());
+
+		MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/product/stream"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		String body = mockMvc.perform(asyncDispatch(result))
+				.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+		ProductResponse expected = ProductResponse.builder()
+				.id(product.getId())
+				.name(product.getName())
+				.skuCode(product.getSkuCode())
+				.price(product.getPrice())
+				.build();
+		Assertions.assertEquals(expected, objectMapper.readValue(body.trim(), ProductResponse.class));
+	}
+
+	// 15) Batch create from a JSON array and from an NDJSON body
+	@Test
+	void shouldCreateProductsInBatch() throws Exception {
+		String jsonArray = objectMapper.writeValueAsString(List.of(getProductRequest(), getProductRequest(), getProductRequest()));
+		String arrayResponse = mockMvc.perform(MockMvcRequestBuilders.post("/api/product/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(jsonArray))
+				.andExpect(status().isCreated())
+				.andReturn().getResponse().getContentAsString();
+		Assertions.assertEquals(3, objectMapper.readValue(arrayResponse, BatchCreateResponse.class).getIds().size());
+
+		String ndjson = objectMapper.writeValueAsString(getProductRequest()) + "\n"
+				+ objectMapper.writeValueAsString(getProductRequest()) + "\n";
+		mockMvc.perform(MockMvcRequestBuilders.post("/api/product/batch")
+						.contentType(MediaType.APPLICATION_NDJSON)
+						.content(ndjson))
+				.andExpect(status().isCreated());
+
+		Assertions.assertEquals(5, productRepository.count());
+	}
+
+	// 34) A price Decimal128 can't hold fails only its own item, the rest of the chunk is inserted; single
+	// writes answer 400 for it and for any other price that isn't money (negative, too many decimals, too large)
+	@Test
+	void shouldRejectUnstorablePricePerBatchItem() throws Exception {
+		ProductRequest unstorable = getProductRequest();
+		unstorable.setPrice(new BigDecimal("1E+7000"));
+		String body = mockMvc.perform(MockMvcRequestBuilders.post("/api/product/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(List.of(getProductRequest(), unstorable, getProductRequest()))))
+				.andExpect(status().isMultiStatus())
+				.andReturn().getResponse().getContentAsString();
+		BatchCreateResponse response = objectMapper.readValue(body, BatchCreateResponse.class);
+		Assertions.assertNull(response.getIds().get(1));
+		Assertions.assertEquals(List.of(1), response.getErrors().stream().map(BatchCreateResponse.ItemError::getIndex).toList());
+		Assertions.assertEquals(2, productRepository.count());
+
+		String id = response.getIds().getFirst();
+		for (String price : List.of("1E+7000", "1e400", "-1", "9.999")) {
+			unstorable.setPrice(new BigDecimal(price));
+			String json = objectMapper.writeValueAsString(unstorable);
+			mockMvc.perform(MockMvcRequestBuilders.post("/api/product")
+							.contentType(MediaType.APPLICATION_JSON)
+							.content(json))
+					.andExpect(status().isBadRequest());
+			mockMvc.perform(MockMvcRequestBuilders.put("/api/product/" + id)
+							.contentType(MediaType.APPLICATION_JSON)
+							.content(json))
+					.andExpect(status().isBadRequest());
+		}
+		Assertions.assertEquals(2, productRepository.count());
+	}
+
+	// 18) GET /api/product answers 304 while the catalog is unchanged and a new body after a create
+	@Test
+	void shouldServeCatalogSnapshotWithEtag() throws Exception {
+		String productRequestString = objectMapper.writeValueAsString(getProductRequest());
+		mockMvc.perform(MockMvcRequestBuilders.post("/api/product")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(productRequestString))
+				.andExpect(status().isCreated());
+
+		String etag = mockMvc.perform(MockMvcRequestBuilders.get("/api/product"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+		Assertions.assertNotNull(etag);
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/api/product").header("If-None-Match", etag))
+				.andExpect(status().isNotModified());
+
+		mockMvc.perform(MockMvcRequestBuilders.post("/api/product")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(productRequestString))
+				.andExpect(status().isCreated());
+
+		String body = mockMvc.perform(MockMvcRequestBuilders.get("/api/product").header("If-None-Match", etag))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		Assertions.assertEquals(2, objectMapper.readValue(body, ProductResponse[].class).length);
+	}
+
+	// 18) Past max-age the snapshot is only rebuilt if something changed, also by a write nobody announced
+	@Test
+	void shouldRebuildSnapshotPastMaxAgeOnlyAfterChanges() throws Exception {
+		createProduct(ProductRequest.builder().name("Pixel 8").skuCode("PIX-8").price(BigDecimal.TEN).build());
+		mockMvc.perform(MockMvcRequestBuilders.get("/api/product")).andExpect(status().isOk());
+		long builds = meterRegistry.get("product.snapshot.build").timer().count();
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/api/product")).andExpect(status().isOk());
+		Assertions.assertEquals(builds, meterRegistry.get("product.snapshot.build").timer().count());
+
+		// Straight to the repository: no ProductChangedEvent
+		productRepository.save(Product.builder().name("Pixel 9").skuCode("PIX-9").price(BigDecimal.ONE)
+				.version(productRepository.reserveVersions(1)).lastModified(Instant.now()).build());
+		String body = mockMvc.perform(MockMvcRequestBuilders.get("/api/product"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		Assertions.assertEquals(2, objectMapper.readValue(body, ProductResponse[].class).length);
+	}
+
+	// 22) Lookups by id and SKU, 404 for unknown ones, 409 for a duplicate SKU
+	@Test
+	void shouldFindProductByIdAndSkuCode() throws Exception {
+		Product product = productRepository.save(Product.builder().name("Pixel 8").skuCode("PIX-8").price(BigDecimal.TEN).build());
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/api/product/" + product.getId()))
+				.andExpect(status().isOk());
+		String body = mockMvc.perform(MockMvcRequestBuilders.get("/api/product/sku/PIX-8"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		Assertions.assertEquals(product.getId(), objectMapper.readValue(body, ProductResponse.class).getId());
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/api/product/sku/UNKNOWN"))
+				.andExpect(status().isNotFound());
+
+		ProductRequest duplicate = ProductRequest.builder().name("Pixel 8 again").skuCode("PIX-8").price(BigDecimal.ONE).build();
+		mockMvc.perform(MockMvcRequestBuilders.post("/api/product")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(duplicate)))
+				.andExpect(status().isConflict())
+				.andExpect(content().string("Product with this SKU code already exists"));
+	}
+
+	// 22) None of the queries behind the endpoints may fall back to a collection scan
+	@Test
+	void shouldUseIndexesForAllEndpointQueries() {
+		productRepository.save(Product.builder().name("Pixel 8").skuCode("PIX-8").price(BigDecimal.TEN).build());
+		MongoCollection<Document> collection = mongoTemplate.getCollection("product");
+
+		List<Bson> filters = List.of(
+				Filters.eq("_id", new ObjectId()),                 // GET /api/product/{id}
+				Filters.eq("skuCode", "PIX-8"),                     // GET /api/product/sku/{skuCode}
+				Filters.gt("_id", new ObjectId()),                  // GET /api/product/page?cursor=
+				Filters.empty());                                   // /stream and the snapshot, walked in _id order
+		for (Bson filter : filters) {
+			Document explain = collection.find(filter).sort(Sorts.ascending("_id")).explain();
+			String winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+			Assertions.assertFalse(winningPlan.contains("COLLSCAN"), () -> filter + " does a collection scan: " + winningPlan);
+		}
+	}
+
+	// 26) Every layer reports its latency (with histogram buckets) on the Prometheus endpoint
+	@Test
+	void shouldExposeLayerTimersForPrometheus() throws Exception {
+		Product product = productRepository.save(Product.builder().name("Pixel 8").skuCode("PIX-8").price(BigDecimal.TEN).build());
+		mockMvc.perform(MockMvcRequestBuilders.get("/api/product/" + product.getId()))
+				.andExpect(status().isOk());
+
+		String metrics = mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		for (String metric : List.of("http_server_requests_seconds_bucket", "product_controller_seconds_bucket",
+				"product_service_seconds_bucket", "mongodb_driver_commands_seconds_bucket",
+				"mongodb_driver_commands_documents", "mongodb_driver_commands_bytes", "mongodb_driver_pool_wait_seconds",
+				"mongodb_driver_pool_checkedout")) {
+			Assertions.assertTrue(metrics.contains(metric), () -> metric + " missing");
+		}
+		Assertions.assertTrue(metrics.contains("method=\"getProductById\""));
+		// 37) concurrency limits
+		for (String metric : List.of("product_concurrency_limit{limiter=\"read\"", "product_concurrency_in_flight{limiter=\"write\"",
+				"product_concurrency_rejected_total{limiter=\"read\",priority=\"bulk\"")) {
+			Assertions.assertTrue(metrics.contains(metric), () -> metric + " missing");
+		}
+	}
+
+	// 29) Readiness turns UP once MongoCheck has warmed the pool in the background
+	@Test
+	void shouldReportReadyAfterWarmUp() throws Exception {
+		String body = null;
+		for (int attempt = 0; attempt < 100 && body == null; attempt++) {
+			MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/actuator/health/readiness")).andReturn();
+			if (result.getResponse().getStatus() == 200) {
+				body = result.getResponse().getContentAsString();
+			} else {
+				Thread.sleep(200);
+			}
+		}
+		Assertions.assertNotNull(body, "not ready after 20s");
+		// Other tests may have opened more by now
+		Assertions.assertTrue(objectMapper.readTree(body).at("/components/mongoCheck/details/pooledConnections").asInt() >= 10, body);
+
+		String metrics = mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		Assertions.assertTrue(metrics.contains("product_startup_mongo_ready_seconds"));
+		Assertions.assertTrue(metrics.contains("product_startup_first_request_seconds"));
+	}
+
+	// 31) Create, update and delete show up in the changes feed; the next token only returns what came after
+	@Test
+	void shouldReturnChangesSinceToken() throws Exception {
+		mongoTemplate.remove(new Query(), ProductTombstone.class);
+		String first = createProduct(ProductRequest.builder().name("Pixel 8").skuCode("PIX-8").price(BigDecimal.TEN).build());
+		String second = createProduct(ProductRequest.builder().name("Pixel 9").skuCode("PIX-9").price(BigDecimal.ONE).build());
+
+		ProductRequest update = ProductRequest.builder().name("Pixel 8 Pro").skuCode("PIX-8").price(BigDecimal.TWO).build();
+		mockMvc.perform(MockMvcRequestBuilders.put("/api/product/" + first)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(update)))
+				.andExpect(status().isOk());
+		mockMvc.perform(MockMvcRequestBuilders.delete("/api/product/" + second))
+				.andExpect(status().isNoContent());
+		mockMvc.perform(MockMvcRequestBuilders.delete("/api/product/" + second))
+				.andExpect(status().isNotFound());
+		// An update of a deleted product doesn't recreate it
+		mockMvc.perform(MockMvcRequestBuilders.put("/api/product/" + second)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(update)))
+				.andExpect(status().isNotFound());
+		Assertions.assertTrue(productRepository.findById(second).isEmpty());
+		Assertions.assertEquals(new Decimal128(BigDecimal.TWO),
+				mongoTemplate.getCollection("product").find(Filters.eq("_id", new ObjectId(first))).first().get("price"));
+
+		// Each product once, with its latest state, in version order
+		ProductChangesResponse changes = getChanges("");
+		Assertions.assertEquals(2, changes.getChanges().size());
+		Assertions.assertFalse(changes.isHasMore());
+		ProductChangesResponse.Change updated = changes.getChanges().get(0);
+		ProductChangesResponse.Change deleted = changes.getChanges().get(1);
+		Assertions.assertEquals(ProductChangesResponse.Change.Type.UPSERT, updated.getType());
+		Assertions.assertEquals("Pixel 8 Pro", updated.getProduct().getName());
+		Assertions.assertEquals(ProductChangesResponse.Change.Type.DELETE, deleted.getType());
+		Assertions.assertEquals(second, deleted.getId());
+		Assertions.assertTrue(updated.getVersion() < deleted.getVersion());
+
+		Assertions.assertTrue(getChanges("?since=" + changes.getNextToken()).getChanges().isEmpty());
+		String third = createProduct(ProductRequest.builder().name("Pixel 10").skuCode("PIX-10").price(BigDecimal.ONE).build());
+		ProductChangesResponse next = getChanges("?since=" + changes.getNextToken());
+		Assertions.assertEquals(1, next.getChanges().size());
+		Assertions.assertEquals(third, next.getChanges().get(0).getId());
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/api/product/changes?since=not-a-token"))
+				.andExpect(status().isBadRequest());
+	}
+
+	// 32) Changes are pushed to /events subscribers; a reconnect with Last-Event-ID gets what came after that event
+	@Test
+	void shouldPushChangesAsServerSentEvents() throws Exception {
+		MvcResult live = mockMvc.perform(MockMvcRequestBuilders.get("/api/product/events"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		// The shared cursor is opened in the background at startup, write until it reports something
+		boolean watching = false;
+		for (int attempt = 0; attempt < 20 && !watching; attempt++) {
+			createProduct(ProductRequest.builder().name("Warm-up").skuCode("SSE-WARM-" + attempt).price(BigDecimal.ONE).build());
+			watching = awaitEvent(live, "SSE-WARM-" + attempt, 1000) != null;
+		}
+		Assertions.assertTrue(watching, "no change events within 20s");
+
+		String first = createProduct(ProductRequest.builder().name("Pixel 8").skuCode("SSE-1").price(BigDecimal.TEN).build());
+		String firstId = awaitEvent(live, "SSE-1", 10_000);
+		Assertions.assertNotNull(firstId, live.getResponse().getContentAsString());
+		createProduct(ProductRequest.builder().name("Pixel 9").skuCode("SSE-2").price(BigDecimal.ONE).build());
+		mockMvc.perform(MockMvcRequestBuilders.delete("/api/product/" + first))
+				.andExpect(status().isNoContent());
+		Assertions.assertNotNull(awaitEvent(live, "\"id\":\"" + first + "\",\"version\":null", 10_000),
+				live.getResponse().getContentAsString());
+
+		MvcResult resumed = mockMvc.perform(MockMvcRequestBuilders.get("/api/product/events").header("Last-Event-ID", firstId))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		Assertions.assertNotNull(awaitEvent(resumed, "SSE-2", 10_000), resumed.getResponse().getContentAsString());
+		Assertions.assertFalse(resumed.getResponse().getContentAsString().contains("SSE-1"));
+	}
+
+	// Waits until an event whose data contains the text has arrived, returns its id (null on timeout)
+	private static String awaitEvent(MvcResult result, String text, long timeoutMillis) throws Exception {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		do {
+			for (String event : result.getResponse().getContentAsString().split("\n\n")) {
+				if (event.contains(text)) {
+					return event.lines().filter(line -> line.startsWith("id:")).map(line -> line.substring(3)).findFirst().orElse("");
+				}
+			}
+			Thread.sleep(50);
+		} while (System.currentTimeMillis() < deadline);
+		return null;
+	}
+
+	// 33) Smile / Protobuf request bodies, Protobuf / CBOR responses, JSON when nothing else is asked for
+	@Test
+	void shouldNegotiateBinaryFormats() throws Exception {
+		ObjectMapper smile = new ObjectMapper(new SmileFactory());
+		ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+		mockMvc.perform(MockMvcRequestBuilders.post("/api/product")
+						.contentType("application/x-jackson-smile")
+						.content(smile.writeValueAsBytes(ProductRequest.builder().name("Pixel 8").skuCode("PIX-8")
+								.price(new BigDecimal("699.99")).build())))
+				.andExpect(status().isCreated());
+
+		ByteArrayOutputStream protobuf = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(protobuf);
+		ProductProtobuf.writeRequests(List.of(
+				ProductRequest.builder().name("Pixel 9").description("6.3 inch").skuCode("PIX-9").price(new BigDecimal("899.00")).build(),
+				ProductRequest.builder().name("Pixel 9a").skuCode("PIX-9A").price(new BigDecimal("0.50")).build()), out);
+		out.flush();
+		mockMvc.perform(MockMvcRequestBuilders.post("/api/product/batch")
+						.contentType(MediaType.APPLICATION_PROTOBUF)
+						.content(protobuf.toByteArray()))
+				.andExpect(status().isCreated());
+
+		byte[] list = mockMvc.perform(MockMvcRequestBuilders.get("/api/product").accept(MediaType.APPLICATION_PROTOBUF))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_PROTOBUF))
+				.andReturn().getResponse().getContentAsByteArray();
+		List<ProductResponse> products = ProductProtobuf.readResponses(CodedInputStream.newInstance(list));
+		Assertions.assertEquals(3, products.size());
+		ProductResponse pixel9 = products.stream().filter(product -> "PIX-9".equals(product.getSkuCode())).findFirst().orElseThrow();
+		Assertions.assertEquals("6.3 inch", pixel9.getDescription());
+		Assertions.assertEquals(new BigDecimal("899.00"), pixel9.getPrice());
+		Assertions.assertEquals(new BigDecimal("0.50"), products.stream()
+				.filter(product -> "PIX-9A".equals(product.getSkuCode())).findFirst().orElseThrow().getPrice());
+
+		byte[] one = mockMvc.perform(MockMvcRequestBuilders.get("/api/product/sku/PIX-8").accept(MediaType.APPLICATION_CBOR))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsByteArray();
+		Assertions.assertEquals(new BigDecimal("699.99"), cbor.readValue(one, ProductResponse.class).getPrice());
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/api/product"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON));
+	}
+
+	// 34) Prices are stored as Decimal128, string prices from before are migrated, price queries compare numbers
+	@Test
+	void shouldStorePricesAsDecimal128AndMigrateOldOnes() throws Exception {
+		MongoCollection<Document> collection = mongoTemplate.getCollection("product");
+		ObjectId legacyId = new ObjectId();
+		collection.insertOne(new Document("_id", legacyId).append("name", "Legacy").append("skuCode", "OLD-1").append("price", "12.50"));
+		String id = createProduct(ProductRequest.builder().name("Pixel 8").skuCode("PIX-8").price(new BigDecimal("699.99")).build());
+		Assertions.assertEquals(new Decimal128(new BigDecimal("699.99")), collection.find(Filters.eq("_id", new ObjectId(id))).first().get("price"));
+
+		Assertions.assertEquals(1, productPriceMigration.migrate());
+		Assertions.assertEquals(new Decimal128(new BigDecimal("12.50")), collection.find(Filters.eq("_id", legacyId)).first().get("price"));
+		Assertions.assertEquals(0, productPriceMigration.migrate());
+
+		// As a string "12.50" > "100"
+		List<Product> expensive = mongoTemplate.find(Query.query(Criteria.where("price").gt(new BigDecimal("100"))), Product.class);
+		Assertions.assertEquals(List.of(id), expensive.stream().map(Product::getId).toList());
+		Assertions.assertEquals(new BigDecimal("12.50"), productRepository.findById(legacyId.toHexString()).orElseThrow().getPrice());
+
+		String body = mockMvc.perform(MockMvcRequestBuilders.get("/api/product"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		Assertions.assertTrue(body.contains("\"price\":12.50") && body.contains("\"price\":699.99"), body);
+	}
+
+	// 35) CSV and NDJSON files are imported in several chunks; a rerun skips finished chunks, and records
+	// written by an interrupted run are recognized by their ids
+	@Test
+	void shouldImportCsvAndNdjsonFilesAndResume(@TempDir Path directory) throws Exception {
+		Path csv = directory.resolve("catalog.csv");
+		Files.writeString(csv, """
+				skuCode,name,price,description
+				IMP-1,Kettle,29.90,Electric kettle
+				IMP-2,"Mug, large",4.50,"The ""big"" one"
+				IMP-3,Teapot,,
+
+				IMP-4,Broken,abc,Not a price
+				IMP-1,Kettle again,30,Duplicate SKU
+				""");
+		ProductImportStatus status = productImportJob.run(csv, null);
+		Assertions.assertEquals(ProductImportStatus.State.COMPLETED, status.getState(), status.getMessage());
+		Assertions.assertTrue(status.getTotalChunks() > 1);
+		Assertions.assertEquals(3, status.getImported());
+		Assertions.assertEquals(2, status.getFailed());
+		Assertions.assertEquals(2, status.getErrors().size());
+		Product mug = productRepository.findBySkuCode("IMP-2").orElseThrow();
+		Assertions.assertEquals("Mug, large", mug.getName());
+		Assertions.assertEquals("The \"big\" one", mug.getDescription());
+		Assertions.assertEquals(new BigDecimal("4.50"), mug.getPrice());
+		Assertions.assertNotNull(mug.getVersion());
+		Assertions.assertNull(productRepository.findBySkuCode("IMP-3").orElseThrow().getPrice());
+
+		// Nothing left to do
+		Assertions.assertEquals(3, productImportJob.run(csv, null).getImported());
+		Assertions.assertEquals(3, productRepository.count());
+
+		Path ndjson = directory.resolve("catalog.ndjson");
+		Files.writeString(ndjson, """
+				{"name":"Spoon","skuCode":"IMP-5","price":1.20}
+				{"name":"Fork","skuCode":"IMP-6","price":1.10}
+				""");
+		Assertions.assertEquals(2, productImportJob.run(ndjson, null).getImported());
+		// As if it had stopped before recording its chunks: they are read again, but their records exist already
+		Path checkpoint = directory.resolve("catalog.ndjson.import-checkpoint.json");
+		ObjectNode saved = (ObjectNode) objectMapper.readTree(checkpoint.toFile());
+		saved.putArray("done");
+		objectMapper.writeValue(checkpoint.toFile(), saved);
+		status = productImportJob.run(ndjson, null);
+		Assertions.assertEquals(2, status.getAlreadyImported());
+		Assertions.assertEquals(0, status.getFailed());
+		Assertions.assertEquals(5, productRepository.count());
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/api/admin/import"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.state").value("COMPLETED"))
+				.andExpect(jsonPath("$.alreadyImported").value(2));
+		mockMvc.perform(MockMvcRequestBuilders.post("/api/admin/import").param("file", "../../etc/passwd"))
+				.andExpect(status().isBadRequest());
+	}
+
+	// 36) Every product ends up in exactly one partition file; resuming rewrites only the incomplete ones
+	@Test
+	void shouldExportPartitionsAndResume() throws Exception {
+		productRepository.saveAll(IntStream.range(0, 50)
+				.mapToObj(i -> Product.builder().name("Product " + i).skuCode("EXP-" + i).price(BigDecimal.valueOf(i)).build())
+				.toList());
+
+		ProductExportStatus status = productExportJob.run(ProductExportJob.Format.NDJSON, null);
+		Assertions.assertEquals(ProductExportStatus.State.COMPLETED, status.getState(), status.getMessage());
+		Assertions.assertEquals(50, status.getDocuments());
+		Path directory = Path.of(status.getDirectory());
+		ProductExportManifest manifest = objectMapper.readValue(directory.resolve("manifest.json").toFile(), ProductExportManifest.class);
+		Assertions.assertNotNull(manifest.getCompletedAt());
+		Assertions.assertTrue(manifest.getPartitions().size() > 1);
+		Assertions.assertEquals(50, manifest.getPartitions().stream().mapToLong(ProductExportManifest.Partition::getDocuments).sum());
+		Set<String> ids = new HashSet<>();
+		for (ProductExportManifest.Partition partition : manifest.getPartitions()) {
+			for (String line : gunzipLines(directory.resolve(partition.getFile()))) {
+				Assertions.assertTrue(ids.add(objectMapper.readTree(line).get("id").asText()));
+			}
+		}
+		Assertions.assertEquals(50, ids.size());
+
+		// As if it had stopped while writing the second partition
+		ProductExportManifest.Partition lost = manifest.getPartitions().get(1);
+		lost.setCompleted(false);
+		manifest.setCompletedAt(null);
+		objectMapper.writeValue(directory.resolve("manifest.json").toFile(), manifest);
+		Files.delete(directory.resolve(lost.getFile()));
+		status = productExportJob.run(null, manifest.getId());
+		Assertions.assertEquals(ProductExportStatus.State.COMPLETED, status.getState(), status.getMessage());
+		Assertions.assertEquals(lost.getDocuments(), status.getDocuments());
+		Assertions.assertEquals(lost.getDocuments(), gunzipLines(directory.resolve(lost.getFile())).size());
+
+		status = productExportJob.run(ProductExportJob.Format.BSON, null);
+		Assertions.assertEquals(ProductExportStatus.State.COMPLETED, status.getState(), status.getMessage());
+		Assertions.assertEquals(50, status.getDocuments());
+		Assertions.assertNotEquals(manifest.getId(), status.getId());
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/api/admin/export"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.state").value("COMPLETED"))
+				.andExpect(jsonPath("$.documents").value(50));
+		mockMvc.perform(MockMvcRequestBuilders.post("/api/admin/export").param("resume", "../etc"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(MockMvcRequestBuilders.post("/api/admin/export").param("format", "parquet"))
+				.andExpect(status().isBadRequest());
+	}
+
+	private static List<String> gunzipLines(Path file) throws Exception {
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+		}
+	}
+
+	private String createProduct(ProductRequest productRequest) throws Exception {
+		mockMvc.perform(MockMvcRequestBuilders.post("/api/product")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(productRequest)))
+				.andExpect(status().isCreated());
+		return productRepository.findBySkuCode(productRequest.getSkuCode()).orElseThrow().getId();
+	}
+
+	private ProductChangesResponse getChanges(String query) throws Exception {
+		String body = mockMvc.perform(MockMvcRequestBuilders.get("/api/product/changes" + query))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return objectMapper.readValue(body, ProductChangesResponse.class);
+	}
+
 	// This helper method returns a sample product to test with
 	private ProductRequest getProductRequest() {
 		return ProductRequest.builder()
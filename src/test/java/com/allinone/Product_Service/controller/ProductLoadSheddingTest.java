@@ -0,0 +1,151 @@
+// 37) Plain unit test for the adaptive limit and the shedding filter, no Spring / MongoDB needed
+
+package com.allinone.Product_Service.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class ProductLoadSheddingTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void shouldGrowWhileLatencyIsFlatAndShrinkWhenItRises() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 100, 2.0, Duration.ZERO);
+		runAtCapacity(limit, 200, TimeUnit.MILLISECONDS.toNanos(1));
+		int grown = limit.getLimit();
+		Assertions.assertTrue(grown > 50, "limit " + grown);
+
+		runAtCapacity(limit, 50, TimeUnit.MILLISECONDS.toNanos(10));
+		Assertions.assertTrue(limit.getLimit() < grown / 4, "limit " + limit.getLimit());
+	}
+
+	@Test
+	void shouldBackOffOnFailuresAndNotGrowWhenIdle() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(50, 2, 100, 2.0, Duration.ZERO);
+		for (int i = 0; i < 200; i++) {
+			Assertions.assertTrue(limit.tryAcquire(1));
+			limit.release(TimeUnit.MILLISECONDS.toNanos(1), false);
+		}
+		// One request at a time never uses half of the limit
+		Assertions.assertEquals(50, limit.getLimit());
+
+		Assertions.assertTrue(limit.tryAcquire(1));
+		limit.release(TimeUnit.MILLISECONDS.toNanos(1), true);
+		Assertions.assertEquals(45, limit.getLimit());
+		Assertions.assertEquals(0, limit.getInFlight());
+	}
+
+	@Test
+	void shouldAnswer503WithRetryAfterOverTheLimit() throws Exception {
+		OncePerRequestFilter filter = loadShedding(2, 1).loadSheddingFilter();
+
+		// The second create arrives while the first one is still running
+		MockHttpServletResponse nested = new MockHttpServletResponse();
+		MockHttpServletResponse outer = perform(filter, "POST", "/api/product",
+				(request, response) -> perform(filter, "POST", "/api/product", nested));
+		Assertions.assertEquals(200, outer.getStatus());
+		Assertions.assertEquals(503, nested.getStatus());
+		Assertions.assertEquals("1", nested.getHeader("Retry-After"));
+		Assertions.assertEquals(1.0, meterRegistry.get("product.concurrency.rejected").tag("priority", "write").counter().count());
+		Assertions.assertEquals(0.0, meterRegistry.get("product.concurrency.in.flight").tag("limiter", "write").gauge().value());
+
+		// Other limits, and endpoints that aren't limited, still get through
+		MockHttpServletResponse read = new MockHttpServletResponse();
+		MockHttpServletResponse events = new MockHttpServletResponse();
+		perform(filter, "POST", "/api/product", (request, response) -> {
+			perform(filter, "GET", "/api/product/42", read);
+			perform(filter, "GET", "/api/product/events", events);
+		});
+		Assertions.assertEquals(200, read.getStatus());
+		Assertions.assertEquals(200, events.getStatus());
+	}
+
+	@Test
+	void shouldShedBulkListingsBeforeWritesAndPointReads() throws Exception {
+		OncePerRequestFilter filter = loadShedding(4, 1).loadSheddingFilter();
+
+		// Bulk listings get half of the read limit
+		MockHttpServletResponse secondBulk = new MockHttpServletResponse();
+		MockHttpServletResponse pointRead = new MockHttpServletResponse();
+		perform(filter, "GET", "/api/product/page", (request, response) -> perform(filter, "GET", "/api/product", (r2, s2) -> {
+			perform(filter, "GET", "/api/product/stream", secondBulk);
+			perform(filter, "GET", "/api/product/sku/SKU-1", pointRead);
+		}));
+		Assertions.assertEquals(503, secondBulk.getStatus());
+		Assertions.assertEquals(200, pointRead.getStatus());
+
+		// None while writes are at their limit
+		MockHttpServletResponse bulk = new MockHttpServletResponse();
+		perform(filter, "DELETE", "/api/product/42", (request, response) -> perform(filter, "GET", "/api/product", bulk));
+		Assertions.assertEquals(503, bulk.getStatus());
+		Assertions.assertEquals(2.0, meterRegistry.get("product.concurrency.rejected").tag("priority", "bulk").counter().count());
+	}
+
+	@Test
+	void shouldNotSampleBulkWrites() {
+		Assertions.assertEquals(ProductLoadShedding.Priority.BULK_WRITE, ProductLoadShedding.classify("POST", "/api/product/batch"));
+		Assertions.assertEquals(ProductLoadShedding.Priority.WRITE, ProductLoadShedding.classify("POST", "/api/product"));
+		Assertions.assertEquals(ProductLoadShedding.Priority.BULK, ProductLoadShedding.classify("GET", "/api/product/page"));
+
+		// Batches take write slots, but their durations don't move the write limit; single writes do
+		ProductLoadShedding loadShedding = new ProductLoadShedding(meterRegistry, 4, 1, 4, 50, 1, 100,
+				2.0, Duration.ZERO, 0.5, Duration.ofSeconds(1));
+		Assertions.assertEquals(50, writeLimitAfterAll(loadShedding, ProductLoadShedding.Priority.BULK_WRITE));
+		Assertions.assertTrue(writeLimitAfterAll(loadShedding, ProductLoadShedding.Priority.WRITE) > 50);
+	}
+
+	// Takes every write slot with this priority, then completes them all
+	private double writeLimitAfterAll(ProductLoadShedding loadShedding, ProductLoadShedding.Priority priority) {
+		List<ProductLoadShedding.Permit> permits = new ArrayList<>();
+		for (ProductLoadShedding.Permit permit = loadShedding.acquire(priority); permit != null; permit = loadShedding.acquire(priority)) {
+			permits.add(permit);
+		}
+		permits.forEach(permit -> permit.completed(false));
+		return meterRegistry.get("product.concurrency.limit").tag("limiter", "write").gauge().value();
+	}
+
+	// Fills every free slot and releases one of them with the given latency, count times, so each window
+	// runs at the limit; leaves nothing in flight
+	private static void runAtCapacity(AdaptiveConcurrencyLimit limit, int count, long latencyNanos) {
+		for (int i = 0; i < count; i++) {
+			while (limit.tryAcquire(1)) {
+				// take them all
+			}
+			limit.release(latencyNanos, false);
+		}
+		while (limit.getInFlight() > 0) {
+			limit.release(-1, false);
+		}
+	}
+
+	private ProductLoadShedding loadShedding(int readLimit, int writeLimit) {
+		return new ProductLoadShedding(meterRegistry, readLimit, 1, readLimit, writeLimit, 1, writeLimit,
+				2.0, Duration.ofSeconds(10), 0.5, Duration.ofSeconds(1));
+	}
+
+	private static MockHttpServletResponse perform(OncePerRequestFilter filter, String method, String path,
+												   FilterChain chain) throws IOException, ServletException {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest(method, path), response, chain);
+		return response;
+	}
+
+	private static void perform(OncePerRequestFilter filter, String method, String path,
+								MockHttpServletResponse response) throws IOException, ServletException {
+		filter.doFilter(new MockHttpServletRequest(method, path), response, (request, ignored) -> {
+		});
+	}
+}
@@ -0,0 +1,267 @@
+// 28) Plain unit test for the memory-mapped product log, no Spring / MongoDB needed
+
+package com.allinone.Product_Service.repository.mapped;
+
+import com.allinone.Product_Service.model.Product;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+class MappedProductStoreTest {
+
+	// Small segments so the tests cross segment boundaries
+	private static final int SEGMENT = 4096;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void shouldSaveFindAndDeleteProducts() throws Exception {
+		try (MappedProductStore store = open(0.5)) {
+			Product phone = store.save(product(null, "phone-1", "10.50"));
+			Assertions.assertNotNull(phone.getId());
+
+			Assertions.assertEquals(phone, store.findById(phone.getId()));
+			Assertions.assertEquals(phone, store.findBySkuCode("phone-1"));
+
+			phone.setPrice(new BigDecimal("9.99"));
+			store.save(phone);
+			Assertions.assertEquals(new BigDecimal("9.99"), store.findById(phone.getId()).getPrice());
+			Assertions.assertEquals(1, store.count());
+
+			Assertions.assertTrue(store.deleteById(phone.getId()));
+			Assertions.assertNull(store.findById(phone.getId()));
+			Assertions.assertNull(store.findBySkuCode("phone-1"));
+			Assertions.assertFalse(store.deleteById(phone.getId()));
+			Assertions.assertEquals(0, store.count());
+
+			// replace never brings a deleted product back
+			Assertions.assertFalse(store.replace(phone));
+			Assertions.assertNull(store.findById(phone.getId()));
+		}
+	}
+
+	@Test
+	void shouldRejectSkuOfAnotherProduct() throws Exception {
+		try (MappedProductStore store = open(0.5)) {
+			Product first = store.save(product(null, "sku-1", "1"));
+			Assertions.assertThrows(DuplicateKeyException.class, () -> store.save(product(null, "sku-1", "2")));
+			Assertions.assertThrows(DuplicateKeyException.class, () -> store.insert(product(first.getId(), "sku-2", "2")));
+
+			// Changing the SKU frees the old one
+			first.setSkuCode("sku-3");
+			store.save(first);
+			store.save(product(null, "sku-1", "2"));
+			Assertions.assertEquals(first, store.findBySkuCode("sku-3"));
+			Assertions.assertEquals(2, store.count());
+		}
+	}
+
+	@Test
+	void shouldPageAndStreamInIdOrder() throws Exception {
+		try (MappedProductStore store = open(0.5)) {
+			List<String> ids = Stream.generate(() -> new ObjectId().toHexString()).limit(200).sorted().toList();
+			// Out of order inserts shift the index entries
+			for (int i = ids.size() - 1; i >= 0; i--) {
+				store.save(product(ids.get(i), "sku-" + i, String.valueOf(i)));
+			}
+
+			Assertions.assertEquals(ids.subList(0, 10), ids(store.findAfter(null, 10)));
+			Assertions.assertEquals(ids.subList(51, 61), ids(store.findAfter(ids.get(50), 10)));
+			Assertions.assertEquals(List.of(), store.findAfter(ids.get(199), 10));
+			try (Stream<Product> products = store.streamAll(7)) {
+				Assertions.assertEquals(ids, ids(products.toList()));
+			}
+			try (Stream<?> documents = store.streamAllRaw(64)) {
+				Assertions.assertEquals(200, documents.count());
+			}
+		}
+	}
+
+	@Test
+	void shouldRecoverProductsAfterReopen() throws Exception {
+		Product kept;
+		try (MappedProductStore store = open(1)) {
+			for (int i = 0; i < 100; i++) {
+				store.save(product(null, "sku-" + i, String.valueOf(i)));
+			}
+			kept = store.findBySkuCode("sku-42");
+			store.deleteById(store.findBySkuCode("sku-7").getId());
+		}
+		try (MappedProductStore store = open(1)) {
+			Assertions.assertEquals(99, store.count());
+			Assertions.assertEquals(kept, store.findById(kept.getId()));
+			Assertions.assertNull(store.findBySkuCode("sku-7"));
+		}
+	}
+
+	@Test
+	void shouldDropTornWriteOnRecovery() throws Exception {
+		Product first;
+		long end;
+		try (MappedProductStore store = open(1)) {
+			first = store.save(product(null, "sku-1", "1"));
+			end = store.fileBytes();
+			store.save(product(null, "sku-2", "2"));
+		}
+		// Damage the last record's payload, as if the crash hit in the middle of writing it
+		try (RandomAccessFile file = new RandomAccessFile(dir.resolve("products.log").toFile(), "rw")) {
+			file.seek(end + 20);
+			file.write(file.read() ^ 0xff);
+		}
+
+		try (MappedProductStore store = open(1)) {
+			Assertions.assertEquals(1, store.count());
+			Assertions.assertEquals(first, store.findById(first.getId()));
+			Assertions.assertNull(store.findBySkuCode("sku-2"));
+			Assertions.assertEquals(end, store.fileBytes());
+			store.save(product(null, "sku-3", "3"));
+		}
+		try (MappedProductStore store = open(1)) {
+			Assertions.assertEquals(2, store.count());
+			Assertions.assertNotNull(store.findBySkuCode("sku-3"));
+		}
+	}
+
+	@Test
+	void shouldCompactSupersededRecords() throws Exception {
+		List<Product> products;
+		try (MappedProductStore store = open(0.5)) {
+			for (int i = 0; i < 20; i++) {
+				store.save(product(null, "sku-" + i, "1"));
+			}
+			products = store.findAfter(null, 20);
+			// Each round supersedes every record; without compaction the log would grow to ~50 segments
+			for (int round = 0; round < 200; round++) {
+				for (Product product : products) {
+					product.setPrice(BigDecimal.valueOf(round));
+					store.save(product);
+				}
+			}
+			// Compaction runs in the background; wait until it has caught up with the writes
+			for (int i = 0; i < 500 && store.isCompacting(); i++) {
+				Thread.sleep(10);
+			}
+			Assertions.assertTrue(store.fileBytes() < 3L * SEGMENT, "log was not compacted: " + store.fileBytes());
+			Assertions.assertEquals(products, store.findAfter(null, 20));
+		}
+		try (MappedProductStore store = open(0.5)) {
+			Assertions.assertEquals(products, store.findAfter(null, 20));
+			Assertions.assertEquals(products.get(3), store.findBySkuCode("sku-3"));
+		}
+	}
+
+	@Test
+	void shouldKeepWritesMadeWhileCompacting() throws Exception {
+		Map<String, Product> expected = new TreeMap<>();
+		try (MappedProductStore store = open(1)) {
+			for (int i = 0; i < 3000; i++) {
+				Product product = store.save(product(null, "sku-" + i, "1"));
+				expected.put(product.getId(), product);
+			}
+			CompletableFuture<Void> compactions = CompletableFuture.runAsync(() -> {
+				for (int i = 0; i < 5; i++) {
+					store.compact();
+				}
+			});
+			// Updates, deletes and SKU changes, spread over the whole id range while the copies run
+			List<Product> products = new ArrayList<>(expected.values());
+			for (int round = 0; !compactions.isDone() || round < 3; round++) {
+				for (int i = round % 7; i < products.size(); i += 7) {
+					Product product = products.get(i);
+					if (!expected.containsKey(product.getId())) {
+						continue;
+					}
+					if (i % 5 == 0) {
+						store.deleteById(product.getId());
+						expected.remove(product.getId());
+					} else {
+						product.setPrice(BigDecimal.valueOf(round));
+						product.setSkuCode(i % 3 == 0 ? "moved-" + i + "-" + round : product.getSkuCode());
+						store.save(product);
+					}
+				}
+			}
+			compactions.get();
+			Assertions.assertEquals(List.copyOf(expected.values()), store.findAfter(null, 5000));
+		}
+		try (MappedProductStore store = open(1)) {
+			Assertions.assertEquals(List.copyOf(expected.values()), store.findAfter(null, 5000));
+			for (Product product : expected.values()) {
+				Assertions.assertEquals(product, store.findBySkuCode(product.getSkuCode()));
+			}
+		}
+	}
+
+	// 31) Products by current version and tombstones, also after a compaction and a reopen
+	@Test
+	void shouldFindChangesByVersion() throws Exception {
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		Product updated;
+		try (MappedProductStore store = open(0.5)) {
+			long version = 0;
+			for (int i = 0; i < 20; i++) {
+				Product product = product(null, "sku-" + i, "1");
+				product.setVersion(++version);
+				product.setLastModified(now);
+				store.save(product);
+			}
+			updated = store.findBySkuCode("sku-3");
+			updated.setVersion(++version);
+			store.save(updated);
+			Assertions.assertTrue(store.deleteById(store.findBySkuCode("sku-5").getId(), ++version, now));
+			Assertions.assertFalse(store.assignVersion(updated.getId(), 99, now));
+
+			// sku-3 and sku-5 no longer hold versions 4 and 6
+			Assertions.assertEquals(List.of(3L, 5L, 7L), versions(store.findChangedAfter(2, 3)));
+			Assertions.assertEquals(updated, store.findChangedAfter(20, 10).get(0));
+			Assertions.assertEquals(1, store.findTombstonesAfter(0, 10).size());
+			Assertions.assertEquals(22, store.findTombstonesAfter(0, 10).get(0).getVersion());
+			Assertions.assertEquals(List.of(), store.findTombstonesAfter(22, 10));
+			store.compact();
+			Assertions.assertEquals(22, store.maxVersion());
+		}
+		try (MappedProductStore store = open(0.5)) {
+			Assertions.assertEquals(22, store.maxVersion());
+			Assertions.assertEquals(19, store.findChangedAfter(0, 100).size());
+			Assertions.assertEquals(updated, store.findChangedAfter(20, 10).get(0));
+			Assertions.assertEquals(now, store.findTombstonesAfter(0, 10).get(0).getDeletedAt());
+		}
+	}
+
+	private MappedProductStore open(double compactRatio) throws Exception {
+		return new MappedProductStore(dir.resolve("products.log"), SEGMENT, false, compactRatio);
+	}
+
+	private static Product product(String id, String skuCode, String price) {
+		return Product.builder()
+				.id(id)
+				.name("Product " + skuCode)
+				.description("Description of " + skuCode)
+				.skuCode(skuCode)
+				.price(new BigDecimal(price))
+				.build();
+	}
+
+	private static List<String> ids(List<Product> products) {
+		return products.stream().map(Product::getId).toList();
+	}
+
+	private static List<Long> versions(List<Product> products) {
+		return products.stream().map(Product::getVersion).toList();
+	}
+}
@@ -0,0 +1,78 @@
+// 34) Plain unit test: the price written from raw BSON must be the JSON Jackson writes for the BigDecimal
+
+package com.allinone.Product_Service.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.List;
+
+class ProductBsonJsonWriterTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final StringWriter output = new StringWriter();
+	private final JsonGenerator generator = createGenerator();
+	private final ProductBsonJsonWriter writer = new ProductBsonJsonWriter(generator);
+
+	@Test
+	void shouldWriteDecimal128LikeBigDecimal() throws Exception {
+		for (String price : List.of("1299.90", "1200", "0.05", "-12.5", "0", "0.00", "0.000001", "0.00000001",
+				"1E+3", "12345678901234567890123.45", "-0.1")) {
+			Assertions.assertEquals(json(new BigDecimal(price)), price(new BsonDecimal128(new Decimal128(new BigDecimal(price))), null),
+					price);
+		}
+	}
+
+	@Test
+	void shouldWriteMinorUnitsWithTheirCurrency() throws Exception {
+		Assertions.assertEquals(json(new BigDecimal("1299.90")), price(new BsonInt64(129990), "USD"));
+		Assertions.assertEquals(json(new BigDecimal("-0.05")), price(new BsonInt64(-5), "EUR"));
+		Assertions.assertEquals(json(new BigDecimal("500")), price(new BsonInt64(500), "JPY"));
+		Assertions.assertEquals(json(new BigDecimal("1.250")), price(new BsonInt64(1250), "KWD"));
+		// Back to USD after another currency
+		Assertions.assertEquals(json(new BigDecimal("12.50")), price(new BsonInt64(1250), "USD"));
+	}
+
+	@Test
+	void shouldWriteStringPriceAsNumber() throws Exception {
+		Assertions.assertEquals(json(new BigDecimal("19.99")), price(new BsonString("19.99"), null));
+	}
+
+	private JsonGenerator createGenerator() {
+		try {
+			return objectMapper.getFactory().createGenerator(output);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// The "price" value of the JSON written for a document with that price (and currency)
+	private String price(BsonValue price, String currency) throws Exception {
+		BsonDocument document = new BsonDocument("price", price);
+		if (currency != null) {
+			document.append("currency", new BsonString(currency));
+		}
+		output.getBuffer().setLength(0);
+		writer.write(new RawBsonDocument(document, new BsonDocumentCodec()));
+		generator.flush();
+		// Number text as written, price is the last field
+		String json = output.toString().trim();
+		return json.substring(json.indexOf("\"price\":") + "\"price\":".length(), json.length() - 1);
+	}
+
+	private String json(BigDecimal price) throws Exception {
+		return objectMapper.writeValueAsString(price);
+	}
+}
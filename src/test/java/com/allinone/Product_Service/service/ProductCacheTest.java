@@ -0,0 +1,105 @@
+// 17) Plain unit test for the read-through cache, no Spring / MongoDB needed
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.dto.ProductResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class ProductCacheTest {
+
+	@Test
+	void shouldLoadAgainAfterLoaderThrewAnError() {
+		ProductCache cache = new ProductCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1), "", 10);
+
+		Assertions.assertThrows(OutOfMemoryError.class, () -> cache.getAllProducts(() -> {
+			throw new OutOfMemoryError("test");
+		}));
+		Assertions.assertThrows(StackOverflowError.class, () -> cache.getProduct("a", id -> {
+			throw new StackOverflowError();
+		}));
+
+		// The failed loads are not left behind for the next caller to wait on
+		ProductResponse product = ProductResponse.builder().id("a").name("Kettle").build();
+		Assertions.assertEquals(List.of(product), cache.getAllProducts(() -> List.of(product)));
+		Assertions.assertEquals(product, cache.getProduct("a", id -> product));
+	}
+
+	@Test
+	void shouldLoadAllMissesWithOneCall() {
+		ProductCache cache = new ProductCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1), "", 10);
+		ProductResponse a = ProductResponse.builder().id("a").name("Kettle").build();
+		ProductResponse b = ProductResponse.builder().id("b").name("Mug").build();
+		cache.putProduct(a);
+
+		List<Set<String>> calls = new ArrayList<>();
+		Map<String, ProductResponse> products = cache.getProducts(List.of("a", "b", "missing"), ids -> {
+			calls.add(ids);
+			return Map.of("b", b);
+		});
+		Assertions.assertEquals(Map.of("a", a, "b", b), products);
+		Assertions.assertEquals(List.of(Set.of("b", "missing")), calls);
+
+		// b is cached now, "missing" isn't
+		cache.getProducts(List.of("a", "b", "missing"), ids -> {
+			calls.add(ids);
+			return Map.of();
+		});
+		Assertions.assertEquals(List.of(Set.of("b", "missing"), Set.of("missing")), calls);
+	}
+
+	// 20) Loads block (on MongoDB) and concurrent callers of the same key wait for the one load: neither may
+	// pin the virtual thread to its carrier. JFR reports every park of a pinned virtual thread.
+	@Test
+	void shouldNotPinVirtualThreadsOnCachedReads(@TempDir Path directory) throws Exception {
+		ProductCache cache = new ProductCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1), "", 10);
+		ProductResponse product = ProductResponse.builder().id("a").name("Kettle").build();
+		Path file = directory.resolve("pinning.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+			recording.start();
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				List<Future<?>> reads = new ArrayList<>();
+				for (int i = 0; i < 50; i++) {
+					String id = "p" + i % 5;
+					reads.add(executor.submit(() -> cache.getProduct(id, key -> slowLoad(product))));
+					reads.add(executor.submit(() -> cache.getAllProducts(() -> slowLoad(List.of(product)))));
+					reads.add(executor.submit(() -> cache.getProducts(List.of(id, "q"), ids -> slowLoad(Map.of(id, product)))));
+				}
+				for (Future<?> read : reads) {
+					read.get();
+				}
+			}
+			recording.stop();
+			recording.dump(file);
+		}
+		List<String> pinned = RecordingFile.readAllEvents(file).stream()
+				.filter(event -> event.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+				.map(event -> String.valueOf(event.getStackTrace()))
+				.toList();
+		Assertions.assertEquals(List.of(), pinned);
+	}
+
+	private static <T> T slowLoad(T value) {
+		try {
+			Thread.sleep(20);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return value;
+	}
+}
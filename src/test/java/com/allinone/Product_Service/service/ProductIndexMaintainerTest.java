@@ -0,0 +1,128 @@
+// 24) A failed index build leaves the index not ready and is retried, no Spring / MongoDB needed
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.event.ProductChangedEvent;
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+class ProductIndexMaintainerTest {
+
+	@Test
+	void shouldRetryFailedBuildAndStayNotReadyUntilItSucceeds() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+		ProductStore repository = (ProductStore) Proxy.newProxyInstance(ProductStore.class.getClassLoader(),
+				new Class<?>[]{ProductStore.class},
+				(proxy, method, args) -> {
+					if (!method.getName().equals("streamAll")) {
+						throw new UnsupportedOperationException(method.getName());
+					}
+					if (attempts.incrementAndGet() == 1) {
+						throw new IllegalStateException("MongoDB not reachable");
+					}
+					return Stream.of(Product.builder().id("a").build(), Product.builder().id("b").build());
+				});
+		Set<String> ids = ConcurrentHashMap.newKeySet();
+		ProductIndexMaintainer maintainer = new ProductIndexMaintainer(repository, new SimpleAsyncTaskExecutor(), 100) {
+			@Override
+			protected String indexName() {
+				return "test";
+			}
+
+			@Override
+			protected void clearIndex() {
+				ids.clear();
+			}
+
+			@Override
+			protected void indexProduct(Product product) {
+				ids.add(product.getId());
+			}
+
+			@Override
+			protected void removeProduct(String productId) {
+				ids.remove(productId);
+			}
+		};
+
+		maintainer.buildOnStartup();
+		for (int i = 0; i < 100 && attempts.get() < 1; i++) {
+			Thread.sleep(10);
+		}
+		Assertions.assertFalse(maintainer.isReady());
+
+		// First retry after a second
+		for (int i = 0; i < 500 && !maintainer.isReady(); i++) {
+			Thread.sleep(10);
+		}
+		Assertions.assertTrue(maintainer.isReady());
+		Assertions.assertEquals(2, attempts.get());
+		Assertions.assertEquals(Set.of("a", "b"), ids);
+	}
+
+	@Test
+	void shouldRetryWhenFinishingTheBuildFails() throws Exception {
+		ProductStore repository = (ProductStore) Proxy.newProxyInstance(ProductStore.class.getClassLoader(),
+				new Class<?>[]{ProductStore.class},
+				(proxy, method, args) -> Stream.of(Product.builder().id("a").build()));
+		AtomicInteger builds = new AtomicInteger();
+		Set<String> ids = ConcurrentHashMap.newKeySet();
+		ProductIndexMaintainer maintainer = new ProductIndexMaintainer(repository, new SimpleAsyncTaskExecutor(), 100) {
+			@Override
+			protected String indexName() {
+				return "test";
+			}
+
+			@Override
+			protected void clearIndex() {
+				ids.clear();
+			}
+
+			@Override
+			protected void indexProduct(Product product) {
+				ids.add(product.getId());
+			}
+
+			@Override
+			protected void removeProduct(String productId) {
+				ids.remove(productId);
+			}
+
+			@Override
+			protected void afterBuild() {
+				if (builds.incrementAndGet() == 1) {
+					throw new ArithmeticException("test");
+				}
+			}
+		};
+
+		maintainer.buildOnStartup();
+		for (int i = 0; i < 100 && builds.get() < 1; i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(50);
+		Assertions.assertFalse(maintainer.isReady());
+		// Not stuck building: applied right away instead of queued for a replay that never comes
+		maintainer.onProductChanged(ProductChangedEvent.builder()
+				.type(ProductChangedEvent.Type.INSERT)
+				.productId("b")
+				.product(Product.builder().id("b").build())
+				.build());
+		Assertions.assertTrue(ids.contains("b"));
+
+		for (int i = 0; i < 500 && !maintainer.isReady(); i++) {
+			Thread.sleep(10);
+		}
+		Assertions.assertTrue(maintainer.isReady());
+		Assertions.assertEquals(2, builds.get());
+	}
+}
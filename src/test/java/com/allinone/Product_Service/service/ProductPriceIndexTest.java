@@ -0,0 +1,95 @@
+// 24) Plain unit test for the sorted price index, no Spring / MongoDB needed
+
+package com.allinone.Product_Service.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+class ProductPriceIndexTest {
+
+	@Test
+	void shouldReturnPriceBandCheapestFirst() {
+		ProductPriceIndex index = new ProductPriceIndex();
+		index.upsert("a", new BigDecimal("10.00"));
+		index.upsert("b", new BigDecimal("5.50"));
+		index.upsert("c", new BigDecimal("20"));
+		index.upsert("d", new BigDecimal("10.00"));
+
+		Assertions.assertEquals(List.of("b", "a", "d", "c"), index.range(null, null, false, 10));
+		Assertions.assertEquals(List.of("a", "d"), index.range(new BigDecimal("6"), new BigDecimal("19.99"), false, 10));
+		Assertions.assertEquals(List.of("c", "d"), index.range(new BigDecimal("10"), null, true, 2));
+		Assertions.assertEquals(List.of(), index.range(new BigDecimal("30"), null, false, 10));
+	}
+
+	@Test
+	void shouldIncludeBoundsAfterRounding() {
+		ProductPriceIndex index = new ProductPriceIndex();
+		index.upsert("a", new BigDecimal("10.00"));
+
+		Assertions.assertEquals(List.of("a"), index.range(new BigDecimal("10"), new BigDecimal("10"), false, 10));
+		Assertions.assertEquals(List.of(), index.range(new BigDecimal("10.001"), null, false, 10));
+		Assertions.assertEquals(List.of(), index.range(null, new BigDecimal("9.999"), false, 10));
+	}
+
+	@Test
+	void shouldMoveAndRemoveProducts() {
+		ProductPriceIndex index = new ProductPriceIndex();
+		for (int i = 0; i < 2000; i++) {
+			index.upsert("p" + i, BigDecimal.valueOf(i));
+		}
+		index.upsert("p0", new BigDecimal("5000"));
+		index.remove("p1");
+		index.upsert("p2", null);
+
+		Assertions.assertEquals(1998, index.size());
+		Assertions.assertEquals(List.of("p3", "p4"), index.range(null, null, false, 2));
+		Assertions.assertEquals(List.of("p0"), index.range(null, null, true, 1));
+		Assertions.assertTrue(index.memoryFootprintBytes() > 1998L * 12);
+	}
+
+	@Test
+	void shouldLoadInBulk() {
+		ProductPriceIndex index = new ProductPriceIndex();
+		index.upsert("old", BigDecimal.ONE);
+		index.load(Map.of("x", new BigDecimal("3"), "y", new BigDecimal("1"), "z", new BigDecimal("2")));
+		index.upsert("w", new BigDecimal("1.5"));
+
+		Assertions.assertEquals(List.of("y", "w", "z", "x"), index.range(null, null, false, 10));
+		Assertions.assertEquals(4, index.size());
+	}
+
+	@Test
+	void shouldLeaveOutPricesBeyondMinorUnits() {
+		ProductPriceIndex index = new ProductPriceIndex();
+		index.upsert("a", new BigDecimal("1e400"));
+		index.upsert("b", BigDecimal.ONE);
+		Assertions.assertEquals(List.of("b"), index.range(null, null, false, 10));
+		Assertions.assertEquals(1, index.unindexableCount());
+
+		// Fixed by a later write
+		index.upsert("a", BigDecimal.TEN);
+		Assertions.assertEquals(List.of("b", "a"), index.range(null, null, false, 10));
+		Assertions.assertEquals(0, index.unindexableCount());
+
+		index.load(Map.of("x", new BigDecimal("-1e400"), "y", new BigDecimal("92233720368547758.08"), "z", BigDecimal.ONE));
+		Assertions.assertEquals(List.of("z"), index.range(null, null, false, 10));
+		Assertions.assertEquals(2, index.unindexableCount());
+	}
+
+	@Test
+	void shouldClampQueryBoundsBeyondMinorUnits() {
+		ProductPriceIndex index = new ProductPriceIndex();
+		index.upsert("a", new BigDecimal("10"));
+		index.upsert("b", new BigDecimal("92233720368547758.07"));
+
+		Assertions.assertEquals(List.of("a", "b"), index.range(new BigDecimal("-1e30"), new BigDecimal("1e30"), false, 10));
+		Assertions.assertEquals(List.of("b"), index.range(new BigDecimal("11"), new BigDecimal("1e400"), false, 10));
+		Assertions.assertEquals(List.of(), index.range(new BigDecimal("1e30"), null, false, 10));
+		Assertions.assertEquals(List.of(), index.range(null, new BigDecimal("-1e30"), false, 10));
+		Assertions.assertEquals(List.of("a"), index.range(new BigDecimal("1E-999999999"), new BigDecimal("10"), false, 10));
+	}
+}
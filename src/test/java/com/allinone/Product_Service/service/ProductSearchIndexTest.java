@@ -0,0 +1,64 @@
+// 23) Plain unit test for the inverted index, no Spring / MongoDB needed
+
+package com.allinone.Product_Service.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class ProductSearchIndexTest {
+
+	@Test
+	void shouldFindProductsContainingAllTerms() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		index.upsert("1", "iPhone 13", "Apple smartphone");
+		index.upsert("2", "Galaxy S22", "Samsung smartphone");
+		index.upsert("3", "MacBook Air", "Apple laptop");
+
+		Assertions.assertEquals(List.of("1"), index.search("apple SMARTPHONE", 0, 10).productIds());
+		Assertions.assertEquals(2, index.search("smartphone", 0, 10).total());
+		Assertions.assertEquals(0, index.search("apple tablet", 0, 10).total());
+		Assertions.assertEquals(0, index.search("  ", 0, 10).total());
+	}
+
+	@Test
+	void shouldRankNameMatchesFirst() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		index.upsert("description-match", "Phone case", "Fits the Pixel");
+		index.upsert("name-match", "Pixel 8", "Google phone");
+
+		Assertions.assertEquals(List.of("name-match", "description-match"), index.search("pixel", 0, 10).productIds());
+	}
+
+	@Test
+	void shouldPageThroughHits() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		for (int i = 0; i < 25; i++) {
+			index.upsert("p" + i, "Cable " + i, "USB cable");
+		}
+
+		ProductSearchIndex.Hits secondPage = index.search("cable", 10, 10);
+		Assertions.assertEquals(25, secondPage.total());
+		Assertions.assertEquals(10, secondPage.productIds().size());
+		Assertions.assertEquals(5, index.search("cable", 20, 10).productIds().size());
+	}
+
+	@Test
+	void shouldReflectUpdatesAndRemovalsAcrossCompaction() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		index.upsert("1", "Red shirt", null);
+		index.upsert("2", "Blue shirt", null);
+		index.upsert("1", "Green shirt", null);
+		index.remove("2");
+
+		Assertions.assertEquals(0, index.search("red", 0, 10).total());
+		Assertions.assertEquals(List.of("1"), index.search("shirt", 0, 10).productIds());
+
+		index.compact();
+		Assertions.assertEquals(0.0, index.deletedRatio());
+		Assertions.assertEquals(List.of("1"), index.search("green shirt", 0, 10).productIds());
+		index.upsert("3", "Green hat", null);
+		Assertions.assertEquals(2, index.search("green", 0, 10).total());
+	}
+}
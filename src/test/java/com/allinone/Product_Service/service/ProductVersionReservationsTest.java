@@ -0,0 +1,87 @@
+// 31) Which change versions a delta sync token may move past, no Spring / MongoDB needed
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.repository.ProductStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+class ProductVersionReservationsTest {
+
+	@Test
+	void shouldStopBelowTheLowestWriteStillRunning() throws Exception {
+		ProductVersionReservations reservations = reservations();
+		CountDownLatch reserved = new CountDownLatch(1);
+		CountDownLatch commit = new CountDownLatch(1);
+		CompletableFuture<Long> slow = CompletableFuture.supplyAsync(() -> reservations.<Long>write(1, version -> {
+			reserved.countDown();
+			await(commit);
+			return version;
+		}));
+		reserved.await();
+
+		// Version 2 is written first; version 1 may still appear below it
+		Assertions.assertEquals(Long.valueOf(2), reservations.<Long>write(1, version -> version));
+		try (ProductVersionReservations.Window window = reservations.openWindow()) {
+			Assertions.assertEquals(1, window.limit());
+		}
+
+		commit.countDown();
+		Assertions.assertEquals(1L, slow.get());
+		try (ProductVersionReservations.Window window = reservations.openWindow()) {
+			Assertions.assertEquals(Long.MAX_VALUE, window.limit());
+		}
+	}
+
+	@Test
+	void shouldKeepWritesFinishedDuringTheWindowInTheLimit() throws Exception {
+		ProductVersionReservations reservations = reservations();
+		try (ProductVersionReservations.Window window = reservations.openWindow()) {
+			// Committed after the window's reads may have run
+			reservations.write(3, version -> version);
+			Assertions.assertEquals(1, window.limit());
+		}
+		try (ProductVersionReservations.Window window = reservations.openWindow()) {
+			Assertions.assertEquals(Long.MAX_VALUE, window.limit());
+		}
+	}
+
+	@Test
+	void shouldReleaseVersionsOfFailedWrites() {
+		ProductVersionReservations reservations = reservations();
+		Assertions.assertThrows(IllegalStateException.class, () -> reservations.write(1, version -> {
+			throw new IllegalStateException("write failed");
+		}));
+		try (ProductVersionReservations.Window window = reservations.openWindow()) {
+			Assertions.assertEquals(Long.MAX_VALUE, window.limit());
+		}
+	}
+
+	private static ProductVersionReservations reservations() {
+		AtomicLong sequence = new AtomicLong();
+		ProductStore repository = (ProductStore) Proxy.newProxyInstance(ProductStore.class.getClassLoader(),
+				new Class<?>[]{ProductStore.class},
+				(proxy, method, args) -> {
+					if (!method.getName().equals("reserveVersions")) {
+						throw new UnsupportedOperationException(method.getName());
+					}
+					return sequence.getAndAdd((Integer) args[0]) + 1;
+				});
+		return new ProductVersionReservations(repository, new SimpleMeterRegistry(), Duration.ofSeconds(2));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
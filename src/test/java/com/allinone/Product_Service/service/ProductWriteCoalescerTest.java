@@ -0,0 +1,138 @@
+// 16) Failure handling of the write coalescer, no Spring / MongoDB needed
+
+package com.allinone.Product_Service.service;
+
+import com.allinone.Product_Service.model.Product;
+import com.allinone.Product_Service.repository.ProductStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+class ProductWriteCoalescerTest {
+
+	@Test
+	void shouldMapOnlyDuplicateKeysToConflicts() throws Exception {
+		ProductWriteCoalescer coalescer = coalescer(products -> switch (products.getFirst().getName()) {
+			case "duplicate" -> Map.of(0, "E11000 duplicate key error collection: product index: skuCode_unique dup key");
+			case "invalid" -> Map.of(0, "Document failed validation");
+			default -> Map.of();
+		});
+		try {
+			coalescer.insert(Product.builder().name("ok").build());
+			Assertions.assertThrows(DuplicateKeyException.class, () -> coalescer.insert(Product.builder().name("duplicate").build()));
+			RuntimeException invalid = Assertions.assertThrows(RuntimeException.class,
+					() -> coalescer.insert(Product.builder().name("invalid").build()));
+			Assertions.assertInstanceOf(UncategorizedMongoDbException.class, invalid);
+			Assertions.assertFalse(invalid instanceof DataIntegrityViolationException);
+		} finally {
+			coalescer.stop();
+		}
+	}
+
+	@Test
+	void shouldFailWritesOnceTheFlusherDied() throws Exception {
+		ProductWriteCoalescer coalescer = coalescer(products -> {
+			throw new OutOfMemoryError("test");
+		});
+		Assertions.assertThrows(IllegalStateException.class, () -> coalescer.insert(Product.builder().name("a").build()));
+		// No flusher any more: refused instead of waiting forever
+		for (int i = 0; i < 100 && flusherAlive(coalescer); i++) {
+			Thread.sleep(10);
+		}
+		Assertions.assertThrows(ResponseStatusException.class, () -> coalescer.insert(Product.builder().name("b").build()));
+		coalescer.stop();
+	}
+
+	@Test
+	void shouldRefuseWritesAfterStop() throws Exception {
+		ProductWriteCoalescer coalescer = coalescer(products -> Map.of());
+		coalescer.stop();
+		Assertions.assertThrows(ResponseStatusException.class, () -> coalescer.insert(Product.builder().name("a").build()));
+	}
+
+	@Test
+	void shouldTellTimedOutWritesApartByWhetherTheyMayStillBeStored() throws Exception {
+		CountDownLatch flushing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger flushed = new AtomicInteger();
+		ProductWriteCoalescer coalescer = coalescer(products -> {
+			flushed.addAndGet(products.size());
+			flushing.countDown();
+			await(release);
+			return Map.of();
+		}, 200);
+		try {
+			// Taken by the flusher, which is stuck in the bulk write: may still be stored
+			CompletableFuture<Void> first = CompletableFuture.runAsync(() -> coalescer.insert(Product.builder().name("a").build()));
+			flushing.await();
+			// Still queued behind it: taken back out, never written
+			ResponseStatusException queued = Assertions.assertThrows(ResponseStatusException.class,
+					() -> coalescer.insert(Product.builder().name("b").build()));
+			Assertions.assertEquals(503, queued.getStatusCode().value());
+
+			ExecutionException pending = Assertions.assertThrows(ExecutionException.class, first::get);
+			ProductWritePendingException writePending = Assertions.assertInstanceOf(ProductWritePendingException.class, pending.getCause());
+			Assertions.assertNotNull(writePending.getProductId());
+
+			release.countDown();
+			writePending.getCompletion().get(5, TimeUnit.SECONDS);
+			coalescer.stop();
+			Assertions.assertEquals(1, flushed.get());
+		} finally {
+			release.countDown();
+			coalescer.stop();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static boolean flusherAlive(ProductWriteCoalescer coalescer) {
+		return Thread.getAllStackTraces().keySet().stream()
+				.anyMatch(thread -> thread.getName().equals("product-write-coalescer") && thread.isAlive());
+	}
+
+	private static ProductWriteCoalescer coalescer(Function<List<Product>, Map<Integer, String>> insert) {
+		return coalescer(insert, 5000);
+	}
+
+	private static ProductWriteCoalescer coalescer(Function<List<Product>, Map<Integer, String>> insert, long writeTimeoutMillis) {
+		ProductStore repository = (ProductStore) Proxy.newProxyInstance(ProductStore.class.getClassLoader(),
+				new Class<?>[]{ProductStore.class},
+				(proxy, method, args) -> switch (method.getName()) {
+					case "reserveVersions" -> 1L;
+					case "insertAllUnordered" -> {
+						@SuppressWarnings("unchecked")
+						List<Product> products = (List<Product>) args[0];
+						yield insert.apply(products);
+					}
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ProductWriteCoalescer coalescer = new ProductWriteCoalescer(repository,
+				new ProductVersionReservations(repository, meterRegistry, Duration.ofSeconds(2)), meterRegistry,
+				100, 10, 1, 100, writeTimeoutMillis, false);
+		coalescer.start();
+		return coalescer;
+	}
+}